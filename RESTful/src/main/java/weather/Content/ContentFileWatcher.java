@@ -0,0 +1,334 @@
+package weather.Content;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Follows a growing feed, a single file or every file of a directory, and hands only the records appended since the
+ * last upload to a {@link RecordSink}.
+ * <p>
+ * The directory is watched with a {@link WatchService}; on every change the new bytes of the file after its stored
+ * offset are read. A record is taken once it is complete: when a blank line follows it, when it is a JSON object on a
+ * single line, or else once the file was not modified for the settle time. The offset
+ * of every file is kept in a checkpoint file, so a restart continues where the previous run stopped. A file that
+ * shrank or was replaced by another file is read again from its start.
+ * <p>
+ * Records handed to the sink before a crash but not yet in the checkpoint are uploaded again; the upload is at least once.
+ */
+public class ContentFileWatcher implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(ContentFileWatcher.class.getName());
+    private static final int SCAN_CHUNK = 8192;
+
+    /**
+     * Receives the new records of the feed, in file order
+     */
+    public interface RecordSink {
+        /**
+         * @param observation A record as compact UTF-8 JSON
+         */
+        void accept(byte[] observation) throws IOException;
+
+        /**
+         * Called after the new records of a file were handed over, before their offset is saved
+         */
+        default void endOfScan() throws IOException {
+        }
+    }
+
+    // Read position in a file; fileKey tells a replaced file from the one the offset belongs to
+    private static final class TailState {
+        private long offset;
+        private String fileKey;
+        private boolean pendingTail;
+        // Size of the file when its pending tail last grew, and when that was in System.nanoTime()
+        private long pendingSize;
+        private long pendingSince;
+    }
+
+    private final Path source;
+    private final Path directory;
+    private final Path checkpointFile;
+    private final long settleMillis;
+    private final RecordSink sink;
+    private final Map<Path, TailState> states = new HashMap<>();
+    private final WatchService watchService;
+    private volatile boolean closed;
+
+    /**
+     * @param source         The file to follow, or a directory whose regular files are all followed
+     * @param checkpointFile Where the offsets of the followed files are kept
+     * @param settleMillis   How long a file must stay unmodified before a record without a following blank line is taken
+     */
+    public ContentFileWatcher(Path source, Path checkpointFile, long settleMillis, RecordSink sink) throws IOException {
+        this.source = source.toAbsolutePath().normalize();
+        this.directory = Files.isDirectory(this.source) ? this.source : this.source.getParent();
+        this.checkpointFile = checkpointFile;
+        this.settleMillis = Math.max(1, settleMillis);
+        this.sink = sink;
+        loadCheckpoint();
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Uploads what was appended while not running, then follows the feed until {@link #close()} is called
+     */
+    public void run() throws IOException, InterruptedException {
+        logger.info("Following " + source);
+        scanAll(false);
+        try {
+            while (!closed) {
+                WatchKey key = watchService.poll(untilNextSettle(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            scanAll(false);
+                        } else if (event.context() instanceof Path name && isFollowed(directory.resolve(name))) {
+                            scan(directory.resolve(name), false);
+                        }
+                    }
+                    key.reset();
+                }
+                // Checked after every wakeup, so events of other files in the directory never hold a tail back
+                scanSettledTails();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed while waiting for changes
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+
+    // The checkpoint and its temporary file may live in the followed directory too
+    private boolean isFollowed(Path file) {
+        return (source.equals(directory) || source.equals(file)) && Files.isRegularFile(file)
+                && !file.toString().startsWith(checkpointFile.toAbsolutePath().normalize().toString());
+    }
+
+    private void scanAll(boolean settled) throws IOException {
+        if (!source.equals(directory)) {
+            scan(source, settled);
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().toList()) {
+                if (isFollowed(file)) {
+                    scan(file, settled);
+                }
+            }
+        }
+    }
+
+    // Milliseconds until the earliest pending tail settles, at most the settle time
+    private long untilNextSettle() {
+        long now = System.nanoTime();
+        long wait = settleMillis;
+        for (TailState state : states.values()) {
+            if (state.pendingTail) {
+                long settled = TimeUnit.NANOSECONDS.toMillis(now - state.pendingSince);
+                wait = Math.min(wait, Math.max(1, settleMillis - settled));
+            }
+        }
+        return wait;
+    }
+
+    // Records still missing their blank line are complete once their file did not grow for the settle time
+    private void scanSettledTails() throws IOException {
+        long now = System.nanoTime();
+        for (Map.Entry<Path, TailState> entry : Map.copyOf(states).entrySet()) {
+            TailState state = entry.getValue();
+            if (state.pendingTail && TimeUnit.NANOSECONDS.toMillis(now - state.pendingSince) >= settleMillis) {
+                scan(entry.getKey(), true);
+            }
+        }
+    }
+
+    /**
+     * Hands the complete records after the stored offset to the sink and saves the new offset
+     *
+     * @param settled True if the file was quiet for the settle time, so its last record is complete
+     */
+    private void scan(Path file, boolean settled) throws IOException {
+        TailState state = states.computeIfAbsent(file, path -> new TailState());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            String fileKey = String.valueOf(Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+            if ((state.fileKey != null && !state.fileKey.equals(fileKey)) || size < state.offset) {
+                logger.info(file + " was replaced or truncated, reading it from the start");
+                state.offset = 0;
+            }
+            state.fileKey = fileKey;
+            if (size == state.offset) {
+                state.pendingTail = false;
+                return;
+            }
+
+            long end = settled ? size : completeRecordsEnd(channel, state.offset, size);
+            if (end < size && (!state.pendingTail || size != state.pendingSize)) {
+                state.pendingSize = size;
+                state.pendingSince = System.nanoTime();
+            }
+            state.pendingTail = end < size;
+            if (end <= state.offset) {
+                return;
+            }
+
+            long records = upload(channel, state.offset, end);
+            state.offset = end;
+            saveCheckpoint();
+            logger.info("Uploaded " + records + " new records of " + file + ", offset " + end);
+        }
+    }
+
+    private long upload(FileChannel channel, long from, long to) throws IOException {
+        channel.position(from);
+        InputStream bytes = new BoundedInputStream(Channels.newInputStream(channel), to - from);
+        Reader text = new BufferedReader(new InputStreamReader(bytes, StandardCharsets.UTF_8));
+        ContentRecordReader records = new ContentRecordReader(text);
+        for (byte[] record = records.next(); record != null; record = records.next()) {
+            sink.accept(record);
+        }
+        sink.endOfScan();
+        return records.records();
+    }
+
+    /**
+     * Scans backwards from the end for the last line ending a record: a blank line, or a line holding a whole JSON object
+     *
+     * @return Position after that line, or from if the new bytes hold no complete record yet
+     */
+    private static long completeRecordsEnd(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_CHUNK);
+        // The line right of the position is examined while scanning towards its start
+        long lineEnd = -1;
+        int first = -1;
+        int last = -1;
+        long position = to;
+        while (position > from) {
+            long start = Math.max(from, position - SCAN_CHUNK);
+            buffer.clear().limit((int) (position - start));
+            channel.read(buffer, start);
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    if (lineEnd >= 0 && endsRecord(first, last)) {
+                        return lineEnd + 1;
+                    }
+                    lineEnd = start + i;
+                    first = last = -1;
+                } else if (b != ' ' && b != '\t' && b != '\r') {
+                    first = b;
+                    last = (last < 0) ? b : last;
+                }
+            }
+            position = start;
+        }
+        // The region starts at the beginning of a line, as every offset is after a line break
+        return (lineEnd >= 0 && endsRecord(first, last)) ? lineEnd + 1 : from;
+    }
+
+    private static boolean endsRecord(int first, int last) {
+        return first < 0 || (first == '{' && last == '}');
+    }
+
+    private void loadCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return;
+        }
+        Properties saved = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            saved.load(reader);
+        }
+        for (String file : saved.stringPropertyNames()) {
+            String[] parts = saved.getProperty(file).split(" ", 2);
+            try {
+                TailState state = new TailState();
+                state.offset = Long.parseLong(parts[0]);
+                state.fileKey = (parts.length > 1) ? parts[1] : null;
+                states.put(Path.of(file), state);
+            } catch (NumberFormatException e) {
+                logger.log(Level.WARNING, "Ignoring the unreadable offset of " + file + " in " + checkpointFile);
+            }
+        }
+    }
+
+    // Written aside and moved over the previous one, so a crash never leaves a half written checkpoint
+    private void saveCheckpoint() throws IOException {
+        Map<String, String> offsets = new TreeMap<>();
+        states.forEach((file, state) -> offsets.put(file.toString(), state.offset + " " + state.fileKey));
+        Properties saved = new Properties();
+        saved.putAll(offsets);
+        Path absolute = checkpointFile.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        Path tempFile = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            saved.store(writer, "Upload offsets of the followed files");
+        }
+        Files.move(tempFile, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Reads at most limit bytes, so a record being appended past the scanned end is left for the next scan
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(target, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package weather.Content;
 
-import weather.utils.JSONParser;
-
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 /*
@@ -15,23 +16,16 @@ public class ContentReaderService {
         this.filePath = filePath;
     }
 
-    public String readFile() throws IOException {
-        File file = Paths.get(filePath).normalize().toFile();
-        System.out.println("Reading file from path: " + file.getAbsolutePath());
-
-        if (!file.exists()) {
-            throw new IOException("File does not exist: " + file.getAbsolutePath());
-        }
+    /**
+     * Opens the file for reading its station records one at a time, the caller closes the reader
+     */
+    public ContentRecordReader openRecords() throws IOException {
+        Path file = Paths.get(filePath).normalize();
+        System.out.println("Reading file from path: " + file.toAbsolutePath());
 
-        StringBuilder data = new StringBuilder();
-        try (BufferedReader fileReader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = fileReader.readLine()) != null) {
-                data.append(line).append("\n");
-            }
+        if (!Files.exists(file)) {
+            throw new IOException("File does not exist: " + file.toAbsolutePath());
         }
-
-        String content = data.toString().trim();
-        return JSONParser.ensureJsonFormat(content).toString();
+        return new ContentRecordReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
     }
 }
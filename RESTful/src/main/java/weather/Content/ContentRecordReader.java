@@ -0,0 +1,209 @@
+package weather.Content;
+
+import weather.utils.JSONParser;
+import weather.utils.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads station records from a content server feed one at a time, in a single pass over the text.
+ * A record is either a JSON object, or lines of {@code key: value} pairs like:
+ * <pre>
+ * "id" : "IDS60901",
+ * "air_temp": 13.3,
+ * </pre>
+ * Key-value records end at a blank line or where a line starts the next station with another {@code id}.
+ * Only the current record is held in memory, so feeds of any size are read with constant memory.
+ * <p>
+ * Values are typed the way {@link JSONParser#ensureJsonFormat(String)} types them: quoted text is a string,
+ * numbers with a decimal point are doubles, other numbers in int range are integers, and anything else stays text.
+ * <p>
+ * Example usage:
+ * <pre>
+ * try (ContentRecordReader records = new ContentRecordReader(Files.newBufferedReader(path))) {
+ *     for (byte[] record = records.next(); record != null; record = records.next()) { ... }
+ * }
+ * </pre>
+ */
+public class ContentRecordReader implements Closeable {
+    private final BufferedReader reader;
+    private final JsonWriter writer = new JsonWriter(512);
+    // First line of the next record, read while looking for the end of the current one
+    private String pendingLine;
+    private boolean hasId;
+    private long records;
+
+    public ContentRecordReader(Reader reader) {
+        this.reader = (reader instanceof BufferedReader buffered) ? buffered : new BufferedReader(reader);
+    }
+
+    /**
+     * @return The next record as compact UTF-8 JSON, or null at the end of the feed
+     * @throws org.json.JSONException When a record starting with '{' is not valid JSON
+     */
+    public byte[] next() throws IOException {
+        String line = (pendingLine != null) ? pendingLine : reader.readLine();
+        pendingLine = null;
+        while (line != null && line.isBlank()) {
+            line = reader.readLine();
+        }
+        if (line == null) {
+            return null;
+        }
+        records++;
+        return line.stripLeading().startsWith("{") ? readJsonRecord(line) : readKeyValueRecord(line);
+    }
+
+    /**
+     * @return How many records were returned so far
+     */
+    public long records() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private byte[] readKeyValueRecord(String line) throws IOException {
+        writer.reset();
+        writer.beginObject();
+        hasId = false;
+        for (; line != null && !line.isBlank(); line = reader.readLine()) {
+            if (!writePair(line)) {
+                // The line starts the next station
+                pendingLine = line;
+                break;
+            }
+        }
+        writer.endObject();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Writes one key: value line into the record, lines without a colon are ignored
+     *
+     * @return false if the line is the id of the next station, nothing was written then
+     */
+    private boolean writePair(String line) {
+        int end = line.length();
+        while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        if (end > 0 && line.charAt(end - 1) == ',') {
+            end--;
+        }
+        int colon = line.indexOf(':');
+        if (colon < 0 || colon >= end) {
+            return true;
+        }
+
+        StringBuilder key = new StringBuilder(colon);
+        for (int i = 0; i < colon; i++) {
+            char c = line.charAt(i);
+            if (c != '"') {
+                key.append(c);
+            }
+        }
+        String name = key.toString().trim();
+        if (name.equals("id")) {
+            if (hasId) {
+                return false;
+            }
+            hasId = true;
+        }
+        writer.name(name);
+        writeValue(line, colon + 1, end);
+        return true;
+    }
+
+    private void writeValue(String line, int start, int end) {
+        while (start < end && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        if (end - start >= 2 && line.charAt(start) == '"' && line.charAt(end - 1) == '"') {
+            writer.value(line.substring(start + 1, end - 1));
+            return;
+        }
+        switch (numberKind(line, start, end)) {
+            case INTEGER -> {
+                long value = Long.parseLong(line, start, end, 10);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    writer.value(value);
+                } else {
+                    writer.value(line.substring(start, end));
+                }
+            }
+            case DECIMAL -> writer.value(Double.parseDouble(line.substring(start, end)));
+            default -> writer.value(line.substring(start, end));
+        }
+    }
+
+    private enum NumberKind { INTEGER, DECIMAL, NONE }
+
+    // -?[0-9]+(.[0-9]+)?, checked by hand instead of catching NumberFormatException; longer integers stay text
+    private static NumberKind numberKind(String text, int start, int end) {
+        int i = (start < end && (text.charAt(start) == '-' || text.charAt(start) == '+')) ? start + 1 : start;
+        int digits = 0;
+        int fraction = -1;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && fraction < 0 && digits > 0) {
+                fraction = digits;
+            } else {
+                return NumberKind.NONE;
+            }
+        }
+        if (digits == 0 || fraction == digits) {
+            return NumberKind.NONE;
+        }
+        if (fraction >= 0) {
+            return NumberKind.DECIMAL;
+        }
+        return (digits <= 18) ? NumberKind.INTEGER : NumberKind.NONE;
+    }
+
+    // Collects the lines of a JSON object until its braces are balanced, outside of strings
+    private byte[] readJsonRecord(String line) throws IOException {
+        StringBuilder json = new StringBuilder();
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        for (; line != null; line = reader.readLine()) {
+            json.append(line).append('\n');
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    byte[] bytes = json.substring(0, json.length() - line.length() - 1 + i + 1).getBytes(StandardCharsets.UTF_8);
+                    String rest = line.substring(i + 1);
+                    pendingLine = rest.isBlank() ? null : rest;
+                    return JSONParser.compact(bytes, 0, bytes.length);
+                }
+            }
+        }
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        return JSONParser.compact(bytes, 0, bytes.length);
+    }
+}
@@ -1,69 +1,311 @@
 package weather.Content;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+import weather.http.HttpDecoder;
+import weather.http.HttpResponse;
 import weather.lamport.LamportClock;
 import weather.lamport.LamportClockImpl;
 import weather.utils.JSONParser;
+import weather.utils.JsonWriter;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /*
- * Send the received data to aggregation server
+ * Send the received data to aggregation server.
+ * The connection is kept alive, so any number of PUT requests can be sent over the same socket.
+ * With a batch size above 1, observations are collected and sent as one NDJSON PUT once the batch is full or the
+ * linger time since its first observation passed, whichever comes first.
  * */
-public class ContentSenderService {
+public class ContentSenderService implements AutoCloseable {
     private static final Logger logger = Logger.getLogger(ContentSenderService.class.getName());
+    private static final int READ_BUFFER_SIZE = 8192;
+    // Sent with every PUT, the aggregation server expires the stations of a content server which stopped sending
+    private static final String SOURCE_ID = UUID.randomUUID().toString();
     private final Socket socket;
     private final LamportClock clock;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final HttpDecoder decoder = new HttpDecoder();
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    // Guards the batch and the connection, the linger timer flushes from its own thread
+    private final ReentrantLock lock = new ReentrantLock();
+    // Request body, reused for every PUT
+    private final JsonWriter envelope = new JsonWriter(1024);
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    private int batched;
+    private ScheduledExecutorService lingerTimer;
+    private ScheduledFuture<?> lingerFlush;
+    private OutputStream out;
+    private InputStream in;
 
     public ContentSenderService(Socket socket, LamportClockImpl clock) {
+        this(socket, clock, 1, 0);
+    }
+
+    /**
+     * @param batchSize    Observations per PUT request, 1 sends every observation on its own
+     * @param lingerMillis How long an incomplete batch waits for more observations, 0 waits until it is full or flushed
+     */
+    public ContentSenderService(Socket socket, LamportClockImpl clock, int batchSize, long lingerMillis) {
         this.socket = socket;
         this.clock = clock;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMillis = lingerMillis;
     }
 
     public void sendJsonToServer(String data) {
-        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
-            int logicTime = clock.incrementAndGet();
-            // Add timestamp to the data
-            long systemTime = System.nanoTime();
-            Map<String, Object> extraData = Map.of("SystemTimestamp", systemTime, "LogicTimestamp", logicTime);
-            data = JSONParser.formatDataAsJson(data, extraData);
-
-            /* Core Step: write the json data to server by socket */
-            transitContent(data, out);
+        send(JSONParser.toCompactJson(data));
+    }
+
+    /**
+     * Sends one observation, given as compact UTF-8 JSON, wrapped with the content server's timestamps.
+     * In batching mode it is only added to the current batch.
+     */
+    public void send(byte[] observation) {
+        lock.lock();
+        try {
+            envelope.reset();
+            writeEnvelope(envelope, observation, clock.incrementAndGet());
+
+            if (batchSize == 1) {
+                /* Core Step: write the json data to server by socket */
+                envelope.writeTo(beginPut("application/json", envelope.size()));
+                out.flush();
+                // The supplier only copies the envelope into a string if fine logging is enabled
+                logger.fine(() -> "Data sent to server:\n" + envelope);
+                checkResponse(readResponse(), 1);
+                return;
+            }
+
+            envelope.writeTo(batch);
+            batch.write('\n');
+            batched++;
+            if (batched >= batchSize) {
+                flushBatch();
+            } else if (batched == 1 && lingerMillis > 0) {
+                lingerFlush = lingerTimer().schedule(this::lingerExpired, lingerMillis, TimeUnit.MILLISECONDS);
+            }
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Failed to send data to the server.", e);
             throw new RuntimeException("Failed to send data to the server. Please check network connection.", e);
         } finally {
-            closeSocket();
+            lock.unlock();
         }
     }
 
-    private void transitContent(String data, BufferedWriter out) throws IOException {
-        // Calculate the content length of the JSON data
-        int contentLength = data.getBytes().length;
+    /**
+     * Sends observations already wrapped by {@link #writeEnvelope}, e.g. taken from a {@link ContentSpool}, as one
+     * NDJSON PUT request
+     *
+     * @return The response of the server, reporting the status of every observation
+     * @throws IOException When the request could not be sent or the server did not answer
+     */
+    public HttpResponse sendBatch(List<byte[]> envelopes) throws IOException {
+        lock.lock();
+        try {
+            int length = 0;
+            for (byte[] line : envelopes) {
+                length += line.length + 1;
+            }
+            OutputStream body = beginPut("application/x-ndjson", length);
+            for (byte[] line : envelopes) {
+                body.write(line);
+                body.write('\n');
+            }
+            out.flush();
+            return readResponse();
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // Write the PUT request line
-        out.write("PUT /weather HTTP/1.1\r\n");
+    /**
+     * Sends one observation already wrapped by {@link #writeEnvelope} as a PUT request, without logging it
+     *
+     * @return The response of the server
+     * @throws IOException When the request could not be sent or the server did not answer
+     */
+    public HttpResponse sendEnvelope(JsonWriter envelope) throws IOException {
+        lock.lock();
+        try {
+            envelope.writeTo(beginPut("application/json", envelope.size()));
+            out.flush();
+            return readResponse();
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // Write the headers
-        out.write("Content-Type: application/json\r\n");
-        out.write("Content-Length: " + contentLength + "\r\n");
+    /**
+     * Wraps an observation with the content server's timestamps, as the server expects it
+     *
+     * @param observation The observation as compact UTF-8 JSON
+     * @param logicTime   Content server Lamport time of sending it
+     */
+    static void writeEnvelope(JsonWriter writer, byte[] observation, long logicTime) {
+        // Add timestamp to the data
+        long systemTime = System.nanoTime();
+        writer.beginObject().name("data").rawValue(observation)
+                .name("SystemTimestamp").value(systemTime)
+                .name("LogicTimestamp").value(logicTime)
+                .endObject();
+    }
 
-        // Write the blank line to indicate the end of headers
-        out.write("\r\n");
-        out.flush();  // Flush the stream to ensure headers are sent separately
+    /**
+     * Sends the observations of the current batch now, without waiting for it to fill up
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            flushBatch();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to send data to the server.", e);
+            throw new RuntimeException("Failed to send data to the server. Please check network connection.", e);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // Write the body content
-        out.write(data);
+    // Caller holds the lock
+    private void flushBatch() throws IOException {
+        if (batched == 0) {
+            return;
+        }
+        if (lingerFlush != null) {
+            lingerFlush.cancel(false);
+            lingerFlush = null;
+        }
+        int count = batched;
+        batch.writeTo(beginPut("application/x-ndjson", batch.size()));
         out.flush();
+        batch.reset();
+        batched = 0;
+        logger.fine("Batch of " + count + " observations sent to server");
+        checkResponse(readResponse(), count);
+    }
 
-        // Debug Track
-        System.out.println("Data sent to server:\n" + data);
+    private void lingerExpired() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Already logged, the next send or flush reports the broken connection to the caller
+        }
+    }
+
+    private ScheduledExecutorService lingerTimer() {
+        if (lingerTimer == null) {
+            lingerTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "content-sender-linger");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return lingerTimer;
+    }
+
+    private OutputStream beginPut(String contentType, int contentLength) throws IOException {
+        if (out == null) {
+            out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        // Write the PUT request line
+        String head = "PUT /weather HTTP/1.1\r\n" +
+                // Write the headers
+                "Host: " + socket.getInetAddress().getHostName() + ":" + socket.getPort() + "\r\n" +
+                "Content-Type: " + contentType + "\r\n" +
+                "Content-Length: " + contentLength + "\r\n" +
+                "Content-Server-Id: " + SOURCE_ID + "\r\n" +
+                "Connection: keep-alive\r\n" +
+                // Write the blank line to indicate the end of headers
+                "\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        return out;
+    }
+
+    // A batch is answered with the status of every observation, rejected ones are logged
+    private void checkResponse(HttpResponse response, int count) {
+        if (response.status() != 200 && response.status() != 201) {
+            logger.warning("Server rejected the data: " + response);
+            return;
+        }
+        if (count > 1) {
+            try {
+                int failed = new JSONObject(response.body()).optInt("failed");
+                if (failed > 0) {
+                    logger.warning("Server rejected " + failed + " of " + count + " observations: " + response.body());
+                }
+            } catch (JSONException e) {
+                logger.warning("Server did not report the status of the batch: " + response);
+            }
+        }
+    }
+
+    private HttpResponse readResponse() throws IOException {
+        if (in == null) {
+            in = socket.getInputStream();
+        }
+        boolean endOfStream = false;
+        while (true) {
+            HttpResponse response = decoder.nextResponse(endOfStream);
+            if (response != null) {
+                receiveClock(response);
+                return response;
+            }
+            if (endOfStream) {
+                throw new IOException("Server closed the connection before responding.");
+            }
+            int read = in.read(readBuffer);
+            if (read < 0) {
+                endOfStream = true;
+            } else {
+                decoder.feed(readBuffer, 0, read);
+            }
+        }
+    }
+
+    // The server orders a station's updates by their Lamport time, so the next ones must be stamped after its time
+    private void receiveClock(HttpResponse response) {
+        String serverClock = response.header("Lamport-Clock");
+        if (serverClock == null) {
+            return;
+        }
+        try {
+            clock.update(Long.parseLong(serverClock.trim()));
+        } catch (NumberFormatException e) {
+            logger.warning("Ignoring an invalid Lamport-Clock header: " + serverClock);
+        }
+    }
+
+    /**
+     * Sends what is left in the current batch, then closes the connection
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Already logged, the connection is closed regardless
+        }
+        if (lingerTimer != null) {
+            lingerTimer.shutdownNow();
+        }
+        closeSocket();
     }
 
     private void closeSocket() {
@@ -1,10 +1,13 @@
 package weather.Content;
 
 import weather.lamport.LamportClockImpl;
+import weather.utils.ConfigProperties;
 
+import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 public class ContentServer {
@@ -16,6 +19,10 @@ public class ContentServer {
         int serverPort = 4567;
         String filePath = "Data/weatherTest.txt";  // Default file path
         int numberOfContent = 5;  // Default number of servers
+        int putsPerConnection = 1;  // Default one PUT per content server
+        String mode = "";  // Default upload the file once
+        int batchSize = 1;  // Default one observation per PUT
+        long lingerMillis = 50;  // Default wait for a batch to fill up
 
         // Parse command-line arguments
         if (args.length >= 1) {
@@ -40,6 +47,49 @@ public class ContentServer {
                 logger.severe("Invalid number of servers provided. Using default value: 5.");
             }
         }
+        if (args.length >= 5) {
+            try {
+                // Parse the number of PUT requests each content server sends over its connection
+                putsPerConnection = Integer.parseInt(args[4]);
+            } catch (NumberFormatException e) {
+                logger.severe("Invalid number of PUT requests per connection provided. Using default value: 1.");
+            }
+        }
+        if (args.length >= 6) {
+            try {
+                // Parse how many observations are sent per PUT request
+                batchSize = Integer.parseInt(args[5]);
+            } catch (NumberFormatException e) {
+                logger.severe("Invalid batch size provided. Using default value: 1.");
+            }
+        }
+        if (args.length >= 7) {
+            try {
+                // Parse how long an incomplete batch waits for more observations
+                lingerMillis = Long.parseLong(args[6]);
+            } catch (NumberFormatException e) {
+                logger.severe("Invalid linger time provided. Using default value: 50.");
+            }
+        }
+        if (args.length >= 8) {
+            // "follow" keeps running and uploads what is appended to the file or directory,
+            // "load" sends observations made from the file at the rate set in content.properties
+            mode = args[7].toLowerCase();
+        }
+
+        // Spool settings; each content server spools to its own directory
+        ConfigProperties props = ConfigProperties.load("content.properties");
+        SpoolConfig spool = SpoolConfig.from(props);
+
+        if (mode.equals("load")) {
+            generateLoad(new ContentServerConfig(serverHostname, serverPort, filePath), LoadConfig.from(props));
+            return;
+        }
+        if (mode.equals("follow")) {
+            followFile(new ContentServerConfig(serverHostname, serverPort, filePath, 1, batchSize, lingerMillis,
+                    (spool != null) ? spool.forContentServer(1) : null), TailConfig.from(props));
+            return;
+        }
 
         // Create a fixed thread pool using the number of content servers
         ExecutorService executorService = Executors.newFixedThreadPool(numberOfContent);
@@ -48,7 +98,8 @@ public class ContentServer {
 
         // Launch multiple content servers
         for (int i = 1; i <= numberOfContent; i++) {
-            ContentServerConfig config = new ContentServerConfig(serverHostname, serverPort, filePath);
+            ContentServerConfig config = new ContentServerConfig(serverHostname, serverPort, filePath, putsPerConnection,
+                    batchSize, lingerMillis, (spool != null) ? spool.forContentServer(i) : null);
             ContentServerActivator activator = new ContentServerActivator(config, lamportClock);
 
             /* Core Step: Submit each content server to the executor service */
@@ -73,4 +124,34 @@ public class ContentServer {
             executorService.shutdownNow();
         }
     }
+
+    private static void generateLoad(ContentServerConfig config, LoadConfig loadConfig) {
+        try {
+            new LoadGenerator(config, loadConfig, new LamportClockImpl()).run();
+        } catch (IOException e) {
+            logger.severe("Failed to read the template " + config.getFilePath() + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A single content server uploads the new records until the process is stopped
+    private static void followFile(ContentServerConfig config, TailConfig tailConfig) {
+        AtomicReference<ContentFileWatcher> watcher = new AtomicReference<>();
+        Thread follower = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                if (watcher.get() != null) {
+                    watcher.get().close();
+                }
+                follower.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (IOException e) {
+                logger.warning("Failed to stop following " + config.getFilePath() + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        System.out.println("Following " + config.getFilePath() + ", stop with Ctrl+C");
+        new ContentServerActivator(config, new LamportClockImpl()).follow(tailConfig, watcher::set);
+    }
 }
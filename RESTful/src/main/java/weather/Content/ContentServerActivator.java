@@ -1,9 +1,13 @@
 package weather.Content;
 
 import weather.lamport.LamportClockImpl;
+import weather.utils.JsonWriter;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,12 +22,17 @@ public class ContentServerActivator {
     }
 
     public void run() {
-        try (Socket socket = new Socket(config.getServerHostname(), config.getServerPort())) {
+        if (config.spool() != null) {
+            runSpooled();
+            return;
+        }
+        try (Socket socket = new Socket(config.getServerHostname(), config.getServerPort());
+             ContentSenderService senderService = new ContentSenderService(socket, clock,
+                     config.batchSize(), config.lingerMillis())) {
             ContentReaderService readerService = new ContentReaderService(config.getFilePath());
-            ContentSenderService senderService = new ContentSenderService(socket, clock);
             ContentServerService serverService = new ContentServerService(readerService, senderService);
 
-            Thread sendThread = new Thread(serverService::processAndSendFile);
+            Thread sendThread = new Thread(() -> serverService.processAndSendFile(config.putsPerConnection()));
             sendThread.start();
             sendThread.join();
         } catch (IOException e) {
@@ -33,4 +42,77 @@ public class ContentServerActivator {
             Thread.currentThread().interrupt();  // Restore the interrupted status
         }
     }
+
+    /**
+     * Follows the file or directory and uploads the records appended to it, until the watcher is closed.
+     * Observations go through the spool if one is configured, otherwise they are sent directly after every scan.
+     */
+    public void follow(TailConfig tailConfig, Consumer<ContentFileWatcher> onStart) {
+        Path source = Paths.get(config.getFilePath());
+        Path checkpoint = Paths.get(tailConfig.checkpointFile());
+        SpoolConfig spoolConfig = config.spool();
+        try {
+            if (spoolConfig == null) {
+                try (Socket socket = new Socket(config.getServerHostname(), config.getServerPort());
+                     ContentSenderService senderService = new ContentSenderService(socket, clock,
+                             config.batchSize(), config.lingerMillis())) {
+                    watch(source, checkpoint, tailConfig, onStart, new ContentFileWatcher.RecordSink() {
+                        @Override
+                        public void accept(byte[] observation) {
+                            senderService.send(observation);
+                        }
+
+                        @Override
+                        public void endOfScan() {
+                            senderService.flush();
+                        }
+                    });
+                }
+                return;
+            }
+            try (ContentSpool spool = ContentSpool.open(Paths.get(spoolConfig.directory()), spoolConfig.segmentBytes(), spoolConfig.fsync());
+                 ContentSpoolDrainer drainer = new ContentSpoolDrainer(spool, config, clock)) {
+                drainer.start();
+                JsonWriter envelope = new JsonWriter(1024);
+                watch(source, checkpoint, tailConfig, onStart, observation -> {
+                    envelope.reset();
+                    ContentSenderService.writeEnvelope(envelope, observation, spool.stamp(clock));
+                    spool.append(envelope.toByteArray());
+                });
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to follow " + source, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();  // Restore the interrupted status
+        }
+    }
+
+    private static void watch(Path source, Path checkpoint, TailConfig tailConfig, Consumer<ContentFileWatcher> onStart,
+                              ContentFileWatcher.RecordSink sink) throws IOException, InterruptedException {
+        try (ContentFileWatcher watcher = new ContentFileWatcher(source, checkpoint, tailConfig.settleMillis(), sink)) {
+            onStart.accept(watcher);
+            watcher.run();
+        }
+    }
+
+    /**
+     * Spools the file and waits until the drainer sent all of it; if the server stays unreachable until the
+     * content server is stopped, the spooled observations are sent on its next start
+     */
+    private void runSpooled() {
+        SpoolConfig spoolConfig = config.spool();
+        try (ContentSpool spool = ContentSpool.open(Paths.get(spoolConfig.directory()), spoolConfig.segmentBytes(), spoolConfig.fsync());
+             ContentSpoolDrainer drainer = new ContentSpoolDrainer(spool, config, clock)) {
+            drainer.start();
+            ContentReaderService readerService = new ContentReaderService(config.getFilePath());
+            new ContentServerService(readerService, spool, clock).processAndSendFile(config.putsPerConnection());
+            drainer.awaitDrained();
+            logger.info("All observations of " + config.getFilePath() + " were sent");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to read the file or to use the spool.", e);
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Stopped before all spooled observations were sent.", e);
+            Thread.currentThread().interrupt();  // Restore the interrupted status
+        }
+    }
 }
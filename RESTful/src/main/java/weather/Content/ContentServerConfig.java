@@ -1,6 +1,26 @@
 package weather.Content;
 
-public record ContentServerConfig(String serverHostname, int serverPort, String filePath) {
+/**
+ * @param putsPerConnection How many times each content server sends the file over its kept-alive connection
+ * @param batchSize         Observations sent per PUT request, 1 sends each observation on its own
+ * @param lingerMillis      How long an incomplete batch waits for more observations before it is sent
+ * @param spool             Spool the observations are sent from, null sends them directly and loses them if that fails
+ */
+public record ContentServerConfig(String serverHostname, int serverPort, String filePath, int putsPerConnection,
+                                  int batchSize, long lingerMillis, SpoolConfig spool) {
+    public ContentServerConfig(String serverHostname, int serverPort, String filePath) {
+        this(serverHostname, serverPort, filePath, 1);
+    }
+
+    public ContentServerConfig(String serverHostname, int serverPort, String filePath, int putsPerConnection) {
+        this(serverHostname, serverPort, filePath, putsPerConnection, 1, 0);
+    }
+
+    public ContentServerConfig(String serverHostname, int serverPort, String filePath, int putsPerConnection,
+                               int batchSize, long lingerMillis) {
+        this(serverHostname, serverPort, filePath, putsPerConnection, batchSize, lingerMillis, null);
+    }
+
     public String getServerHostname() {
         return serverHostname;
     }
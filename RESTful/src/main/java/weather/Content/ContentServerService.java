@@ -1,5 +1,8 @@
 package weather.Content;
 
+import weather.lamport.LamportClock;
+import weather.utils.JsonWriter;
+
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -9,19 +12,71 @@ public class ContentServerService {
 
     private final ContentReaderService readerService;
     private final ContentSenderService senderService;
+    private final ContentSpool spool;
+    private final LamportClock clock;
 
     public ContentServerService(ContentReaderService readerService, ContentSenderService senderService) {
         this.readerService = readerService;
         this.senderService = senderService;
+        this.spool = null;
+        this.clock = null;
+    }
+
+    /**
+     * Appends the observations to the spool instead, a {@link ContentSpoolDrainer} sends them from there
+     */
+    public ContentServerService(ContentReaderService readerService, ContentSpool spool, LamportClock clock) {
+        this.readerService = readerService;
+        this.senderService = null;
+        this.spool = spool;
+        this.clock = clock;
     }
 
     public void processAndSendFile() {
+        processAndSendFile(1);
+    }
+
+    /**
+     * Sends every station record of the file, the given number of times, over the same connection.
+     * Records are read and sent one at a time, so the file is never held in memory.
+     */
+    public void processAndSendFile(int times) {
+        if (spool != null) {
+            spoolFile(times);
+            return;
+        }
         try {
-            String data = readerService.readFile();
-            senderService.sendJsonToServer(data);
+            for (int i = 0; i < times; i++) {
+                try (ContentRecordReader records = readerService.openRecords()) {
+                    for (byte[] record = records.next(); record != null; record = records.next()) {
+                        senderService.send(record);
+                    }
+                }
+            }
+            senderService.flush();
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Error processing and sending file.", e);
             throw new RuntimeException("Error processing and sending file.", e);
         }
     }
+
+    // Each observation is wrapped with its timestamps once, retries send the spooled envelope as it is
+    private void spoolFile(int times) {
+        JsonWriter envelope = new JsonWriter(1024);
+        try {
+            for (int i = 0; i < times; i++) {
+                try (ContentRecordReader records = readerService.openRecords()) {
+                    for (byte[] record = records.next(); record != null; record = records.next()) {
+                        envelope.reset();
+                        ContentSenderService.writeEnvelope(envelope, record, spool.stamp(clock));
+                        spool.append(envelope.toByteArray());
+                    }
+                    logger.info("Spooled " + records.records() + " observations, " + spool.size() + " waiting to be sent");
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error spooling file.", e);
+            throw new RuntimeException("Error spooling file.", e);
+        }
+    }
 }
@@ -0,0 +1,396 @@
+package weather.Content;
+
+import weather.lamport.LamportClock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Durable FIFO queue of observations waiting to be sent, so they survive an unreachable aggregation server and a
+ * restart of the content server.
+ * <p>
+ * Records are appended as lines to numbered segment files in the spool directory (spool.000001, ...). The sender
+ * {@link #peek(int) peeks} a batch, and {@link #acknowledge(int) acknowledges} it once the server stored it; the read
+ * position is kept in a checkpoint file and fully acknowledged segments are deleted. Records are only handed to the
+ * operating system when appended, unless fsync is enabled, so they survive a crash of the content server but not
+ * necessarily one of the machine.
+ * <p>
+ * Records are {@link #stamp(LamportClock) stamped} through the spool, which keeps a bound of the Lamport times it
+ * handed out in a clock file. A restarted content server continues after them instead of at 1, otherwise the server
+ * would place its fresh observations behind the ones stamped before the restart.
+ */
+public class ContentSpool implements Closeable {
+    private static final Logger logger = Logger.getLogger(ContentSpool.class.getName());
+    private static final String PREFIX = "spool.";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String CLOCK = "clock";
+    // Lamport times reserved per write of the clock file
+    private static final long CLOCK_RESERVE = 1024;
+    private static final int READ_CHUNK = 64 * 1024;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // All fields below are guarded by lock
+    private FileChannel writeChannel;
+    private long writeSegment;
+    private long readSegment;
+    private long readOffset;
+    // Records not acknowledged yet
+    private long size;
+    // Read positions after each record of the last peek, so an acknowledgement knows where to continue
+    private final List<long[]> peekedEnds = new ArrayList<>();
+    // No Lamport time stamped through this spool, in this or an earlier run, exceeds the bound in the clock file
+    private long clockBound;
+    private long restoredClockBound;
+    private boolean closed;
+
+    private ContentSpool(Path directory, long segmentBytes, boolean fsync) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Opens the spool, creating the directory if needed; records left unacknowledged by an earlier run are kept in order
+     *
+     * @param segmentBytes Size after which appends continue in a new segment file
+     * @param fsync        True syncs every append to disk before it returns
+     */
+    public static ContentSpool open(Path directory, long segmentBytes, boolean fsync) throws IOException {
+        Files.createDirectories(directory);
+        ContentSpool spool = new ContentSpool(directory, segmentBytes, fsync);
+        spool.recover();
+        return spool;
+    }
+
+    /**
+     * Appends a record to the end of the spool
+     *
+     * @param record A single line of UTF-8 JSON, without line break
+     */
+    public void append(byte[] record) throws IOException {
+        ByteBuffer line = ByteBuffer.allocate(record.length + 1).put(record).put((byte) '\n').flip();
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Spool " + directory + " is closed");
+            }
+            if (writeChannel.size() >= segmentBytes) {
+                startSegment(writeSegment + 1);
+            }
+            while (line.hasRemaining()) {
+                writeChannel.write(line);
+            }
+            if (fsync) {
+                writeChannel.force(false);
+            }
+            size++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ticks the clock for a record about to be appended, first moving it past every time an earlier run stamped
+     *
+     * @return The Lamport time of the record
+     */
+    public long stamp(LamportClock clock) throws IOException {
+        lock.lock();
+        try {
+            if (clock.getTime() < restoredClockBound) {
+                clock.update(restoredClockBound);
+            }
+            long time = clock.incrementAndGet();
+            if (time > clockBound) {
+                // Written before the time is used, so a crash never loses a time that was stamped
+                clockBound = time + CLOCK_RESERVE;
+                writeAtomically(CLOCK, clockBound + "\n");
+            }
+            return time;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of records appended but not acknowledged yet
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until at least count records are waiting, or the timeout passed
+     *
+     * @return True if any record is waiting
+     */
+    public boolean awaitRecords(int count, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (size < count && remaining > 0 && !closed) {
+                remaining = changed.awaitNanos(remaining);
+            }
+            return size > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record was acknowledged
+     */
+    public void awaitEmpty() throws InterruptedException {
+        lock.lock();
+        try {
+            while (size > 0 && !closed) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads up to max of the oldest records without removing them; peeking again returns the same records
+     */
+    public List<byte[]> peek(int max) throws IOException {
+        lock.lock();
+        try {
+            peekedEnds.clear();
+            List<byte[]> records = new ArrayList<>();
+            for (long segment = readSegment; segment <= writeSegment && records.size() < max; segment++) {
+                readRecords(segment, (segment == readSegment) ? readOffset : 0, max, records);
+            }
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the first count records of the last peek, e.g. once the server stored them
+     */
+    public void acknowledge(int count) throws IOException {
+        if (count <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (count > peekedEnds.size()) {
+                throw new IllegalArgumentException("Only " + peekedEnds.size() + " records were peeked, not " + count);
+            }
+            long[] end = peekedEnds.get(count - 1);
+            peekedEnds.clear();
+            long previousSegment = readSegment;
+            readSegment = end[0];
+            readOffset = end[1];
+            size -= count;
+            writeCheckpoint();
+            for (long segment = previousSegment; segment < readSegment; segment++) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+            writeChannel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Adds the complete records of the segment from the offset, up to max records in total
+    private void readRecords(long segment, long offset, int max, List<byte[]> records) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            byte[] chunk = new byte[READ_CHUNK];
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            ByteArrayOutputStream record = new ByteArrayOutputStream(512);
+            long position = offset;
+            int read;
+            while (records.size() < max && (read = channel.read(buffer.clear(), position)) > 0) {
+                int lineStart = 0;
+                for (int i = 0; i < read && records.size() < max; i++) {
+                    if (chunk[i] != '\n') {
+                        continue;
+                    }
+                    record.write(chunk, lineStart, i - lineStart);
+                    if (record.size() > 0) {
+                        records.add(record.toByteArray());
+                        peekedEnds.add(new long[]{segment, position + i + 1});
+                    }
+                    record.reset();
+                    lineStart = i + 1;
+                }
+                // A record without its line break is still being written, it is read on a later peek
+                record.write(chunk, lineStart, read - lineStart);
+                position += read;
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        clockBound = readClockBound();
+        restoredClockBound = clockBound;
+        List<Long> segments = listSegments();
+        long[] checkpoint = readCheckpoint();
+        long first = segments.isEmpty() ? 1 : segments.get(0);
+        readSegment = (checkpoint != null) ? Math.max(checkpoint[0], first) : first;
+        readOffset = (checkpoint != null && checkpoint[0] == readSegment) ? checkpoint[1] : 0;
+        for (long segment : segments) {
+            if (segment < readSegment) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        }
+
+        writeSegment = segments.isEmpty() ? readSegment : Math.max(readSegment, segments.get(segments.size() - 1));
+        writeChannel = FileChannel.open(segmentPath(writeSegment), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        truncateTornRecord();
+        writeChannel.position(writeChannel.size());
+
+        for (long segment = readSegment; segment <= writeSegment; segment++) {
+            if (Files.exists(segmentPath(segment))) {
+                size += countRecords(segment, (segment == readSegment) ? readOffset : 0);
+            }
+        }
+        if (size > 0) {
+            logger.info("Spool " + directory + " holds " + size + " observations not sent yet");
+        }
+    }
+
+    private long countRecords(long segment, long offset) throws IOException {
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK);
+            long position = offset;
+            boolean inRecord = false;
+            int read;
+            while ((read = channel.read(buffer.clear(), position)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        count += inRecord ? 1 : 0;
+                        inRecord = false;
+                    } else {
+                        inRecord = true;
+                    }
+                }
+                position += read;
+            }
+        }
+        return count;
+    }
+
+    // A crash can leave half a record at the end of the last segment; cut it off at the last line break
+    private void truncateTornRecord() throws IOException {
+        long size = writeChannel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        long end = size;
+        while (end > 0) {
+            writeChannel.read(buffer.clear(), end - 1);
+            if (buffer.get(0) == '\n') {
+                break;
+            }
+            end--;
+        }
+        if (end < size) {
+            logger.warning("Dropping " + (size - end) + " bytes of a torn record at the end of the spool");
+            writeChannel.truncate(end);
+        }
+    }
+
+    private void startSegment(long segment) throws IOException {
+        writeChannel.close();
+        writeChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        writeSegment = segment;
+    }
+
+    private void writeCheckpoint() throws IOException {
+        writeAtomically(CHECKPOINT, readSegment + " " + readOffset + "\n");
+    }
+
+    // Written aside and moved over the previous one, so a crash never leaves a half written file
+    private void writeAtomically(String name, String content) throws IOException {
+        Path tempFile = directory.resolve(name + ".tmp");
+        Files.writeString(tempFile, content, StandardCharsets.US_ASCII);
+        Files.move(tempFile, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long readClockBound() throws IOException {
+        Path file = directory.resolve(CLOCK);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(file, StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            logger.warning("Ignoring the unreadable spool clock " + file);
+            return 0;
+        }
+    }
+
+    private long[] readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String[] parts = Files.readString(file, StandardCharsets.US_ASCII).trim().split(" ");
+        try {
+            return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+        } catch (RuntimeException e) {
+            logger.warning("Ignoring the unreadable spool checkpoint " + file);
+            return null;
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(PREFIX + String.format("%06d", segment));
+    }
+
+    // Segment numbers present on disk, in ascending order
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.length() > PREFIX.length()
+                            && name.substring(PREFIX.length()).chars().allMatch(Character::isDigit))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
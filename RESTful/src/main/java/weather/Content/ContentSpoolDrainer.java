@@ -0,0 +1,190 @@
+package weather.Content;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import weather.http.HttpResponse;
+import weather.lamport.LamportClockImpl;
+import weather.utils.Backoff;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background sender draining a {@link ContentSpool} to the aggregation server, oldest observations first.
+ * Each batch is only removed from the spool once the server answered it. While the server is unreachable or
+ * overloaded the same batch is retried after an exponential backoff with jitter, honouring a Retry-After header, so
+ * after an outage the spooled observations are caught up in full batches without re-reading the source file.
+ * <p>
+ * A batch whose response was lost, e.g. by a timeout, is sent again; observations are delivered at least once.
+ */
+public class ContentSpoolDrainer implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(ContentSpoolDrainer.class.getName());
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final int CONNECT_TIMEOUT_MS = 5_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private final ContentSpool spool;
+    private final ContentServerConfig config;
+    private final LamportClockImpl clock;
+    private final Backoff backoff;
+    private final Thread drainer;
+    private volatile boolean running = true;
+    // Only used by the drainer thread
+    private ContentSenderService connection;
+    private boolean reused;
+
+    public ContentSpoolDrainer(ContentSpool spool, ContentServerConfig config, LamportClockImpl clock) {
+        this.spool = spool;
+        this.config = config;
+        this.clock = clock;
+        this.backoff = new Backoff(config.spool().retryInitialMillis(), config.spool().retryMaxMillis());
+        this.drainer = new Thread(this::drainLoop, "content-spool-drainer");
+        drainer.setDaemon(true);
+    }
+
+    public void start() {
+        drainer.start();
+    }
+
+    /**
+     * Waits until the server stored every spooled observation
+     */
+    public void awaitDrained() throws InterruptedException {
+        spool.awaitEmpty();
+    }
+
+    /**
+     * Stops sending, observations still in the spool are sent by the next drainer of the same spool
+     */
+    @Override
+    public void close() {
+        running = false;
+        drainer.interrupt();
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        disconnect();
+    }
+
+    private void drainLoop() {
+        int batchSize = Math.max(1, config.batchSize());
+        while (running) {
+            try {
+                if (!spool.awaitRecords(1, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+                // Give a partial batch up to the linger time to fill up
+                spool.awaitRecords(batchSize, config.lingerMillis(), TimeUnit.MILLISECONDS);
+                List<byte[]> batch = spool.peek(batchSize);
+                long retryAfterMillis = send(batch);
+                if (retryAfterMillis >= 0) {
+                    long delay = Math.max(retryAfterMillis, backoff.nextDelayMillis());
+                    logger.warning("Sending " + batch.size() + " spooled observations failed, retry " + backoff.attempts()
+                            + " in " + delay + " ms, " + spool.size() + " observations waiting");
+                    Thread.sleep(delay);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to read or update the spool, stop sending", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return -1 if the batch is done with, otherwise the least time in milliseconds to wait before retrying it
+     */
+    private long send(List<byte[]> batch) throws IOException {
+        HttpResponse response;
+        try {
+            response = connect().sendBatch(batch);
+        } catch (IOException e) {
+            boolean stale = reused;
+            disconnect();
+            if (!stale) {
+                logger.log(Level.WARNING, "Aggregation server unreachable: " + e.getMessage());
+                return 0;
+            }
+            // The server may have closed the idle connection, try once more on a new one before backing off
+            try {
+                response = connect().sendBatch(batch);
+            } catch (IOException retry) {
+                disconnect();
+                logger.log(Level.WARNING, "Aggregation server unreachable: " + retry.getMessage());
+                return 0;
+            }
+        }
+        reused = true;
+
+        int status = response.status();
+        if (status == 429 || status >= 500) {
+            // Overloaded or failing to store, the batch is still wanted
+            return retryAfterMillis(response);
+        }
+        if (status == 200 || status == 201) {
+            reportRejected(response, batch.size());
+        } else {
+            // The batch as a whole is malformed, sending it again cannot succeed
+            logger.warning("Server rejected " + batch.size() + " spooled observations, dropping them: " + response);
+        }
+        spool.acknowledge(batch.size());
+        backoff.reset();
+        return -1;
+    }
+
+    private ContentSenderService connect() throws IOException {
+        if (connection == null) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(config.getServerHostname(), config.getServerPort()), CONNECT_TIMEOUT_MS);
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            connection = new ContentSenderService(socket, clock);
+            reused = false;
+            if (backoff.attempts() > 0) {
+                logger.info("Aggregation server reachable again, sending " + spool.size() + " spooled observations");
+            }
+        }
+        return connection;
+    }
+
+    private void disconnect() {
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    private static long retryAfterMillis(HttpResponse response) {
+        String retryAfter = response.header("Retry-After");
+        try {
+            return (retryAfter == null) ? 0 : TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Single observations the server refused would be refused again, they are logged and not retried
+    private static void reportRejected(HttpResponse response, int count) {
+        try {
+            int failed = new JSONObject(response.body()).optInt("failed");
+            if (failed > 0) {
+                logger.warning("Server rejected " + failed + " of " + count + " spooled observations: " + response.body());
+            }
+        } catch (JSONException e) {
+            logger.warning("Server did not report the status of the batch: " + response);
+        }
+    }
+}
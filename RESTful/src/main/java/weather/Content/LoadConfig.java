@@ -0,0 +1,36 @@
+package weather.Content;
+
+import weather.utils.ConfigProperties;
+
+/**
+ * @param rate            PUT requests per second the {@link LoadGenerator} aims for, whatever the server's latency
+ * @param stations        Simulated stations the requests are spread over, each with its own station id
+ * @param connections     Kept-alive connections the requests are spread over; each carries at most one request at a
+ *                        time, so it must be at least the rate times the expected latency in seconds
+ * @param durationSeconds How long the load is applied
+ */
+public record LoadConfig(int rate, int stations, int connections, int durationSeconds) {
+
+    public static LoadConfig defaults() {
+        return new LoadConfig(1000, 100, 16, 30);
+    }
+
+    /**
+     * Reads the load generation settings from the given settings, missing entries keep their default
+     */
+    public static LoadConfig from(ConfigProperties props) {
+        LoadConfig defaults = defaults();
+        return new LoadConfig(
+                Math.max(1, props.getInt("load.rate", defaults.rate())),
+                Math.max(1, props.getInt("load.stations", defaults.stations())),
+                Math.max(1, props.getInt("load.connections", defaults.connections())),
+                Math.max(1, props.getInt("load.durationSeconds", defaults.durationSeconds())));
+    }
+
+    /**
+     * @return How many requests are sent in total
+     */
+    public long totalRequests() {
+        return (long) rate * durationSeconds;
+    }
+}
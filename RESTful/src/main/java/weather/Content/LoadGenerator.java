@@ -0,0 +1,189 @@
+package weather.Content;
+
+import org.json.JSONObject;
+import weather.http.HttpResponse;
+import weather.lamport.LamportClockImpl;
+import weather.utils.JsonWriter;
+import weather.utils.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Open-loop load generator: sends PUT requests at a fixed rate, however fast the aggregation server answers, to find
+ * out how much load it absorbs and at what latency.
+ * <p>
+ * Request k is due at start + k / rate and is spread, with its station, round robin over the connections. A request
+ * whose connection is still busy with an earlier one is sent late, and its latency is measured from the time it was
+ * due rather than from when it was sent. A server that stalls therefore shows up in the percentiles with every request
+ * that would have been sent meanwhile, instead of hiding them by slowing the generator down (coordinated omission).
+ * <p>
+ * The observations are copies of the first record of the template file, one per simulated station, each with its own
+ * station id.
+ */
+public class LoadGenerator {
+    private static final Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+    private static final int CONNECT_TIMEOUT_MS = 5_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private final ContentServerConfig config;
+    private final LoadConfig load;
+    private final LamportClockImpl clock;
+
+    // What a connection sent, counted by its own thread and added up at the end
+    private static final class WorkerResult {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long succeeded;
+        private long rejected;
+        private long connectionErrors;
+    }
+
+    public LoadGenerator(ContentServerConfig config, LoadConfig load, LamportClockImpl clock) {
+        this.config = config;
+        this.load = load;
+        this.clock = clock;
+    }
+
+    /**
+     * Applies the load for the configured duration, then prints throughput, errors and latency percentiles
+     */
+    public void run() throws IOException, InterruptedException {
+        byte[][] observations = stationObservations();
+        int connections = (int) Math.min(load.connections(), load.totalRequests());
+        List<WorkerResult> results = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        // Leaves time to start every connection before the first request is due
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+
+        System.out.printf("Sending %,d PUT/s to %s:%d for %d s over %d connections, %d stations%n", load.rate(),
+                config.getServerHostname(), config.getServerPort(), load.durationSeconds(), connections, load.stations());
+        for (int i = 0; i < connections; i++) {
+            WorkerResult result = new WorkerResult();
+            int connection = i;
+            Thread worker = new Thread(() -> sendShare(connection, connections, start, observations, result),
+                    "load-generator-" + i);
+            results.add(result);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        report(results, elapsed);
+    }
+
+    /**
+     * Sends requests connection, connection + connections, ... each at the time it is due
+     */
+    private void sendShare(int connection, int connections, long start, byte[][] observations, WorkerResult result) {
+        JsonWriter envelope = new JsonWriter(1024);
+        ContentSenderService sender = null;
+        try {
+            for (long k = connection; k < load.totalRequests(); k += connections) {
+                long due = start + (long) (k * 1e9 / load.rate());
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                envelope.reset();
+                ContentSenderService.writeEnvelope(envelope, observations[(int) (k % observations.length)],
+                        clock.incrementAndGet());
+                try {
+                    if (sender == null) {
+                        sender = connect();
+                    }
+                    HttpResponse response = sender.sendEnvelope(envelope);
+                    result.latencies.recordValue(System.nanoTime() - due);
+                    if (response.status() == 200 || response.status() == 201) {
+                        result.succeeded++;
+                    } else if (result.rejected++ == 0) {
+                        logger.warning("Server rejected an observation: " + response);
+                    }
+                    if (response.closesConnection()) {
+                        sender.close();
+                        sender = null;
+                    }
+                } catch (IOException e) {
+                    if (result.connectionErrors++ == 0) {
+                        logger.log(Level.WARNING, "Request failed, reconnecting: " + e.getMessage());
+                    }
+                    if (sender != null) {
+                        sender.close();
+                        sender = null;
+                    }
+                }
+            }
+        } finally {
+            if (sender != null) {
+                sender.close();
+            }
+        }
+    }
+
+    private ContentSenderService connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(config.getServerHostname(), config.getServerPort()), CONNECT_TIMEOUT_MS);
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return new ContentSenderService(socket, clock);
+    }
+
+    // The template's first record, once per station with the station number appended to its id
+    private byte[][] stationObservations() throws IOException {
+        byte[] record;
+        try (ContentRecordReader records = new ContentReaderService(config.getFilePath()).openRecords()) {
+            record = records.next();
+        }
+        if (record == null) {
+            throw new IOException("No observation in the template " + config.getFilePath());
+        }
+        JSONObject template = new JSONObject(new String(record, StandardCharsets.UTF_8));
+        String id = template.optString("id", "IDS");
+        byte[][] observations = new byte[load.stations()][];
+        for (int i = 0; i < observations.length; i++) {
+            observations[i] = template.put("id", id + "-" + i).toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return observations;
+    }
+
+    private void report(List<WorkerResult> results, long elapsedNanos) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        long succeeded = 0;
+        long rejected = 0;
+        long connectionErrors = 0;
+        for (WorkerResult result : results) {
+            latencies.add(result.latencies);
+            succeeded += result.succeeded;
+            rejected += result.rejected;
+            connectionErrors += result.connectionErrors;
+        }
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Sent       %,d requests in %.1f s, %,.0f PUT/s (target %,d PUT/s)%n",
+                succeeded + rejected + connectionErrors, seconds, (succeeded + rejected) / seconds, load.rate());
+        System.out.printf("Succeeded  %,d%n", succeeded);
+        System.out.printf("Failed     %,d rejected by the server, %,d connection errors%n", rejected, connectionErrors);
+        System.out.printf("Latency from the time each request was due, ms:%n");
+        System.out.printf("  mean %.3f  p50 %.3f  p90 %.3f  p99 %.3f  p99.9 %.3f  p99.99 %.3f  max %.3f%n",
+                latencies.mean() / 1e6, millis(latencies.valueAtPercentile(50)), millis(latencies.valueAtPercentile(90)),
+                millis(latencies.valueAtPercentile(99)), millis(latencies.valueAtPercentile(99.9)),
+                millis(latencies.valueAtPercentile(99.99)), millis(latencies.max()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,46 @@
+package weather.Content;
+
+import weather.utils.ConfigProperties;
+
+import java.nio.file.Paths;
+
+/**
+ * @param directory          Where the {@link ContentSpool} keeps observations not sent yet, each content server of the
+ *                           process uses its own subdirectory
+ * @param segmentBytes       Size after which the spool continues in a new segment file
+ * @param fsync              True syncs every spooled observation to disk, false leaves it to the operating system
+ * @param retryInitialMillis Upper bound of the first retry delay after a failed send, doubled on every further failure
+ * @param retryMaxMillis     Upper bound the retry delay never exceeds
+ */
+public record SpoolConfig(String directory, long segmentBytes, boolean fsync, long retryInitialMillis, long retryMaxMillis) {
+
+    public static SpoolConfig defaults() {
+        return new SpoolConfig("Data/spool", 16L * 1024 * 1024, false, 100, 30_000);
+    }
+
+    /**
+     * Reads the spool settings from the given settings, missing entries keep their default
+     *
+     * @return The settings, or null if spooling is disabled
+     */
+    public static SpoolConfig from(ConfigProperties props) {
+        if (!props.getBoolean("spool.enabled", true)) {
+            return null;
+        }
+        SpoolConfig defaults = defaults();
+        return new SpoolConfig(
+                props.getString("spool.directory", defaults.directory()),
+                props.getLong("spool.segmentBytes", defaults.segmentBytes()),
+                props.getBoolean("spool.fsync", defaults.fsync()),
+                props.getLong("spool.retry.initialMillis", defaults.retryInitialMillis()),
+                props.getLong("spool.retry.maxMillis", defaults.retryMaxMillis()));
+    }
+
+    /**
+     * @return The settings of the given content server, spooling to its own subdirectory
+     */
+    public SpoolConfig forContentServer(int contentServer) {
+        return new SpoolConfig(Paths.get(directory, "content-" + contentServer).toString(), segmentBytes, fsync,
+                retryInitialMillis, retryMaxMillis);
+    }
+}
@@ -0,0 +1,24 @@
+package weather.Content;
+
+import weather.utils.ConfigProperties;
+
+/**
+ * @param checkpointFile Where {@link ContentFileWatcher} keeps the upload offset of every followed file
+ * @param settleMillis   How long a followed file must stay unmodified before its last record counts as complete
+ */
+public record TailConfig(String checkpointFile, long settleMillis) {
+
+    public static TailConfig defaults() {
+        return new TailConfig("Data/tail.checkpoint", 1000);
+    }
+
+    /**
+     * Reads the follow mode settings from the given settings, missing entries keep their default
+     */
+    public static TailConfig from(ConfigProperties props) {
+        TailConfig defaults = defaults();
+        return new TailConfig(
+                props.getString("tail.checkpointFile", defaults.checkpointFile()),
+                props.getLong("tail.settleMillis", defaults.settleMillis()));
+    }
+}
@@ -0,0 +1,27 @@
+package weather.client;
+
+import weather.utils.ConfigProperties;
+
+/**
+ * @param durationSeconds How long the {@link GETBenchmark} runs, unless a request count is given
+ * @param requests        Requests to send in total over all clients, 0 runs for the duration instead
+ * @param keepAlive       True sends all requests of a client over one kept-alive connection, false opens a new
+ *                        connection for every request
+ */
+public record BenchmarkConfig(int durationSeconds, long requests, boolean keepAlive) {
+
+    public static BenchmarkConfig defaults() {
+        return new BenchmarkConfig(10, 0, true);
+    }
+
+    /**
+     * Reads the benchmark settings from the given settings, missing entries keep their default
+     */
+    public static BenchmarkConfig from(ConfigProperties props) {
+        BenchmarkConfig defaults = defaults();
+        return new BenchmarkConfig(
+                Math.max(1, props.getInt("bench.durationSeconds", defaults.durationSeconds())),
+                Math.max(0, props.getLong("bench.requests", defaults.requests())),
+                props.getBoolean("bench.keepAlive", defaults.keepAlive()));
+    }
+}
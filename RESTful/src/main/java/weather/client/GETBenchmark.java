@@ -0,0 +1,112 @@
+package weather.client;
+
+import weather.http.HttpResponse;
+import weather.utils.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read side benchmark: a number of clients send GET requests at the same time, each its next one as soon as the
+ * previous one was answered, for a duration or a request count.
+ * The latency of every request goes into one {@link LatencyHistogram} shared by all clients; at the end the
+ * throughput and the latency percentiles are printed.
+ */
+public class GETBenchmark {
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    private final ClientConfig clientConfig;
+    private final int clients;
+    private final BenchmarkConfig config;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // Requests still to hand out, unused when running for a duration
+    private final AtomicLong remaining;
+
+    public GETBenchmark(ClientConfig clientConfig, int clients, BenchmarkConfig config) {
+        this.clientConfig = clientConfig;
+        this.clients = Math.max(1, clients);
+        this.config = config;
+        this.remaining = new AtomicLong(config.requests());
+    }
+
+    /**
+     * Runs all clients until the duration passed or the requests were sent, then prints the results
+     */
+    public void run() throws InterruptedException {
+        System.out.printf("%d clients sending GET requests to %s:%d for %s, %s%n", clients,
+                clientConfig.serverHostname(), clientConfig.serverPort(),
+                (config.requests() > 0) ? config.requests() + " requests" : config.durationSeconds() + " s",
+                config.keepAlive() ? "keeping connections alive" : "a new connection per request");
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Thread worker = new Thread(() -> runClient(start), "get-benchmark-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            // Reports the progress while waiting, reading the histogram while the clients record into it
+            while (worker.isAlive()) {
+                worker.join(PROGRESS_INTERVAL_MS);
+                if (worker.isAlive()) {
+                    System.out.printf("  %,d requests, p99 %.3f ms%n", latencies.totalCount(),
+                            latencies.valueAtPercentile(99) / 1e6);
+                }
+            }
+        }
+        report(System.nanoTime() - startTime);
+    }
+
+    private void runClient(CountDownLatch start) {
+        try (GETHandler handler = new GETHandler(clientConfig)) {
+            start.await();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+            while (hasNextRequest(deadline)) {
+                long sent = System.nanoTime();
+                try {
+                    HttpResponse response = handler.fetch();
+                    latencies.recordValue(System.nanoTime() - sent);
+                    if (response.status() == 200 || response.status() == 204 || response.status() == 304) {
+                        succeeded.increment();
+                    } else {
+                        failed.increment();
+                    }
+                } catch (IOException e) {
+                    failed.increment();
+                }
+                if (!config.keepAlive()) {
+                    handler.disconnect();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean hasNextRequest(long deadline) {
+        if (config.requests() > 0) {
+            return remaining.getAndDecrement() > 0;
+        }
+        return System.nanoTime() < deadline;
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long requests = succeeded.sum() + failed.sum();
+        System.out.printf("Requests   %,d in %.1f s, %,.0f requests/s%n", requests, seconds, requests / seconds);
+        System.out.printf("Failed     %,d%n", failed.sum());
+        System.out.printf("Latency, ms: mean %.3f  p50 %.3f  p99 %.3f  p99.9 %.3f  max %.3f%n",
+                latencies.mean() / 1e6, latencies.valueAtPercentile(50) / 1e6, latencies.valueAtPercentile(99) / 1e6,
+                latencies.valueAtPercentile(99.9) / 1e6, latencies.max() / 1e6);
+    }
+}
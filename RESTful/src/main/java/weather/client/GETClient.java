@@ -1,6 +1,9 @@
 package weather.client;
 
+import org.json.JSONException;
+import org.json.JSONObject;
 import weather.lamport.LamportClockImpl;
+import weather.utils.ConfigProperties;
 
 import java.util.concurrent.*;
 import java.util.logging.Logger;
@@ -31,6 +34,11 @@ public class GETClient {
                 logger.severe("Invalid number of clients provided. Using default number of clients: 5");
             }
         }
+        if (args.length >= 4 && args[3].equalsIgnoreCase("bench")) {
+            // All clients send requests at the same time, settings in client.properties
+            runBenchmark(new ClientConfig(host, port, null), numberOfClients);
+            return;
+        }
 
         ExecutorService executorService = Executors.newFixedThreadPool(numberOfClients);
         LamportClockImpl clock = new LamportClockImpl();
@@ -45,14 +53,16 @@ public class GETClient {
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                 }
-                return getHandler.requestData(); // Proceed the actual task
+                try (getHandler) {
+                    return getHandler.requestData(); // Proceed the actual task
+                }
             });
             try {
                 String response = future.get();
-                int logicTime = clock.incrementAndGet();
+                long logicTime = clock.incrementAndGet();
                 System.out.println("Current Logic Time: " + logicTime);
                 System.out.println("Current System Time:" + System.nanoTime());
-                System.out.println(response);
+                System.out.println(display(response));
                 Thread.sleep(500);
             } catch (ExecutionException | InterruptedException e) {
                 throw new RuntimeException(e);
@@ -69,4 +79,22 @@ public class GETClient {
             executorService.shutdownNow();
         }
     }
+
+    private static void runBenchmark(ClientConfig clientConfig, int numberOfClients) {
+        BenchmarkConfig benchmarkConfig = BenchmarkConfig.from(ConfigProperties.load("client.properties"));
+        try {
+            new GETBenchmark(clientConfig, numberOfClients, benchmarkConfig).run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The server sends compact JSON, indent it for reading
+    private static String display(String response) {
+        try {
+            return new JSONObject(response).toString(4);
+        } catch (JSONException e) {
+            return response; // e.g. "No content available from the server."
+        }
+    }
 }
@@ -1,50 +1,59 @@
 package weather.client;
 
+import weather.http.HttpDecoder;
+import weather.http.HttpResponse;
+
 import java.io.*;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class GETHandler {
+/**
+ * Sends GET requests to the Aggregation Server.
+ * The connection is kept alive between calls of {@link #requestData()} and reopened when the server closed it.
+ * The last response with an ETag is cached and its ETag sent as If-None-Match, so an unchanged observation is
+ * answered with 304 Not Modified and taken from the cache instead of being sent again.
+ */
+public class GETHandler implements AutoCloseable {
     private static final Logger logger = Logger.getLogger(GETHandler.class.getName());
+    private static final int READ_BUFFER_SIZE = 8192;
     private final ClientConfig clientConfig;
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private HttpDecoder decoder;
+    // Last response with a validator
+    private String cachedETag;
+    private String cachedBody;
 
     protected GETHandler(ClientConfig clientConfig) {
         this.clientConfig = clientConfig;
     }
 
     public String requestData() {
-        StringBuilder getData = new StringBuilder();
-
-        try (
-                Socket socket = (clientConfig.mockSocket() != null) ? clientConfig.mockSocket() : new Socket(clientConfig.serverHostname(), clientConfig.serverPort());
-                BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
-                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))
-        ) {
-            logger.log(Level.INFO, "Connected to server: " + clientConfig.serverHostname() + ":" + clientConfig.serverPort());
+        String getData = "";
 
-            // Send the GET request
-            out.write("GET /weather\r\n");
-            out.flush();
-            logger.log(Level.INFO, "Sent GET request to server");
-
-            // Read the HTTP status line
-            String statusLine = in.readLine();
-            logger.log(Level.INFO, "Received status line: " + statusLine);
+        try {
+            HttpResponse response = exchange();
+            logger.log(Level.INFO, "Received status line: HTTP/1.1 " + response);
 
             // Check if the status is 204 No Content
-            if (statusLine.contains("204")) {
+            if (response.status() == 204) {
                 logger.log(Level.WARNING, "Server returned 204 No Content");
                 return "No content available from the server.";
             }
 
-            // Read the rest of the response
-            String responseLine;
-            while ((responseLine = in.readLine()) != null) {
-                getData.append(responseLine).append("\n");
+            if (response.status() == 304 && cachedBody != null) {
+                logger.log(Level.INFO, "Data not modified, using the cached response");
+                return cachedBody;
             }
 
+            if (response.body() != null) {
+                getData = response.body();
+            }
             logger.log(Level.INFO, "Received data from server");
 
         } catch (UnknownHostException e) {
@@ -56,11 +65,104 @@ public class GETHandler {
         }
 
         // Check if data is empty or only contains an empty JSON object
-        if (getData.isEmpty() || getData.toString().trim().equals("{}")) {
+        if (getData.isEmpty() || getData.trim().equals("{}")) {
             logger.log(Level.WARNING, "No data received from the server");
             return "No data received from the server.";
         }
 
-        return getData.toString();
+        return getData;
+    }
+
+    /**
+     * Sends one GET request and returns the response as it is, without logging it
+     *
+     * @throws IOException When the request could not be sent or the server did not answer
+     */
+    public HttpResponse fetch() throws IOException {
+        return exchange();
+    }
+
+    // Sends the GET request and reads the response; a reused connection the server already closed is retried once
+    private HttpResponse exchange() throws IOException {
+        boolean reused = socket != null;
+        try {
+            return sendAndReceive();
+        } catch (IOException e) {
+            disconnect();
+            if (!reused || clientConfig.mockSocket() != null) {
+                throw e;
+            }
+            logger.log(Level.INFO, "Kept-alive connection was closed by the server, reconnecting");
+            return sendAndReceive();
+        }
+    }
+
+    private HttpResponse sendAndReceive() throws IOException {
+        connect();
+
+        // Send the GET request, with the validator of the cached response
+        String request = "GET /weather HTTP/1.1\r\n" +
+                "Host: " + clientConfig.serverHostname() + ":" + clientConfig.serverPort() + "\r\n" +
+                "Accept: application/json\r\n" +
+                ((cachedETag != null) ? "If-None-Match: " + cachedETag + "\r\n" : "") +
+                "\r\n";
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        logger.log(Level.FINE, "Sent GET request to server");
+
+        boolean endOfStream = false;
+        while (true) {
+            HttpResponse response = decoder.nextResponse(endOfStream);
+            if (response != null) {
+                if (response.closesConnection()) {
+                    disconnect();
+                }
+                if (response.status() == 200 && response.header("ETag") != null) {
+                    cachedETag = response.header("ETag");
+                    cachedBody = response.body();
+                }
+                return response;
+            }
+            if (endOfStream) {
+                throw new EOFException("Server closed the connection before responding");
+            }
+            int read = in.read(readBuffer);
+            if (read < 0) {
+                endOfStream = true;
+            } else {
+                decoder.feed(readBuffer, 0, read);
+            }
+        }
+    }
+
+    private void connect() throws IOException {
+        if (socket != null) {
+            return;
+        }
+        socket = (clientConfig.mockSocket() != null) ? clientConfig.mockSocket() : new Socket(clientConfig.serverHostname(), clientConfig.serverPort());
+        in = socket.getInputStream();
+        out = new BufferedOutputStream(socket.getOutputStream());
+        decoder = new HttpDecoder();
+        logger.log(Level.FINE, "Connected to server: " + clientConfig.serverHostname() + ":" + clientConfig.serverPort());
+    }
+
+    /**
+     * Closes the connection, the next request opens a new one
+     */
+    public void disconnect() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close the connection", e);
+        }
+        socket = null;
+    }
+
+    @Override
+    public void close() {
+        disconnect();
     }
 }
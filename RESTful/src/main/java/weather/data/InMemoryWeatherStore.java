@@ -0,0 +1,700 @@
+package weather.data;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import weather.lamport.LamportClock;
+import weather.utils.JsonTokenizer;
+import weather.utils.JsonWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * All the json data kept in memory, indexed by insertion order, station id and server Lamport time. The observations
+ * of a station are kept in the order of their content server's Lamport time, so the latest is the causally newest.
+ * A PUT only appends to the indexes, so its cost does not grow with the stored history.
+ * <p>
+ * Each station has its own history with its own lock, so saves of different stations never wait for each other. Readers
+ * take no lock at all: a station's history is published as an immutable view after every save, so a reader gets a
+ * consistent snapshot of the station while its writers go on. Only the most recent updates of each station are kept if
+ * a retention is set, and {@link #removeStation(String)} drops a station, e.g. once its content server expired.
+ * The data is persisted either
+ * by a background thread writing the JSON file when it changed, or by a {@link WriteAheadLog} which every PUT waits
+ * for before its observation becomes visible.
+ * <p>
+ * With a log, a background thread periodically snapshots the latest observation per station together with the server
+ * Lamport time and deletes the log segments the snapshot covers. Startup then loads the snapshot and replays only the
+ * log written after it, so recovery time depends on the number of stations and the snapshot interval rather than on
+ * the whole history. Older observations of a station, and observations without a station id, are not part of the
+ * snapshot and are dropped on the next restart.
+ */
+public final class InMemoryWeatherStore implements WeatherDataInterface {
+    private static final Logger logger = Logger.getLogger(InMemoryWeatherStore.class.getName());
+
+    // By insertion sequence; added to and removed from without a lock, iterated weakly consistent
+    private final ConcurrentNavigableMap<Long, StoredObservation> observations = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger count = new AtomicInteger();
+    private final Map<String, StationHistory> byStation = new ConcurrentHashMap<>();
+    // Observations without station id, retained like a station of their own
+    private final StationHistory unidentified = new StationHistory();
+    private final Map<Long, StoredObservation> byLogicTime = new ConcurrentHashMap<>();
+    private final int retainUpdates;
+
+    private final Path dataFile;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final ScheduledExecutorService flusher;
+    private final WriteAheadLog log;
+    private final Path snapshotFile;
+    private final LamportClock clock;
+    // Saves hold the read lock from appending to the log until indexed, a snapshot holds the write lock to cut the log
+    // and clearing the data to empty the indexes
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * Persists to the JSON file in the background, a crash loses the PUTs of the last flush interval
+     */
+    public InMemoryWeatherStore(String dataFilePath, long flushIntervalMillis) {
+        this(dataFilePath, flushIntervalMillis, 0);
+    }
+
+    /**
+     * @param retainUpdates Most recent updates kept per station, 0 keeps all
+     */
+    public InMemoryWeatherStore(String dataFilePath, long flushIntervalMillis, int retainUpdates) {
+        this.retainUpdates = retainUpdates;
+        this.dataFile = Paths.get(dataFilePath);
+        this.log = null;
+        this.snapshotFile = null;
+        this.clock = null;
+        loadFromFile();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "weather-store-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Persists every PUT to the log before it returns, the data is rebuilt from the log on startup
+     */
+    public InMemoryWeatherStore(WriteAheadLog log) {
+        this(log, null, 0, null);
+    }
+
+    /**
+     * Persists every PUT to the log and snapshots the latest observation per station in the background
+     *
+     * @param snapshotFile           Where the snapshot is kept, null disables snapshots
+     * @param snapshotIntervalMillis How often a snapshot is taken if observations arrived since the last one
+     * @param clock                  Server clock, saved in the snapshot and advanced past the recovered Lamport times
+     */
+    public InMemoryWeatherStore(WriteAheadLog log, Path snapshotFile, long snapshotIntervalMillis, LamportClock clock) {
+        this(log, snapshotFile, snapshotIntervalMillis, clock, 0);
+    }
+
+    /**
+     * @param retainUpdates Most recent updates kept per station, 0 keeps all; older ones are dropped from the indexes,
+     *                      the log segments holding them go with the next snapshot
+     */
+    public InMemoryWeatherStore(WriteAheadLog log, Path snapshotFile, long snapshotIntervalMillis, LamportClock clock,
+                                int retainUpdates) {
+        this.retainUpdates = retainUpdates;
+        this.dataFile = null;
+        this.log = log;
+        this.snapshotFile = snapshotFile;
+        this.clock = clock;
+        long recoveredTime = recover();
+        if (clock != null && recoveredTime > clock.getTime()) {
+            clock.update(recoveredTime);
+        }
+        if (snapshotFile == null || snapshotIntervalMillis <= 0) {
+            this.flusher = null;
+            return;
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "weather-store-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            if (dirty.get()) {
+                snapshot();
+            }
+        }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void saveWeatherData(String data) {
+        saveWeatherData(data, 0);
+    }
+
+    /**
+     * @throws java.io.UncheckedIOException When the observation could not be written to the log
+     */
+    @Override
+    public void saveWeatherData(String data, long logicTime) {
+        saveObservation(WeatherObservation.fromContent(data), logicTime);
+    }
+
+    /**
+     * @throws java.io.UncheckedIOException When the observation could not be written to the log
+     */
+    @Override
+    public void saveObservation(WeatherObservation weatherObservation, long logicTime) {
+        StoredObservation observation = new StoredObservation(logicTime, weatherObservation);
+        snapshotLock.readLock().lock();
+        try {
+            // Only durable observations become visible to readers
+            if (log != null) {
+                log.appendAndSync(logRecord(logicTime, weatherObservation.encode()));
+            }
+            append(observation);
+            dirty.set(true);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the whole batch to the log as one record group, then indexes it
+     *
+     * @throws java.io.UncheckedIOException When the observations could not be written to the log
+     */
+    @Override
+    public void saveObservations(List<WeatherObservation> weatherObservations, long firstLogicTime) {
+        List<StoredObservation> batch = new ArrayList<>(weatherObservations.size());
+        for (int i = 0; i < weatherObservations.size(); i++) {
+            batch.add(new StoredObservation(firstLogicTime + i, weatherObservations.get(i)));
+        }
+        List<byte[]> records = new ArrayList<>((log != null) ? batch.size() : 0);
+        for (int i = 0; log != null && i < batch.size(); i++) {
+            records.add(logRecord(batch.get(i).logicTime(), batch.get(i).observation().encode()));
+        }
+        snapshotLock.readLock().lock();
+        try {
+            if (log != null) {
+                log.appendAndSync(records);
+            }
+            append(batch);
+            dirty.set(true);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String readWeatherData() {
+        return toJsonArray(readAll());
+    }
+
+    @Override
+    public String readWeatherData(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int position = 0;
+        for (StoredObservation observation : observations.values()) {
+            if (position++ == index) {
+                return observation.json();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int count() {
+        return count.get();
+    }
+
+    /**
+     * @return All observations in insertion order
+     */
+    List<StoredObservation> readAll() {
+        return List.copyOf(observations.values());
+    }
+
+    /**
+     * @return The most recent observation of the station, or null if it never sent one
+     */
+    public StoredObservation readLatest(String stationId) {
+        StationHistory history = byStation.get(stationId);
+        return (history == null) ? null : history.latest();
+    }
+
+    /**
+     * @return All observations of the station, in the order of their content server's Lamport time; a snapshot which
+     * later saves do not change
+     */
+    public List<StoredObservation> readStation(String stationId) {
+        StationHistory history = byStation.get(stationId);
+        return (history == null) ? Collections.emptyList() : history.snapshot();
+    }
+
+    /**
+     * @return The observation stored at the given server Lamport time, or null if there is none
+     */
+    public StoredObservation readByLogicTime(long logicTime) {
+        return byLogicTime.get(logicTime);
+    }
+
+    /**
+     * Drops every observation of the station; with a log the removal is logged first, so it holds after a restart
+     *
+     * @throws java.io.UncheckedIOException When the removal could not be written to the log
+     */
+    @Override
+    public void removeStation(String stationId) {
+        snapshotLock.readLock().lock();
+        try {
+            if (!byStation.containsKey(stationId)) {
+                return;
+            }
+            if (log != null) {
+                log.appendAndSync(removalRecord(stationId));
+            }
+            removeFromIndexes(stationId);
+            dirty.set(true);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clearWeatherData() {
+        snapshotLock.writeLock().lock();
+        try {
+            observations.clear();
+            count.set(0);
+            byStation.clear();
+            unidentified.removeAll();
+            byLogicTime.clear();
+            if (log != null) {
+                log.truncate();
+            }
+            if (snapshotFile != null) {
+                Files.deleteIfExists(snapshotFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete the snapshot " + snapshotFile, e);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        dirty.set(true);
+        logger.info("Weather data cleared successfully in memory");
+    }
+
+    /**
+     * Stops the background flush and writes out the data not persisted yet.
+     * With a log, a last snapshot is taken so the next startup has little log to replay.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (log == null) {
+            flush();
+            return;
+        }
+        if (snapshotFile != null && dirty.get()) {
+            snapshot();
+        }
+        log.close();
+    }
+
+    /**
+     * Writes the latest observation per station and the server Lamport time to the snapshot file,
+     * then deletes the log segments the snapshot covers
+     *
+     * @return True if the snapshot was written
+     */
+    boolean snapshot() {
+        List<StoredObservation> latest;
+        SnapshotFile.Header header;
+        snapshotLock.writeLock().lock();
+        try {
+            // No save is between log and index now, so the index holds exactly the records before the new segment
+            long nextSegment = log.rollSegment();
+            latest = latestPerStation();
+            long lamportClock = (clock != null) ? clock.getTime() : maxLogicTime();
+            header = new SnapshotFile.Header(nextSegment, lamportClock);
+            dirty.set(false);
+        } catch (UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Failed to start a new log segment for the snapshot", e);
+            return false;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+
+        try {
+            long start = System.nanoTime();
+            SnapshotFile.write(snapshotFile, header, latest);
+            log.deleteSegmentsBefore(header.nextSegment());
+            logger.info("Snapshot of " + latest.size() + " stations at Lamport time " + header.lamportClock() + " written in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            return true;
+        } catch (IOException e) {
+            dirty.set(true); // Try again on the next snapshot, the log segments are kept until then
+            logger.log(Level.SEVERE, "Failed to write the snapshot " + snapshotFile, e);
+            return false;
+        }
+    }
+
+    private void append(StoredObservation observation) {
+        append(List.of(observation));
+    }
+
+    private void append(List<StoredObservation> batch) {
+        for (StoredObservation observation : batch) {
+            Entry entry = new Entry(sequence.incrementAndGet(), observation);
+            observations.put(entry.sequence(), observation);
+            count.incrementAndGet();
+            if (observation.logicTime() > 0) {
+                byLogicTime.put(observation.logicTime(), observation);
+            }
+            Entry dropped;
+            if (observation.stationId() == null) {
+                dropped = unidentified.add(entry, retainUpdates);
+            } else {
+                // A station removed meanwhile takes no more updates, they start its history over
+                do {
+                    dropped = byStation.computeIfAbsent(observation.stationId(), id -> new StationHistory()).add(entry, retainUpdates);
+                } while (dropped == StationHistory.REMOVED);
+            }
+            if (dropped != null) {
+                drop(dropped);
+            }
+        }
+    }
+
+    private void removeFromIndexes(String stationId) {
+        StationHistory history = byStation.remove(stationId);
+        if (history != null) {
+            history.removeAll().forEach(this::drop);
+        }
+    }
+
+    private void drop(Entry entry) {
+        if (observations.remove(entry.sequence()) != null) {
+            count.decrementAndGet();
+        }
+        if (entry.observation().logicTime() > 0) {
+            byLogicTime.remove(entry.observation().logicTime(), entry.observation());
+        }
+    }
+
+    // An observation and the position it was inserted at
+    private record Entry(long sequence, StoredObservation observation) {
+    }
+
+    /**
+     * The observations of one station in the order of its content server's Lamport time. Saves of the station take its
+     * lock; readers take the current view without one. A published view never changes: an update in order is written
+     * past the end of every view of the array, dropping the oldest update only moves the start of the next view, and a
+     * late update, which goes behind newer ones, copies the history.
+     */
+    private static final class StationHistory {
+        // Returned by add() once the history was removed
+        private static final Entry REMOVED = new Entry(-1, null);
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile View view = new View(new Entry[4], 0, 0);
+        // Guarded by lock
+        private boolean removed;
+
+        private record View(Entry[] entries, int start, int end) {
+            int size() {
+                return end - start;
+            }
+        }
+
+        /**
+         * @param retain Most recent updates to keep, 0 keeps all
+         * @return The oldest update, dropped to keep retain updates, or null; {@link #REMOVED} if the history was removed
+         */
+        Entry add(Entry entry, int retain) {
+            lock.lock();
+            try {
+                if (removed) {
+                    return REMOVED;
+                }
+                Entry[] entries = view.entries();
+                int start = view.start();
+                int end = view.end();
+                long sourceTime = entry.observation().observation().logicTimestamp();
+                int at = end;
+                if (sourceTime != WeatherObservation.NO_TIMESTAMP) {
+                    while (at > start && sourceTime < entries[at - 1].observation().observation().logicTimestamp()) {
+                        at--;
+                    }
+                }
+                if (at == end && end < entries.length) {
+                    entries[end] = entry;
+                    end++;
+                } else {
+                    int size = end - start;
+                    Entry[] copy = new Entry[(size < entries.length / 2) ? entries.length : entries.length * 2];
+                    System.arraycopy(entries, start, copy, 0, at - start);
+                    copy[at - start] = entry;
+                    System.arraycopy(entries, at, copy, at - start + 1, end - at);
+                    entries = copy;
+                    start = 0;
+                    end = size + 1;
+                }
+                Entry dropped = null;
+                if (retain > 0 && end - start > retain) {
+                    dropped = entries[start];
+                    start++;
+                }
+                view = new View(entries, start, end);
+                return dropped;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Empties the history for good, later saves of the station start a new one
+         *
+         * @return The updates it held
+         */
+        List<Entry> removeAll() {
+            lock.lock();
+            try {
+                removed = true;
+                View current = view;
+                view = new View(new Entry[0], 0, 0);
+                return Arrays.asList(current.entries()).subList(current.start(), current.end());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Null only while the history of a new station is being added to
+        StoredObservation latest() {
+            View current = view;
+            return (current.size() == 0) ? null : current.entries()[current.end() - 1].observation();
+        }
+
+        List<StoredObservation> snapshot() {
+            View current = view;
+            return new AbstractList<>() {
+                @Override
+                public StoredObservation get(int index) {
+                    Objects.checkIndex(index, current.size());
+                    return current.entries()[current.start() + index].observation();
+                }
+
+                @Override
+                public int size() {
+                    return current.size();
+                }
+            };
+        }
+    }
+
+    // Writes the whole data set to the file if it changed since the last flush
+    void flush() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        String content = readWeatherData();
+        try {
+            Files.createDirectories(dataFile.toAbsolutePath().getParent());
+            // Write aside and move over, a crash mid-write never leaves a half written file
+            Path tempFile = dataFile.resolveSibling(dataFile.getFileName() + ".tmp");
+            Files.writeString(tempFile, content);
+            Files.move(tempFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true); // Try again on the next flush
+            logger.log(Level.SEVERE, "Failed to persist weather data to " + dataFile, e);
+        }
+    }
+
+    private void loadFromFile() {
+        if (!Files.exists(dataFile)) {
+            return;
+        }
+        try {
+            String content = Files.readString(dataFile);
+            if (content.isBlank()) {
+                return;
+            }
+            JSONArray jsonArray = new JSONArray(content);
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject jsonObject = jsonArray.getJSONObject(i);
+                byte[] json = jsonObject.toString().getBytes(StandardCharsets.UTF_8);
+                append(new StoredObservation(0, WeatherObservation.decode(json, 0, json.length)));
+            }
+            logger.info("Loaded " + jsonArray.length() + " observations from " + dataFile);
+        } catch (IOException | JSONException e) {
+            logger.log(Level.SEVERE, "Failed to load weather data from " + dataFile, e);
+        }
+    }
+
+    private List<StoredObservation> latestPerStation() {
+        List<StoredObservation> latest = new ArrayList<>(byStation.size());
+        for (StationHistory history : byStation.values()) {
+            StoredObservation observation = history.latest();
+            if (observation != null) {
+                latest.add(observation);
+            }
+        }
+        return latest;
+    }
+
+    private long maxLogicTime() {
+        long max = 0;
+        for (StoredObservation observation : observations.values()) {
+            max = Math.max(max, observation.logicTime());
+        }
+        return max;
+    }
+
+    /**
+     * Loads the snapshot, if any, then replays the log segments written after it
+     *
+     * @return The highest Lamport time seen in the snapshot header or the replayed records
+     */
+    private long recover() {
+        long start = System.nanoTime();
+        long[] maxTime = {0};
+        int fromSnapshot = 0;
+        long fromSegment = 0;
+        Consumer<String> loader = record -> maxTime[0] = Math.max(maxTime[0], loadRecord(record));
+        try {
+            SnapshotFile.Header header = (snapshotFile != null) ? SnapshotFile.read(snapshotFile, loader) : null;
+            if (header != null) {
+                fromSnapshot = count();
+                fromSegment = header.nextSegment();
+                maxTime[0] = Math.max(maxTime[0], header.lamportClock());
+            }
+        } catch (IOException | JSONException e) {
+            // Without the snapshot the log may be missing compacted segments, so do not pretend the data is complete
+            throw new UncheckedIOException("Failed to read the snapshot " + snapshotFile,
+                    e instanceof IOException io ? io : new IOException(e));
+        }
+        try {
+            log.replay(fromSegment, loader);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to recover weather data from " + log.path(), e);
+        }
+        if (count() > fromSnapshot) {
+            dirty.set(true); // Snapshot the replayed log soon, so the next startup does not replay it again
+        }
+        logger.info("Recovered " + fromSnapshot + " observations from the snapshot and " + (count() - fromSnapshot)
+                + " from " + log.path() + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return maxTime[0];
+    }
+
+    // Indexes one log or snapshot record and returns its Lamport time
+    private long loadRecord(String record) {
+        try {
+            byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+            JsonTokenizer tokenizer = new JsonTokenizer(bytes);
+            if (tokenizer.next() != JsonTokenizer.Token.BEGIN_OBJECT) {
+                throw new JSONException("Not a log record");
+            }
+            long logicTime = 0;
+            int start = -1;
+            int end = -1;
+            String removed = null;
+            while (tokenizer.next() == JsonTokenizer.Token.NAME) {
+                if (tokenizer.nameEquals("removed")) {
+                    tokenizer.next();
+                    removed = tokenizer.stringValue();
+                } else if (tokenizer.nameEquals("logicTime")) {
+                    tokenizer.next();
+                    logicTime = tokenizer.longValue();
+                } else if (tokenizer.nameEquals("observation")) {
+                    start = tokenizer.skipValue();
+                    end = tokenizer.tokenEnd();
+                } else {
+                    tokenizer.skipValue();
+                }
+            }
+            if (removed != null) {
+                removeFromIndexes(removed);
+                dirty.set(true);
+                return 0;
+            }
+            if (start < 0 || bytes[start] != '{') {
+                throw new JSONException("Log record without observation");
+            }
+            append(new StoredObservation(logicTime, WeatherObservation.decode(bytes, start, end - start)));
+            return logicTime;
+        } catch (JSONException e) {
+            logger.warning("Skipping unreadable log record: " + record);
+            return 0;
+        }
+    }
+
+    /**
+     * One compact line per observation, {"logicTime":n,"observation":{...}}
+     */
+    static byte[] logRecord(long logicTime, byte[] observation) {
+        return new JsonWriter(observation.length + 40)
+                .beginObject()
+                .name("logicTime").value(logicTime)
+                .name("observation").rawValue(observation)
+                .endObject()
+                .toByteArray();
+    }
+
+    /**
+     * A station dropped from the indexes, {"removed":"IDS60901"}
+     */
+    static byte[] removalRecord(String stationId) {
+        return new JsonWriter(stationId.length() + 16)
+                .beginObject()
+                .name("removed").value(stationId)
+                .endObject()
+                .toByteArray();
+    }
+
+    static String toJsonArray(List<StoredObservation> observations) {
+        StringBuilder jsonArray = new StringBuilder("[");
+        for (int i = 0; i < observations.size(); i++) {
+            jsonArray.append(i == 0 ? "\n" : ",\n").append(observations.get(i).json());
+        }
+        return jsonArray.append("\n]").toString();
+    }
+}
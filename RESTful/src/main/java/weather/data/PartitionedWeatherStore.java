@@ -0,0 +1,136 @@
+package weather.data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Weather data split by station into partitions, each an {@link InMemoryWeatherStore} with its own write-ahead log and
+ * snapshot. A station always belongs to the same partition, see {@link #partitionOf(String, int)}, so the writer of a
+ * partition never shares a log or an index with the writers of the others.
+ * <p>
+ * Reads see the partitions merged in the order of the server Lamport time the observations were stored at.
+ */
+public class PartitionedWeatherStore implements WeatherDataInterface {
+    private final List<InMemoryWeatherStore> partitions;
+
+    public PartitionedWeatherStore(List<InMemoryWeatherStore> partitions) {
+        this.partitions = List.copyOf(partitions);
+    }
+
+    /**
+     * @return The partition of a station, observations without station id go to the first
+     */
+    public static int partitionOf(String stationId, int partitions) {
+        if (stationId == null || partitions <= 1) {
+            return 0;
+        }
+        int hash = stationId.hashCode();
+        // Spread the high bits, ids of one network often differ only in their last characters
+        return Math.floorMod(hash ^ (hash >>> 16), partitions);
+    }
+
+    public int partitions() {
+        return partitions.size();
+    }
+
+    public InMemoryWeatherStore partition(int index) {
+        return partitions.get(index);
+    }
+
+    @Override
+    public void saveWeatherData(String data) {
+        saveWeatherData(data, 0);
+    }
+
+    @Override
+    public void saveWeatherData(String data, long logicTime) {
+        saveObservation(WeatherObservation.fromContent(data), logicTime);
+    }
+
+    @Override
+    public void saveObservation(WeatherObservation observation, long logicTime) {
+        partitionFor(observation).saveObservation(observation, logicTime);
+    }
+
+    /**
+     * Saves a batch with one log write if all its observations belong to one partition, as the batches of a partition
+     * writer do; otherwise observation by observation
+     */
+    @Override
+    public void saveObservations(List<WeatherObservation> observations, long firstLogicTime) {
+        InMemoryWeatherStore first = observations.isEmpty() ? null : partitionFor(observations.get(0));
+        for (WeatherObservation observation : observations) {
+            if (partitionFor(observation) != first) {
+                WeatherDataInterface.super.saveObservations(observations, firstLogicTime);
+                return;
+            }
+        }
+        if (first != null) {
+            first.saveObservations(observations, firstLogicTime);
+        }
+    }
+
+    @Override
+    public String readWeatherData() {
+        return InMemoryWeatherStore.toJsonArray(merged());
+    }
+
+    @Override
+    public String readWeatherData(int index) {
+        List<StoredObservation> observations = merged();
+        return (index < 0 || index >= observations.size()) ? null : observations.get(index).json();
+    }
+
+    @Override
+    public int count() {
+        int count = 0;
+        for (InMemoryWeatherStore partition : partitions) {
+            count += partition.count();
+        }
+        return count;
+    }
+
+    /**
+     * @return The most recent observation of the station, or null if it never sent one
+     */
+    public StoredObservation readLatest(String stationId) {
+        return partitions.get(partitionOf(stationId, partitions.size())).readLatest(stationId);
+    }
+
+    /**
+     * @return All observations of the station, in the order of their content server's Lamport time
+     */
+    public List<StoredObservation> readStation(String stationId) {
+        return partitions.get(partitionOf(stationId, partitions.size())).readStation(stationId);
+    }
+
+    @Override
+    public void removeStation(String stationId) {
+        partitions.get(partitionOf(stationId, partitions.size())).removeStation(stationId);
+    }
+
+    @Override
+    public void clearWeatherData() {
+        partitions.forEach(InMemoryWeatherStore::clearWeatherData);
+    }
+
+    @Override
+    public void close() {
+        partitions.forEach(InMemoryWeatherStore::close);
+    }
+
+    private InMemoryWeatherStore partitionFor(WeatherObservation observation) {
+        return partitions.get(partitionOf(observation.id(), partitions.size()));
+    }
+
+    private List<StoredObservation> merged() {
+        List<StoredObservation> observations = new ArrayList<>(count());
+        for (InMemoryWeatherStore partition : partitions) {
+            observations.addAll(partition.readAll());
+        }
+        // Stable, so observations of a partition without a known Lamport time keep their order
+        observations.sort(Comparator.comparingLong(StoredObservation::logicTime));
+        return observations;
+    }
+}
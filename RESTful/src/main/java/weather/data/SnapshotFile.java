@@ -0,0 +1,84 @@
+package weather.data;
+
+import org.json.JSONObject;
+import weather.utils.JsonWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot of the latest observation per station, written in the same NDJSON record format as the
+ * {@link WriteAheadLog}. The first line is a header naming the first log segment not covered by the snapshot and the
+ * server Lamport time when it was taken.
+ */
+final class SnapshotFile {
+
+    /**
+     * @param nextSegment  First log segment holding records newer than the snapshot
+     * @param lamportClock Server Lamport time when the snapshot was taken
+     */
+    record Header(long nextSegment, long lamportClock) {
+    }
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes the snapshot aside, syncs it and moves it over the previous one, a crash never leaves a half written snapshot
+     */
+    static void write(Path file, Header header, Collection<StoredObservation> latest) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile.toFile());
+             BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024)) {
+            buffered.write(new JsonWriter()
+                    .beginObject()
+                    .name("nextSegment").value(header.nextSegment())
+                    .name("lamportClock").value(header.lamportClock())
+                    .name("stations").value(latest.size())
+                    .endObject()
+                    .toByteArray());
+            buffered.write('\n');
+            for (StoredObservation observation : latest) {
+                buffered.write(InMemoryWeatherStore.logRecord(observation.logicTime(), observation.observation().encode()));
+                buffered.write('\n');
+            }
+            buffered.flush();
+            out.getFD().sync();
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Hands every observation record of the snapshot to the consumer
+     *
+     * @return The snapshot header, or null if there is no snapshot yet
+     */
+    static Header read(Path file, Consumer<String> consumer) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String headerLine = reader.readLine();
+            if (headerLine == null || headerLine.isBlank()) {
+                return null;
+            }
+            JSONObject header = new JSONObject(headerLine);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    consumer.accept(line);
+                }
+            }
+            return new Header(header.getLong("nextSegment"), header.getLong("lamportClock"));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package weather.data;
+
+import weather.lamport.LamportClock;
+import weather.utils.ConfigProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * @param type                   Which store implementation to use
+ * @param dataFilePath           JSON file the data is persisted to
+ * @param flushIntervalMillis    How often {@link InMemoryWeatherStore} writes changed data to the file
+ * @param logFilePath            Write-ahead log of {@link StorageType#LOG}, segments are numbered files next to it
+ * @param groupCommitMicros      How long the log waits for concurrent PUTs to share one fsync
+ * @param groupCommitMaxBatch    Maximum number of PUTs sharing one fsync
+ * @param fsync                  False hands log records to the operating system without waiting for the disk
+ * @param segmentBytes           Size after which the log starts a new segment
+ * @param snapshotFilePath       Snapshot of the latest observation per station, loaded before the log on startup
+ * @param snapshotIntervalMillis How often a snapshot is taken and the log segments it covers deleted, 0 disables it
+ */
+public record StorageConfig(StorageType type, String dataFilePath, long flushIntervalMillis,
+                            String logFilePath, long groupCommitMicros, int groupCommitMaxBatch, boolean fsync,
+                            long segmentBytes, String snapshotFilePath, long snapshotIntervalMillis) {
+
+    public static StorageConfig defaults() {
+        return new StorageConfig(StorageType.LOG, "Data/weatherData.json", 1000,
+                "Data/weatherData.log", 1000, 256, true,
+                64L * 1024 * 1024, "Data/weatherData.snapshot", 60_000);
+    }
+
+    /**
+     * Reads the storage settings from the given settings, missing entries keep their default
+     */
+    public static StorageConfig from(ConfigProperties props) {
+        StorageConfig defaults = defaults();
+        return new StorageConfig(
+                props.getEnum("store.type", StorageType.class, defaults.type()),
+                props.getString("store.dataFile", defaults.dataFilePath()),
+                props.getLong("store.flushIntervalMillis", defaults.flushIntervalMillis()),
+                props.getString("store.log.file", defaults.logFilePath()),
+                props.getLong("store.log.groupCommitMicros", defaults.groupCommitMicros()),
+                props.getInt("store.log.maxBatch", defaults.groupCommitMaxBatch()),
+                props.getBoolean("store.log.fsync", defaults.fsync()),
+                props.getLong("store.log.segmentBytes", defaults.segmentBytes()),
+                props.getString("store.snapshot.file", defaults.snapshotFilePath()),
+                props.getLong("store.snapshot.intervalMillis", defaults.snapshotIntervalMillis()));
+    }
+
+    /**
+     * @param clock Server clock, a LOG store saves it in snapshots and restores it on startup
+     */
+    public WeatherDataInterface createStore(LamportClock clock) {
+        return createStore(clock, 1);
+    }
+
+    /**
+     * @param partitions Number of partitions a LOG store is split into by station, each with its own log and snapshot
+     *                   named e.g. weatherData-p0.log; 1 keeps the unpartitioned file names
+     */
+    public WeatherDataInterface createStore(LamportClock clock, int partitions) {
+        return createStore(clock, partitions, 0);
+    }
+
+    /**
+     * @param retainUpdates Most recent updates a MEMORY or LOG store keeps per station, 0 keeps all
+     */
+    public WeatherDataInterface createStore(LamportClock clock, int partitions, int retainUpdates) {
+        return switch (type) {
+            case FILE -> new WeatherDataStore();
+            case MEMORY -> new InMemoryWeatherStore(dataFilePath, flushIntervalMillis, retainUpdates);
+            case LOG -> {
+                checkPartitionLayout(Math.max(1, partitions));
+                yield (partitions <= 1)
+                        ? openLogStore(logFilePath, snapshotFilePath, clock, retainUpdates)
+                        : openPartitions(clock, partitions, retainUpdates);
+            }
+        };
+    }
+
+    private WeatherDataInterface openPartitions(LamportClock clock, int partitions, int retainUpdates) {
+        List<InMemoryWeatherStore> stores = new ArrayList<>(partitions);
+        for (int partition = 0; partition < partitions; partition++) {
+            stores.add(openLogStore(partitionPath(logFilePath, partition), partitionPath(snapshotFilePath, partition),
+                    clock, retainUpdates));
+        }
+        return new PartitionedWeatherStore(stores);
+    }
+
+    private InMemoryWeatherStore openLogStore(String logPath, String snapshotPath, LamportClock clock, int retainUpdates) {
+        try {
+            WriteAheadLog log = new WriteAheadLog(Paths.get(logPath), groupCommitMicros, groupCommitMaxBatch, fsync, segmentBytes);
+            return new InMemoryWeatherStore(log, Paths.get(snapshotPath), snapshotIntervalMillis, clock, retainUpdates);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the write-ahead log " + logPath, e);
+        }
+    }
+
+    // Data/weatherData.log becomes Data/weatherData-p3.log
+    private static String partitionPath(String path, int partition) {
+        Path file = Paths.get(path);
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String partitioned = (dot < 0) ? name + "-p" + partition : name.substring(0, dot) + "-p" + partition + name.substring(dot);
+        return file.resolveSibling(partitioned).toString();
+    }
+
+    // Logs written with another partition count hold stations in partitions they are no longer looked for in. The count
+    // is recorded next to the logs, e.g. in weatherData.partitions; without that record only the file names tell
+    private void checkPartitionLayout(int partitions) {
+        Path log = Paths.get(logFilePath).toAbsolutePath();
+        String name = log.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = (dot < 0) ? name : name.substring(0, dot);
+        String extension = (dot < 0) ? "" : name.substring(dot);
+        Path layout = log.resolveSibling(stem + ".partitions");
+        try {
+            if (Files.exists(layout)) {
+                int written = Integer.parseInt(Files.readString(layout).trim());
+                if (written != partitions) {
+                    throw layoutMismatch(log, written, partitions);
+                }
+                return;
+            }
+            Pattern partitioned = Pattern.compile(Pattern.quote(stem) + "-p(\\d+)" + Pattern.quote(extension) + "(\\..*)?");
+            try (Stream<Path> files = Files.list(log.getParent())) {
+                for (Path file : files.toList()) {
+                    String fileName = file.getFileName().toString();
+                    Matcher matcher = partitioned.matcher(fileName);
+                    boolean unpartitioned = fileName.equals(name) || fileName.startsWith(name + ".");
+                    if ((partitions > 1 && unpartitioned)
+                            || (matcher.matches() && (partitions == 1 || Integer.parseInt(matcher.group(1)) >= partitions))) {
+                        throw layoutMismatch(file, -1, partitions);
+                    }
+                }
+            }
+            if (partitions > 1) {
+                Files.writeString(layout, partitions + System.lineSeparator());
+            }
+        } catch (NoSuchFileException e) {
+            // No logs yet
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Failed to check the partitions of the logs next to " + log, e);
+        }
+    }
+
+    private static IllegalStateException layoutMismatch(Path file, int written, int partitions) {
+        return new IllegalStateException(file + " was written with " + ((written < 0) ? "a different number of" : written)
+                + " partitions, not " + partitions + "; keep ingest.partitions as it was or move the old logs away");
+    }
+}
@@ -0,0 +1,13 @@
+package weather.data;
+
+/**
+ * Which {@link WeatherDataInterface} implementation the Aggregation Server stores its data in.
+ */
+public enum StorageType {
+    // WeatherDataStore, every PUT rewrites the whole JSON file
+    FILE,
+    // InMemoryWeatherStore, indexed in memory and persisted in the background
+    MEMORY,
+    // InMemoryWeatherStore, indexed in memory and persisted to a write-ahead log before each PUT returns
+    LOG
+}
@@ -0,0 +1,24 @@
+package weather.data;
+
+/**
+ * One observation kept by {@link InMemoryWeatherStore}.
+ *
+ * @param logicTime   Server Lamport time of the PUT which stored it, 0 when unknown (e.g. loaded from file)
+ * @param observation The decoded observation
+ */
+public record StoredObservation(long logicTime, WeatherObservation observation) {
+
+    /**
+     * @return Station "id" of the observation, null when it has none
+     */
+    public String stationId() {
+        return observation.id();
+    }
+
+    /**
+     * @return The observation as a compact JSON string, as it is sent to GET clients
+     */
+    public String json() {
+        return observation.toJson();
+    }
+}
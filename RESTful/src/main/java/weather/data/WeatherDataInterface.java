@@ -1,23 +1,90 @@
 package weather.data;
 
+import weather.utils.JSONParser;
+
+import java.util.List;
+
 /**
  * Interface for managing weather data storage.
  */
-public interface WeatherDataInterface {
+public interface WeatherDataInterface extends AutoCloseable {
     /**
      * Saves weather data to a persistent storage.
      * @param data The weather data to be saved, represented as a JSON string.
      */
     void saveWeatherData(String data);
 
+    /**
+     * Saves weather data received at the given server Lamport time.
+     * Stores which index by Lamport time override this, the default ignores the time.
+     * @param data      The weather data to be saved, represented as a JSON string.
+     * @param logicTime The server Lamport time of the PUT request.
+     */
+    default void saveWeatherData(String data, long logicTime) {
+        saveWeatherData(data);
+    }
+
+    /**
+     * Saves an already decoded observation received at the given server Lamport time.
+     * Stores keeping typed observations override this, the default saves its JSON.
+     * @param observation The decoded weather observation.
+     * @param logicTime   The server Lamport time of the PUT request.
+     */
+    default void saveObservation(WeatherObservation observation, long logicTime) {
+        saveWeatherData(observation.toJson(), logicTime);
+    }
+
+    /**
+     * Saves a batch of decoded observations, received at consecutive server Lamport times.
+     * Stores which can persist several observations at once override this, the default saves them one by one.
+     * @param observations   The decoded weather observations, in the order they were received.
+     * @param firstLogicTime The server Lamport time of the first observation.
+     */
+    default void saveObservations(List<WeatherObservation> observations, long firstLogicTime) {
+        for (int i = 0; i < observations.size(); i++) {
+            saveObservation(observations.get(i), firstLogicTime + i);
+        }
+    }
+
     /**
      * Reads all stored weather data from persistent storage.
      * @return A JSON string representing the stored weather data.
      */
     String readWeatherData();
 
+    /**
+     * Reads a single stored observation in insertion order.
+     * @param index Position of the observation, starting at 0.
+     * @return The observation as a formatted JSON string, or null if there is none at the index.
+     */
+    default String readWeatherData(int index) {
+        return JSONParser.extractJsonObjectByIndex(readWeatherData(), index);
+    }
+
+    /**
+     * @return The number of stored observations, or -1 if the stored data cannot be read.
+     */
+    default int count() {
+        return JSONParser.getJsonArrayLength(readWeatherData());
+    }
+
+    /**
+     * Removes every stored observation of a station, e.g. once the content server sending it expired.
+     * Stores which can remove a single station override this, the default keeps the data.
+     * @param stationId Id of the station to remove.
+     */
+    default void removeStation(String stationId) {
+    }
+
     /**
      * Clears all stored weather data from persistent storage.
      */
     void clearWeatherData();
+
+    /**
+     * Releases resources held by the store, e.g. writes out data not persisted yet.
+     */
+    @Override
+    default void close() {
+    }
 }
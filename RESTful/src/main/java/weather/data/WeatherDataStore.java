@@ -11,6 +11,9 @@ import java.util.logging.Logger;
 
 /**
  * All the json data in server only retained in local machine file system.
+ * <p>
+ * Every PUT rewrites the one file, so saves are serialized by {@link JSONParser}'s lock of that file; reads take no
+ * lock, the file is replaced atomically and a reader always sees a complete array.
  */
 public class WeatherDataStore implements WeatherDataInterface {
     private static final Logger logger = Logger.getLogger(WeatherDataStore.class.getName());
@@ -44,13 +47,23 @@ public class WeatherDataStore implements WeatherDataInterface {
         }
     }
 
+    @Override
+    public void removeStation(String stationId) {
+        try {
+            int removed = JSONParser.removeJsonObjects(stationId, DATA_FILE_PATH);
+            logger.info("Removed " + removed + " observations of " + stationId + " from " + DATA_FILE_PATH);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to remove the weather data of " + stationId, e);
+        }
+    }
+
     @Override
     public void clearWeatherData() {
         Path path = Paths.get(DATA_FILE_PATH);
         try {
             if (Files.exists(path)) {
-                // Overwrite file with empty JSON object Array
-                Files.writeString(path, "[]");
+                // Overwrite file with empty JSON object Array, after the appends already waiting for the file
+                JSONParser.clearJsonArray(DATA_FILE_PATH);
                 logger.info("Weather data cleared successfully in " + DATA_FILE_PATH);
             } else {
                 logger.warning("No weather data file found to clear.");
@@ -0,0 +1,520 @@
+package weather.data;
+
+import org.json.JSONException;
+import weather.utils.JSONParser;
+import weather.utils.JsonTokenizer;
+import weather.utils.JsonWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A weather observation with the station fields of the content server files as primitive fields.
+ * Strings repeated across observations (station id, name, state, time zone, cloud, wind direction) are interned.
+ * Members the schema does not know, or known ones with an unexpected type, are kept as compact JSON and written back
+ * unchanged, so decoding and encoding an observation never loses data.
+ * <p>
+ * Both wire shapes are supported: the plain station object, and the content server's
+ * {"data": {...}, "SystemTimestamp": ..., "LogicTimestamp": ...} wrapper.
+ */
+public final class WeatherObservation {
+    /**
+     * Returned by the int accessors when the observation does not carry the field
+     */
+    public static final int ABSENT = Integer.MIN_VALUE;
+    /**
+     * Returned by the timestamp accessors when the observation does not carry the timestamp
+     */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final int MAX_INTERNED = 100_000;
+    private static final Map<String, String> INTERNED = new ConcurrentHashMap<>();
+
+    // Station members in the order they are written, the index is the field's bit in present
+    private static final String[] FIELDS = {"id", "name", "state", "time_zone", "lat", "lon", "local_date_time",
+            "local_date_time_full", "air_temp", "apparent_t", "cloud", "dewpt", "press", "rel_hum", "wind_dir",
+            "wind_spd_kmh", "wind_spd_kt"};
+    private static final int ID = 0, NAME = 1, STATE = 2, TIME_ZONE = 3, LAT = 4, LON = 5, LOCAL_DATE_TIME = 6,
+            LOCAL_DATE_TIME_FULL = 7, AIR_TEMP = 8, APPARENT_T = 9, CLOUD = 10, DEWPT = 11, PRESS = 12, REL_HUM = 13,
+            WIND_DIR = 14, WIND_SPD_KMH = 15, WIND_SPD_KT = 16, SYSTEM_TIMESTAMP = 17, LOGIC_TIMESTAMP = 18;
+    private static final byte[] NO_EXTRAS = new byte[0];
+
+    private boolean wrapped;
+    private int present;
+    private String id;
+    private String name;
+    private String state;
+    private String timeZone;
+    private String localDateTime;
+    // Digits only, e.g. 20230715160000, is kept as a number; anything else as text
+    private long localDateTimeFull;
+    private String localDateTimeFullText;
+    private String cloud;
+    private String windDir;
+    private double lat;
+    private double lon;
+    private double airTemp;
+    private double apparentT;
+    private double dewpt;
+    private double press;
+    private int relHum;
+    private int windSpdKmh;
+    private int windSpdKt;
+    private long systemTimestamp;
+    private long logicTimestamp;
+    // Unknown station members and unknown wrapper members, as compact "name":value pairs
+    private byte[] extras = NO_EXTRAS;
+    private byte[] wrapperExtras = NO_EXTRAS;
+
+    private WeatherObservation() {
+    }
+
+    /**
+     * Decodes an observation from the content a PUT request carries; text which is no JSON object is wrapped like
+     * {@link JSONParser#ensureJsonFormat(String)} does
+     */
+    public static WeatherObservation fromContent(String content) {
+        byte[] json = content.getBytes(StandardCharsets.UTF_8);
+        try {
+            return decode(json, 0, json.length);
+        } catch (JSONException e) {
+            byte[] wrappedText = JSONParser.ensureJsonFormat(content).toString().getBytes(StandardCharsets.UTF_8);
+            return decode(wrappedText, 0, wrappedText.length);
+        }
+    }
+
+    /**
+     * @throws JSONException When the input is not a valid JSON object
+     */
+    public static WeatherObservation decode(byte[] json, int offset, int length) {
+        WeatherObservation observation = new WeatherObservation();
+        observation.wrapped = hasDataObject(json, offset, length);
+        JsonTokenizer tokenizer = new JsonTokenizer(json, offset, length);
+        tokenizer.next();
+        JsonWriter unknown = new JsonWriter(64);
+        if (!observation.wrapped) {
+            observation.readStationMembers(tokenizer, json, unknown);
+            observation.extras = members(unknown);
+            return observation;
+        }
+
+        JsonWriter stationUnknown = new JsonWriter(64);
+        while (tokenizer.next() == JsonTokenizer.Token.NAME) {
+            if (tokenizer.nameEquals("data")) {
+                observation.readData(tokenizer, json, stationUnknown, unknown);
+            } else if (tokenizer.nameEquals("SystemTimestamp")) {
+                observation.readTimestamp(tokenizer, json, unknown, SYSTEM_TIMESTAMP);
+            } else if (tokenizer.nameEquals("LogicTimestamp")) {
+                observation.readTimestamp(tokenizer, json, unknown, LOGIC_TIMESTAMP);
+            } else {
+                copyMember(tokenizer, json, unknown);
+            }
+        }
+        observation.extras = members(stationUnknown);
+        observation.wrapperExtras = members(unknown);
+        return observation;
+    }
+
+    /**
+     * @return The observation as compact UTF-8 JSON
+     */
+    public byte[] encode() {
+        JsonWriter writer = new JsonWriter(256);
+        encodeTo(writer);
+        return writer.toByteArray();
+    }
+
+    public void encodeTo(JsonWriter writer) {
+        writer.beginObject();
+        if (!wrapped) {
+            writeStationMembers(writer);
+        } else {
+            writer.name("data").beginObject();
+            writeStationMembers(writer);
+            writer.endObject();
+            if (has(SYSTEM_TIMESTAMP)) {
+                writer.name("SystemTimestamp").value(systemTimestamp);
+            }
+            if (has(LOGIC_TIMESTAMP)) {
+                writer.name("LogicTimestamp").value(logicTimestamp);
+            }
+            writer.rawMembers(wrapperExtras);
+        }
+        writer.endObject();
+    }
+
+    public String toJson() {
+        return new String(encode(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The raw JSON of a member the schema does not know, or null if there is none
+     */
+    public String extra(String memberName) {
+        String value = findMember(extras, memberName);
+        return (value != null) ? value : findMember(wrapperExtras, memberName);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String state() {
+        return state;
+    }
+
+    public String timeZone() {
+        return timeZone;
+    }
+
+    public String localDateTime() {
+        return localDateTime;
+    }
+
+    public String localDateTimeFull() {
+        return has(LOCAL_DATE_TIME_FULL) ? Long.toString(localDateTimeFull) : localDateTimeFullText;
+    }
+
+    public String cloud() {
+        return cloud;
+    }
+
+    public String windDir() {
+        return windDir;
+    }
+
+    /**
+     * @return Latitude, NaN when absent; the other double accessors behave the same
+     */
+    public double lat() {
+        return doubleField(LAT, lat);
+    }
+
+    public double lon() {
+        return doubleField(LON, lon);
+    }
+
+    public double airTemp() {
+        return doubleField(AIR_TEMP, airTemp);
+    }
+
+    public double apparentT() {
+        return doubleField(APPARENT_T, apparentT);
+    }
+
+    public double dewpt() {
+        return doubleField(DEWPT, dewpt);
+    }
+
+    public double press() {
+        return doubleField(PRESS, press);
+    }
+
+    /**
+     * @return Relative humidity, {@link #ABSENT} when absent; the other int accessors behave the same
+     */
+    public int relHum() {
+        return has(REL_HUM) ? relHum : ABSENT;
+    }
+
+    public int windSpdKmh() {
+        return has(WIND_SPD_KMH) ? windSpdKmh : ABSENT;
+    }
+
+    public int windSpdKt() {
+        return has(WIND_SPD_KT) ? windSpdKt : ABSENT;
+    }
+
+    /**
+     * @return The content server's Lamport time, {@link #NO_TIMESTAMP} when absent
+     */
+    public long logicTimestamp() {
+        return has(LOGIC_TIMESTAMP) ? logicTimestamp : NO_TIMESTAMP;
+    }
+
+    /**
+     * @return The content server's send time, {@link #NO_TIMESTAMP} when absent
+     */
+    public long systemTimestamp() {
+        return has(SYSTEM_TIMESTAMP) ? systemTimestamp : NO_TIMESTAMP;
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    private double doubleField(int field, double value) {
+        return has(field) ? value : Double.NaN;
+    }
+
+    private boolean has(int field) {
+        return (present & (1 << field)) != 0;
+    }
+
+    // Reads the "data" member whose NAME was just returned; a second "data" which is no object is kept as it is
+    private void readData(JsonTokenizer tokenizer, byte[] json, JsonWriter stationUnknown, JsonWriter unknown) {
+        int nameStart = tokenizer.tokenStart();
+        int nameEnd = tokenizer.tokenEnd();
+        JsonTokenizer.Token token = tokenizer.next();
+        if (token == JsonTokenizer.Token.BEGIN_OBJECT) {
+            readStationMembers(tokenizer, json, stationUnknown);
+            return;
+        }
+        int valueStart = tokenizer.tokenStart();
+        if (token == JsonTokenizer.Token.BEGIN_ARRAY) {
+            tokenizer.skipContainer();
+        }
+        unknown.rawName(json, nameStart, nameEnd - nameStart).rawValue(json, valueStart, tokenizer.tokenEnd() - valueStart);
+    }
+
+    // Reads the members of the station object whose BEGIN_OBJECT was just returned
+    private void readStationMembers(JsonTokenizer tokenizer, byte[] json, JsonWriter unknown) {
+        while (tokenizer.next() == JsonTokenizer.Token.NAME) {
+            int field = fieldIndex(tokenizer);
+            if (field < 0) {
+                copyMember(tokenizer, json, unknown);
+                continue;
+            }
+            int nameStart = tokenizer.tokenStart();
+            int nameEnd = tokenizer.tokenEnd();
+            JsonTokenizer.Token token = tokenizer.next();
+            if (!readField(field, token, tokenizer)) {
+                // Known member with an unexpected type, kept as it is
+                int valueStart = tokenizer.tokenStart();
+                if (token == JsonTokenizer.Token.BEGIN_OBJECT || token == JsonTokenizer.Token.BEGIN_ARRAY) {
+                    tokenizer.skipContainer();
+                }
+                unknown.rawName(json, nameStart, nameEnd - nameStart).rawValue(json, valueStart, tokenizer.tokenEnd() - valueStart);
+            }
+        }
+    }
+
+    private boolean readField(int field, JsonTokenizer.Token token, JsonTokenizer tokenizer) {
+        boolean string = token == JsonTokenizer.Token.STRING;
+        boolean number = token == JsonTokenizer.Token.NUMBER;
+        switch (field) {
+            case ID, NAME, STATE, TIME_ZONE, CLOUD, WIND_DIR, LOCAL_DATE_TIME -> {
+                if (!string) {
+                    return false;
+                }
+                setString(field, tokenizer.stringValue());
+            }
+            case LOCAL_DATE_TIME_FULL -> {
+                if (!string) {
+                    return false;
+                }
+                String text = tokenizer.stringValue();
+                if (isPlainNumber(text)) {
+                    localDateTimeFull = Long.parseLong(text);
+                    present |= 1 << LOCAL_DATE_TIME_FULL;
+                } else {
+                    localDateTimeFullText = text;
+                }
+            }
+            case LAT, LON, AIR_TEMP, APPARENT_T, DEWPT, PRESS -> {
+                if (!number) {
+                    return false;
+                }
+                setDouble(field, Double.parseDouble(tokenizer.stringValue()));
+            }
+            default -> {
+                if (!number) {
+                    return false;
+                }
+                try {
+                    setInt(field, tokenizer.intValue());
+                } catch (JSONException e) {
+                    return false; // e.g. a fraction
+                }
+            }
+        }
+        return true;
+    }
+
+    // A timestamp which is no integer is copied to the unknown members
+    private void readTimestamp(JsonTokenizer tokenizer, byte[] json, JsonWriter unknown, int field) {
+        int nameStart = tokenizer.tokenStart();
+        int nameEnd = tokenizer.tokenEnd();
+        JsonTokenizer.Token token = tokenizer.next();
+        try {
+            if (token == JsonTokenizer.Token.NUMBER) {
+                if (field == SYSTEM_TIMESTAMP) {
+                    systemTimestamp = Long.parseLong(tokenizer.stringValue());
+                } else {
+                    logicTimestamp = tokenizer.longValue();
+                }
+                present |= 1 << field;
+                return;
+            }
+        } catch (NumberFormatException | JSONException e) {
+            // Not an integer, kept as it is below
+        }
+        int valueStart = tokenizer.tokenStart();
+        if (token == JsonTokenizer.Token.BEGIN_OBJECT || token == JsonTokenizer.Token.BEGIN_ARRAY) {
+            tokenizer.skipContainer();
+        }
+        unknown.rawName(json, nameStart, nameEnd - nameStart).rawValue(json, valueStart, tokenizer.tokenEnd() - valueStart);
+    }
+
+    private void setString(int field, String value) {
+        switch (field) {
+            case ID -> id = intern(value);
+            case NAME -> name = intern(value);
+            case STATE -> state = intern(value);
+            case TIME_ZONE -> timeZone = intern(value);
+            case CLOUD -> cloud = intern(value);
+            case WIND_DIR -> windDir = intern(value);
+            default -> localDateTime = value;
+        }
+    }
+
+    private void setDouble(int field, double value) {
+        switch (field) {
+            case LAT -> lat = value;
+            case LON -> lon = value;
+            case AIR_TEMP -> airTemp = value;
+            case APPARENT_T -> apparentT = value;
+            case DEWPT -> dewpt = value;
+            default -> press = value;
+        }
+        present |= 1 << field;
+    }
+
+    private void setInt(int field, int value) {
+        switch (field) {
+            case REL_HUM -> relHum = value;
+            case WIND_SPD_KMH -> windSpdKmh = value;
+            default -> windSpdKt = value;
+        }
+        present |= 1 << field;
+    }
+
+    private void writeStationMembers(JsonWriter writer) {
+        writeString(writer, ID, id);
+        writeString(writer, NAME, name);
+        writeString(writer, STATE, state);
+        writeString(writer, TIME_ZONE, timeZone);
+        writeDouble(writer, LAT, lat);
+        writeDouble(writer, LON, lon);
+        writeString(writer, LOCAL_DATE_TIME, localDateTime);
+        writeString(writer, LOCAL_DATE_TIME_FULL, localDateTimeFull());
+        writeDouble(writer, AIR_TEMP, airTemp);
+        writeDouble(writer, APPARENT_T, apparentT);
+        writeString(writer, CLOUD, cloud);
+        writeDouble(writer, DEWPT, dewpt);
+        writeDouble(writer, PRESS, press);
+        writeInt(writer, REL_HUM, relHum);
+        writeString(writer, WIND_DIR, windDir);
+        writeInt(writer, WIND_SPD_KMH, windSpdKmh);
+        writeInt(writer, WIND_SPD_KT, windSpdKt);
+        writer.rawMembers(extras);
+    }
+
+    private static void writeString(JsonWriter writer, int field, String value) {
+        if (value != null) {
+            writer.name(FIELDS[field]).value(value);
+        }
+    }
+
+    private void writeDouble(JsonWriter writer, int field, double value) {
+        if (has(field)) {
+            writer.name(FIELDS[field]).value(value);
+        }
+    }
+
+    private void writeInt(JsonWriter writer, int field, int value) {
+        if (has(field)) {
+            writer.name(FIELDS[field]).value(value);
+        }
+    }
+
+    private static int fieldIndex(JsonTokenizer tokenizer) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (tokenizer.nameEquals(FIELDS[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Copies the member whose NAME was just returned
+    private static void copyMember(JsonTokenizer tokenizer, byte[] json, JsonWriter unknown) {
+        unknown.rawName(json, tokenizer.tokenStart(), tokenizer.tokenEnd() - tokenizer.tokenStart());
+        int valueStart = tokenizer.skipValue();
+        unknown.rawValue(json, valueStart, tokenizer.tokenEnd() - valueStart);
+    }
+
+    // A first pass deciding the shape: the content server wraps the station object in "data"
+    private static boolean hasDataObject(byte[] json, int offset, int length) {
+        JsonTokenizer tokenizer = new JsonTokenizer(json, offset, length);
+        if (tokenizer.next() != JsonTokenizer.Token.BEGIN_OBJECT) {
+            throw new JSONException("An observation must be a JSON object");
+        }
+        boolean wrapped = false;
+        while (tokenizer.next() == JsonTokenizer.Token.NAME) {
+            boolean data = tokenizer.nameEquals("data");
+            int valueStart = tokenizer.skipValue();
+            wrapped |= data && json[valueStart] == '{';
+        }
+        tokenizer.next(); // Rejects content after the object
+        return wrapped;
+    }
+
+    private static byte[] members(JsonWriter unknown) {
+        if (unknown.size() == 0) {
+            return NO_EXTRAS;
+        }
+        // The writer wrote the members without an enclosing object, so its bytes are the member list
+        return unknown.toByteArray();
+    }
+
+    private static String findMember(byte[] members, String memberName) {
+        if (members.length == 0) {
+            return null;
+        }
+        byte[] object = new byte[members.length + 2];
+        object[0] = '{';
+        System.arraycopy(members, 0, object, 1, members.length);
+        object[object.length - 1] = '}';
+        JsonTokenizer tokenizer = new JsonTokenizer(object);
+        tokenizer.next();
+        while (tokenizer.next() == JsonTokenizer.Token.NAME) {
+            boolean match = tokenizer.nameEquals(memberName);
+            int valueStart = tokenizer.skipValue();
+            if (match) {
+                return new String(object, valueStart, tokenizer.tokenEnd() - valueStart, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPlainNumber(String text) {
+        if (text.isEmpty() || text.length() > 18 || text.charAt(0) == '0') {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String intern(String value) {
+        String interned = INTERNED.get(value);
+        if (interned != null) {
+            return interned;
+        }
+        if (INTERNED.size() >= MAX_INTERNED) {
+            return value;
+        }
+        interned = INTERNED.putIfAbsent(value, value);
+        return (interned != null) ? interned : value;
+    }
+}
@@ -0,0 +1,406 @@
+package weather.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of NDJSON records with group commit.
+ * Appends from concurrent PUT requests are queued and written by a single writer thread. The writer waits up to the
+ * group commit window for more records, writes the whole batch sequentially and syncs it with one fsync, then completes
+ * the future of every record in the batch. A larger window means fewer fsyncs per record but a higher PUT latency.
+ * <p>
+ * The log is split into numbered segment files next to the base path, e.g. weatherData.log.000001. A new segment is
+ * started once the current one reaches the segment size or when {@link #rollSegment()} is called, so segments covered
+ * by a snapshot can be deleted as a whole.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(WriteAheadLog.class.getName());
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final Path basePath;
+    private final long groupCommitMicros;
+    private final int maxBatch;
+    private final boolean fsync;
+    private final long segmentBytes;
+    private final BlockingQueue<PendingWrite> pending = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    // Guards the check of running together with the add to pending, so close() never strands a queued write
+    private final ReentrantLock closeLock = new ReentrantLock();
+    private volatile boolean running = true;
+    // Only touched by the writer thread after construction
+    private FileChannel channel;
+    private volatile long currentSegment;
+
+    private enum Operation { APPEND, ROLL, TRUNCATE }
+
+    // Work for the writer thread; the future completes with the segment the operation ended in
+    private record PendingWrite(Operation operation, byte[] record, CompletableFuture<Long> done) {
+    }
+
+    /**
+     * Opens the log for appending; a torn record at the end left by a crash is cut off first
+     *
+     * @param basePath          Path the segment files are named after
+     * @param groupCommitMicros How long the writer waits for more records before syncing a batch, 0 syncs at once
+     * @param maxBatch          Maximum number of records synced together
+     * @param fsync             False skips the fsync, records are then only handed to the operating system
+     * @param segmentBytes      Size after which the writer starts a new segment
+     */
+    public WriteAheadLog(Path basePath, long groupCommitMicros, int maxBatch, boolean fsync, long segmentBytes) throws IOException {
+        this.basePath = basePath.toAbsolutePath();
+        this.groupCommitMicros = groupCommitMicros;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.fsync = fsync;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(this.basePath.getParent());
+
+        List<Long> segments = listSegments();
+        if (segments.isEmpty() && Files.isRegularFile(this.basePath)) {
+            // A log written before segmentation becomes the first segment
+            Files.move(this.basePath, segmentPath(1));
+            segments = List.of(1L);
+        }
+        this.currentSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        this.channel = openSegment(currentSegment);
+        truncateTornRecord();
+        channel.position(channel.size());
+
+        this.writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public WriteAheadLog(Path basePath, long groupCommitMicros, int maxBatch, boolean fsync) throws IOException {
+        this(basePath, groupCommitMicros, maxBatch, fsync, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads every complete record in the log, in append order
+     */
+    public void replay(Consumer<String> consumer) throws IOException {
+        replay(0, consumer);
+    }
+
+    /**
+     * Reads every complete record of the segments numbered fromSegment and later, in append order
+     */
+    public void replay(long fromSegment, Consumer<String> consumer) throws IOException {
+        for (long segment : listSegments()) {
+            if (segment < fromSegment) {
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(segmentPath(segment), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        consumer.accept(line);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a record for the next group commit
+     *
+     * @param record A single line of JSON, without line break
+     * @return Completes with the segment holding the record once it is durable,
+     * or exceptionally when it could not be written
+     */
+    public CompletableFuture<Long> append(String record) {
+        byte[] bytes = (record + "\n").getBytes(StandardCharsets.UTF_8);
+        return enqueue(Operation.APPEND, bytes);
+    }
+
+    /**
+     * Queues a record already encoded as UTF-8 JSON for the next group commit
+     *
+     * @param record A single line of JSON, without line break
+     */
+    public CompletableFuture<Long> append(byte[] record) {
+        byte[] line = Arrays.copyOf(record, record.length + 1);
+        line[record.length] = '\n';
+        return enqueue(Operation.APPEND, line);
+    }
+
+    /**
+     * Queues several UTF-8 encoded records as one write, so they share a single group commit slot
+     *
+     * @param records Single lines of JSON, without line breaks
+     */
+    public CompletableFuture<Long> append(List<byte[]> records) {
+        int size = 0;
+        for (byte[] record : records) {
+            size += record.length + 1;
+        }
+        byte[] lines = new byte[size];
+        int position = 0;
+        for (byte[] record : records) {
+            System.arraycopy(record, 0, lines, position, record.length);
+            position += record.length;
+            lines[position++] = '\n';
+        }
+        return enqueue(Operation.APPEND, lines);
+    }
+
+    /**
+     * Queues several UTF-8 encoded records as one write and waits until they are durable
+     *
+     * @throws UncheckedIOException When the records could not be written
+     */
+    public void appendAndSync(List<byte[]> records) {
+        await(append(records));
+    }
+
+    /**
+     * Queues a record and waits until it is durable
+     *
+     * @throws UncheckedIOException When the record could not be written
+     */
+    public void appendAndSync(String record) {
+        await(append(record));
+    }
+
+    /**
+     * Queues a UTF-8 encoded record and waits until it is durable
+     *
+     * @throws UncheckedIOException When the record could not be written
+     */
+    public void appendAndSync(byte[] record) {
+        await(append(record));
+    }
+
+    /**
+     * Starts a new segment, ordered after all appends queued before it
+     *
+     * @return Number of the new segment; every record appended before the call is in an earlier segment
+     */
+    public long rollSegment() {
+        return await(enqueue(Operation.ROLL, null));
+    }
+
+    /**
+     * Deletes the segments numbered below the given one, e.g. once a snapshot covers them
+     */
+    public void deleteSegmentsBefore(long segment) throws IOException {
+        for (long existing : listSegments()) {
+            if (existing < segment && existing < currentSegment) {
+                Files.deleteIfExists(segmentPath(existing));
+            }
+        }
+    }
+
+    /**
+     * Drops every record, ordered after all appends queued before it
+     */
+    public void truncate() {
+        await(enqueue(Operation.TRUNCATE, null));
+    }
+
+    public Path path() {
+        return basePath;
+    }
+
+    public long currentSegment() {
+        return currentSegment;
+    }
+
+    /**
+     * Writes out the queued records and closes the file
+     */
+    @Override
+    public void close() {
+        closeLock.lock();
+        try {
+            running = false;
+        } finally {
+            closeLock.unlock();
+        }
+        try {
+            writer.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close " + basePath, e);
+        }
+    }
+
+    private CompletableFuture<Long> enqueue(Operation operation, byte[] record) {
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        closeLock.lock();
+        try {
+            if (!running) {
+                done.completeExceptionally(new IOException("Log " + basePath + " is closed"));
+                return done;
+            }
+            pending.add(new PendingWrite(operation, record, done));
+            return done;
+        } finally {
+            closeLock.unlock();
+        }
+    }
+
+    private long await(CompletableFuture<Long> done) {
+        try {
+            return done.join();
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new UncheckedIOException("Failed to write to " + basePath,
+                    cause instanceof IOException io ? io : new IOException(cause));
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingWrite first = pending.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collectBatch(batch);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        // Only left behind if the writer was interrupted; fail them rather than leave their callers waiting
+        for (PendingWrite write = pending.poll(); write != null; write = pending.poll()) {
+            write.done().completeExceptionally(new IOException("Log " + basePath + " stopped before the write"));
+        }
+    }
+
+    // Waits up to the group commit window for more records to share the fsync; ROLL and TRUNCATE end a batch
+    private void collectBatch(List<PendingWrite> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(groupCommitMicros);
+        while (batch.size() < maxBatch && batch.get(batch.size() - 1).operation() == Operation.APPEND) {
+            long remaining = deadline - System.nanoTime();
+            PendingWrite next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : pending.poll();
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commit(List<PendingWrite> batch) {
+        try {
+            int size = 0;
+            for (PendingWrite write : batch) {
+                size += write.record() == null ? 0 : write.record().length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            for (PendingWrite write : batch) {
+                if (write.record() != null) {
+                    buffer.put(write.record());
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            long segment = currentSegment;
+
+            Operation last = batch.get(batch.size() - 1).operation();
+            if (last == Operation.TRUNCATE) {
+                deleteAllSegments();
+                startSegment(currentSegment + 1);
+            } else if (last == Operation.ROLL || channel.size() >= segmentBytes) {
+                startSegment(currentSegment + 1);
+            }
+            for (PendingWrite write : batch) {
+                write.done().complete(write.operation() == Operation.APPEND ? segment : currentSegment);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to write " + batch.size() + " records to " + basePath, e);
+            batch.forEach(write -> write.done().completeExceptionally(e));
+        }
+    }
+
+    private void startSegment(long segment) throws IOException {
+        channel.close();
+        channel = openSegment(segment);
+        currentSegment = segment;
+    }
+
+    private void deleteAllSegments() throws IOException {
+        for (long segment : listSegments()) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+    }
+
+    private FileChannel openSegment(long segment) throws IOException {
+        return FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Path segmentPath(long segment) {
+        return basePath.resolveSibling(basePath.getFileName() + "." + String.format("%06d", segment));
+    }
+
+    // Segment numbers present on disk, in ascending order
+    private List<Long> listSegments() throws IOException {
+        String prefix = basePath.getFileName() + ".";
+        try (Stream<Path> files = Files.list(basePath.getParent())) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.length() > prefix.length()
+                            && name.substring(prefix.length()).chars().allMatch(Character::isDigit))
+                    .map(name -> Long.parseLong(name.substring(prefix.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // A crash can leave half a record at the end, which never got acknowledged; cut it off at the last line break
+    private void truncateTornRecord() throws IOException {
+        long size = channel.size();
+        long end = size;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (end > 0) {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear().limit((int) (end - start));
+            channel.read(buffer, start);
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    cutAt(start + i + 1, size);
+                    return;
+                }
+            }
+            end = start;
+        }
+        cutAt(0, size);
+    }
+
+    private void cutAt(long validSize, long size) throws IOException {
+        if (validSize < size) {
+            logger.warning("Dropping " + (size - validSize) + " bytes of a torn record at the end of segment " + currentSegment);
+            channel.truncate(validSize);
+        }
+    }
+}
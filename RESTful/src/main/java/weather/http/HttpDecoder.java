@@ -0,0 +1,319 @@
+package weather.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Incremental HTTP/1.1 message decoder.
+ * Bytes are fed in as they arrive from the connection and complete messages are taken out one at a time,
+ * so several requests can be pipelined on one connection. Bodies are framed by Content-Length or chunked
+ * Transfer-Encoding; a PUT/POST without either (or a response without either) ends when the peer closes.
+ * <p>
+ * Both the blocking and the selector based server use it, the clients use it to read responses.
+ */
+public class HttpDecoder {
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BODY_SIZE = 16 * 1024 * 1024;
+
+    private byte[] buffer = new byte[4096];
+    private int start = 0;
+    private int end = 0;
+
+    public void feed(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, end, length);
+        end += length;
+    }
+
+    public void feed(ByteBuffer bytes) {
+        int length = bytes.remaining();
+        ensureCapacity(length);
+        bytes.get(buffer, end, length);
+        end += length;
+    }
+
+    /**
+     * @return True when bytes of a following (pipelined) message are already buffered
+     */
+    public boolean hasBufferedInput() {
+        return end > start;
+    }
+
+    /**
+     * Takes the next complete request out of the buffer.
+     *
+     * @param endOfStream True when the client will not send anything more
+     * @return The request, or null when more bytes are needed (or the stream ended mid-request)
+     */
+    public HttpRequest nextRequest(boolean endOfStream) throws HttpParseException {
+        skipLeadingLineBreaks();
+        int lineEnd = indexOf('\n', start);
+        if (lineEnd < 0) {
+            checkHeaderLimit();
+            return null;
+        }
+        String[] requestLine = line(start, lineEnd).trim().split(" +");
+        if (requestLine.length < 2 || requestLine.length > 3) {
+            throw new HttpParseException(400, "Bad Request", "Malformed request line");
+        }
+        if (requestLine.length == 2) {
+            // Bare request line without version and headers, e.g. "GET /weather"
+            start = lineEnd + 1;
+            return new HttpRequest(requestLine[0], requestLine[1], "HTTP/0.9", Map.of(), "");
+        }
+
+        int headerEnd = findHeaderEnd(lineEnd);
+        if (headerEnd < 0) {
+            checkHeaderLimit();
+            return null;
+        }
+        Map<String, String> headers = parseHeaders(lineEnd + 1, headerEnd);
+        String method = requestLine[0];
+        boolean closeDelimited = method.equals("PUT") || method.equals("POST");
+        String body = readBody(headerEnd, headers, closeDelimited, endOfStream);
+        if (body == null) {
+            return null;
+        }
+        return new HttpRequest(method, requestLine[1], requestLine[2], headers, body);
+    }
+
+    /**
+     * Takes the next complete response out of the buffer.
+     *
+     * @param endOfStream True when the server will not send anything more
+     * @return The response, or null when more bytes are needed (or the stream ended mid-response)
+     */
+    public HttpResponse nextResponse(boolean endOfStream) throws HttpParseException {
+        skipLeadingLineBreaks();
+        int lineEnd = indexOf('\n', start);
+        if (lineEnd < 0) {
+            checkHeaderLimit();
+            return null;
+        }
+        String[] statusLine = line(start, lineEnd).trim().split(" ", 3);
+        int status;
+        try {
+            status = Integer.parseInt(statusLine[1]);
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new HttpParseException(502, "Bad Gateway", "Malformed status line");
+        }
+        String reason = statusLine.length == 3 ? statusLine[2] : "";
+
+        int headerEnd = findHeaderEnd(lineEnd);
+        if (headerEnd < 0) {
+            checkHeaderLimit();
+            return null;
+        }
+        Map<String, String> headers = parseHeaders(lineEnd + 1, headerEnd);
+        if (!HttpResponse.hasBody(status)) {
+            start = headerEnd;
+            return new HttpResponse(status, reason, headers, null);
+        }
+        String body = readBody(headerEnd, headers, true, endOfStream);
+        if (body == null) {
+            return null;
+        }
+        // The decoded body is already framed, so drop the framing headers
+        headers.keySet().removeIf(name -> name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Transfer-Encoding"));
+        return new HttpResponse(status, reason, headers, body);
+    }
+
+    // Reads the body starting at bodyStart, moving start past it; null when it is not complete yet
+    private String readBody(int bodyStart, Map<String, String> headers, boolean closeDelimited, boolean endOfStream) throws HttpParseException {
+        String transferEncoding = header(headers, "Transfer-Encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            return readChunkedBody(bodyStart);
+        }
+
+        String contentLength = header(headers, "Content-Length");
+        if (contentLength != null) {
+            int length;
+            try {
+                length = Integer.parseInt(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new HttpParseException(400, "Bad Request", "Invalid Content-Length: " + contentLength);
+            }
+            if (length < 0) {
+                throw new HttpParseException(400, "Bad Request", "Invalid Content-Length: " + contentLength);
+            }
+            if (length > MAX_BODY_SIZE) {
+                throw new HttpParseException(413, "Payload Too Large", "Body exceeds " + MAX_BODY_SIZE + " bytes");
+            }
+            if (end - bodyStart < length) {
+                return null;
+            }
+            start = bodyStart + length;
+            return new String(buffer, bodyStart, length, StandardCharsets.UTF_8);
+        }
+
+        if (!closeDelimited) {
+            start = bodyStart;
+            return "";
+        }
+        // Legacy framing, the body runs until the peer closes its output
+        if (!endOfStream) {
+            if (end - bodyStart > MAX_BODY_SIZE) {
+                throw new HttpParseException(413, "Payload Too Large", "Body exceeds " + MAX_BODY_SIZE + " bytes");
+            }
+            return null;
+        }
+        start = end;
+        return new String(buffer, bodyStart, end - bodyStart, StandardCharsets.UTF_8);
+    }
+
+    private String readChunkedBody(int bodyStart) throws HttpParseException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        int position = bodyStart;
+        while (true) {
+            int lineEnd = indexOf('\n', position);
+            if (lineEnd < 0) {
+                return null;
+            }
+            String sizeLine = line(position, lineEnd);
+            int extension = sizeLine.indexOf(';');
+            if (extension >= 0) {
+                sizeLine = sizeLine.substring(0, extension);
+            }
+            int size;
+            try {
+                size = Integer.parseInt(sizeLine.trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new HttpParseException(400, "Bad Request", "Invalid chunk size: " + sizeLine);
+            }
+            position = lineEnd + 1;
+
+            if (size == 0) {
+                // Last chunk, skip optional trailers up to the blank line
+                while (true) {
+                    int trailerEnd = indexOf('\n', position);
+                    if (trailerEnd < 0) {
+                        return null;
+                    }
+                    boolean blank = line(position, trailerEnd).isEmpty();
+                    position = trailerEnd + 1;
+                    if (blank) {
+                        start = position;
+                        return content.toString(StandardCharsets.UTF_8);
+                    }
+                }
+            }
+
+            if (size < 0 || size > MAX_BODY_SIZE - content.size()) {
+                throw new HttpParseException(413, "Payload Too Large", "Body exceeds " + MAX_BODY_SIZE + " bytes");
+            }
+            // Chunk sizes come from the client, the sums must not overflow
+            if ((long) end - position < (long) size + 1) {
+                return null;
+            }
+            content.write(buffer, position, size);
+            position += size;
+            // Every chunk is followed by CRLF
+            if (buffer[position] == '\r') {
+                position++;
+            }
+            if (position >= end) {
+                return null;
+            }
+            if (buffer[position] != '\n') {
+                throw new HttpParseException(400, "Bad Request", "Missing CRLF after chunk");
+            }
+            position++;
+        }
+    }
+
+    // Position just after the blank line ending the header block, -1 when it has not arrived yet
+    private int findHeaderEnd(int requestLineEnd) {
+        for (int i = requestLineEnd; i < end; i++) {
+            if (buffer[i] != '\n') {
+                continue;
+            }
+            if (i + 1 < end && buffer[i + 1] == '\n') {
+                return i + 2;
+            }
+            if (i + 2 < end && buffer[i + 1] == '\r' && buffer[i + 2] == '\n') {
+                return i + 3;
+            }
+        }
+        return -1;
+    }
+
+    private Map<String, String> parseHeaders(int from, int headerEnd) throws HttpParseException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        int position = from;
+        while (position < headerEnd) {
+            int lineEnd = indexOf('\n', position);
+            String headerLine = line(position, lineEnd);
+            position = lineEnd + 1;
+            if (headerLine.isEmpty()) {
+                continue;
+            }
+            int colon = headerLine.indexOf(':');
+            if (colon <= 0) {
+                throw new HttpParseException(400, "Bad Request", "Malformed header: " + headerLine);
+            }
+            headers.put(headerLine.substring(0, colon).trim(), headerLine.substring(colon + 1).trim());
+        }
+        return headers;
+    }
+
+    private static String header(Map<String, String> headers, String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    // Blank lines between pipelined messages are ignored
+    private void skipLeadingLineBreaks() {
+        while (start < end && (buffer[start] == '\r' || buffer[start] == '\n')) {
+            start++;
+        }
+        if (start == end) {
+            start = 0;
+            end = 0;
+        }
+    }
+
+    private void checkHeaderLimit() throws HttpParseException {
+        if (end - start > MAX_HEADER_SIZE) {
+            throw new HttpParseException(431, "Request Header Fields Too Large", "Header exceeds " + MAX_HEADER_SIZE + " bytes");
+        }
+    }
+
+    private int indexOf(char target, int from) {
+        for (int i = from; i < end; i++) {
+            if (buffer[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Decodes the line between from and the '\n' at lineEnd, without the trailing '\r'
+    private String line(int from, int lineEnd) {
+        int to = lineEnd > from && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+        return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private void ensureCapacity(int length) {
+        if (end + length <= buffer.length) {
+            return;
+        }
+        // Reclaim the space of already consumed messages first
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if (end + length > buffer.length) {
+            byte[] larger = new byte[Math.max(buffer.length * 2, end + length)];
+            System.arraycopy(buffer, 0, larger, 0, end);
+            buffer = larger;
+        }
+    }
+}
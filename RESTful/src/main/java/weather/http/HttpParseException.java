@@ -0,0 +1,24 @@
+package weather.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link HttpDecoder} when the received bytes are not a valid HTTP message.
+ * Carries the status the server should answer with before closing the connection.
+ */
+public class HttpParseException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final String reason;
+
+    public HttpParseException(int status, String reason, String message) {
+        super(message);
+        this.status = status;
+        this.reason = reason;
+    }
+
+    public HttpResponse toResponse() {
+        return HttpResponse.of(status, reason).withHeader("Connection", "close");
+    }
+}
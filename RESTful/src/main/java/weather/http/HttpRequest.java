@@ -0,0 +1,69 @@
+package weather.http;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * A fully received HTTP request.
+ *
+ * @param version "HTTP/1.1", "HTTP/1.0", or "HTTP/0.9" for a bare request line without version and headers
+ * @param headers Request headers as received, use {@link #header(String)} for lookups
+ */
+public record HttpRequest(String method, String target, String version, Map<String, String> headers, String body) {
+
+    /**
+     * Case-insensitive header lookup
+     */
+    public String header(String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * HTTP/1.1 connections stay open unless the client sends "Connection: close",
+     * HTTP/1.0 connections only when the client asks for "Connection: keep-alive".
+     */
+    public boolean keepAlive() {
+        String connection = header("Connection");
+        if ("HTTP/1.1".equals(version)) {
+            return !"close".equalsIgnoreCase(connection);
+        }
+        return "HTTP/1.0".equals(version) && "keep-alive".equalsIgnoreCase(connection);
+    }
+
+    /**
+     * @return The request target without the query string, e.g. "/weather"
+     */
+    public String path() {
+        int query = target.indexOf('?');
+        return (query < 0) ? target : target.substring(0, query);
+    }
+
+    /**
+     * @return The decoded value of the query parameter, or null if the target does not carry it
+     * @throws IllegalArgumentException If the query string holds a malformed %-escape
+     */
+    public String queryParameter(String name) {
+        int query = target.indexOf('?');
+        if (query < 0) {
+            return null;
+        }
+        for (String parameter : target.substring(query + 1).split("&")) {
+            int equals = parameter.indexOf('=');
+            String key = (equals < 0) ? parameter : parameter.substring(0, equals);
+            if (URLDecoder.decode(key, StandardCharsets.UTF_8).equals(name)) {
+                return (equals < 0) ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    public String requestLine() {
+        return method + " " + target + " " + version;
+    }
+}
@@ -0,0 +1,119 @@
+package weather.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A HTTP response, independent of how it is written to or read from the connection.
+ *
+ * @param headers Response headers in the order they are written; Content-Length is added by {@link #encode()}
+ * @param body    Response body, null when the response has no body
+ * @param wire    The encoded response kept by {@link #preEncoded()}, null when it is encoded on every write
+ */
+public record HttpResponse(int status, String reason, Map<String, String> headers, String body, byte[] wire) {
+
+    public HttpResponse(int status, String reason, Map<String, String> headers, String body) {
+        this(status, reason, headers, body, null);
+    }
+
+    public static HttpResponse of(int status, String reason) {
+        return new HttpResponse(status, reason, Map.of(), null);
+    }
+
+    public static HttpResponse json(String body) {
+        return new HttpResponse(200, "OK", Map.of("Content-Type", "application/json"), body);
+    }
+
+    /**
+     * @return A copy which keeps its wire format, so writing it again, e.g. from a cache, costs no encoding
+     */
+    public HttpResponse preEncoded() {
+        return (wire != null) ? this : new HttpResponse(status, reason, headers, body, encode());
+    }
+
+    /**
+     * @return A copy of this response with the header added or replaced
+     */
+    public HttpResponse withHeader(String name, String value) {
+        Map<String, String> newHeaders = new LinkedHashMap<>(headers);
+        boolean replaced = newHeaders.keySet().removeIf(name::equalsIgnoreCase);
+        newHeaders.put(name, value);
+        // A new header is spliced into the pre-encoded bytes, the body is not encoded again
+        byte[] newWire = (wire == null || replaced) ? null : insertHeader(wire, name + ": " + value + "\r\n");
+        return new HttpResponse(status, reason, newHeaders, body, newWire);
+    }
+
+    /**
+     * Case-insensitive header lookup
+     */
+    public String header(String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the peer asked for the connection to be closed after this response
+     */
+    public boolean closesConnection() {
+        return "close".equalsIgnoreCase(header("Connection"));
+    }
+
+    /**
+     * Wire format of the response, status line, headers, blank line and body framed by Content-Length.
+     * A pre-encoded response returns its shared bytes, which must not be modified.
+     */
+    public byte[] encode() {
+        if (wire != null) {
+            return wire;
+        }
+        byte[] content = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        if (hasBody(status)) {
+            head.append("Content-Length: ").append(content.length).append("\r\n");
+        }
+        head.append("\r\n");
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] message = new byte[headBytes.length + content.length];
+        System.arraycopy(headBytes, 0, message, 0, headBytes.length);
+        System.arraycopy(content, 0, message, headBytes.length, content.length);
+        return message;
+    }
+
+    // Inserts the header line before the blank line ending the head
+    private static byte[] insertHeader(byte[] message, String headerLine) {
+        int headEnd = 0;
+        while (!(message[headEnd] == '\r' && message[headEnd + 1] == '\n'
+                && message[headEnd + 2] == '\r' && message[headEnd + 3] == '\n')) {
+            headEnd++;
+        }
+        headEnd += 2;
+        byte[] header = headerLine.getBytes(StandardCharsets.US_ASCII);
+        byte[] spliced = new byte[message.length + header.length];
+        System.arraycopy(message, 0, spliced, 0, headEnd);
+        System.arraycopy(header, 0, spliced, headEnd, header.length);
+        System.arraycopy(message, headEnd, spliced, headEnd + header.length, message.length - headEnd);
+        return spliced;
+    }
+
+    /**
+     * 1xx, 204 and 304 responses never carry a body
+     */
+    static boolean hasBody(int status) {
+        return status >= 200 && status != 204 && status != 304;
+    }
+
+    @Override
+    public String toString() {
+        return status + " " + reason;
+    }
+}
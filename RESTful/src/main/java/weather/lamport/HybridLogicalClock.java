@@ -0,0 +1,77 @@
+package weather.lamport;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hybrid logical clock: a timestamp packs the physical time in milliseconds into its upper 48 bits and a logical
+ * counter into the lower 16. Like a Lamport clock, the timestamps of causally related events are ordered; unlike it,
+ * a timestamp stays close to the wall clock, so timestamps of different nodes compare by time and a time range maps
+ * to a timestamp range, see {@link #lowerBound(long)}.
+ * <p>
+ * The clock is one atomic 64-bit value. Events within the same millisecond count up the logical part; should 65536
+ * events share one millisecond, the count carries into the physical part, which keeps timestamps unique and ordered.
+ */
+public class HybridLogicalClock {
+    private static final int LOGICAL_BITS = 16;
+
+    private final LongSupplier wallClock;
+    private final AtomicLong last = new AtomicLong();
+
+    public HybridLogicalClock() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param wallClock Physical time in milliseconds
+     */
+    public HybridLogicalClock(LongSupplier wallClock) {
+        this.wallClock = wallClock;
+    }
+
+    /**
+     * @return Timestamp for a local or send event, greater than every timestamp returned or received before
+     */
+    public long now() {
+        long physical = lowerBound(wallClock.getAsLong());
+        return last.updateAndGet(previous -> Math.max(previous + 1, physical));
+    }
+
+    /**
+     * Advances the clock past a received timestamp
+     *
+     * @return Timestamp of the receive event
+     */
+    public long update(long received) {
+        long physical = lowerBound(wallClock.getAsLong());
+        return last.accumulateAndGet(received, (previous, other) -> Math.max(Math.max(previous, other) + 1, physical));
+    }
+
+    /**
+     * @return The last timestamp returned, without advancing the clock
+     */
+    public long current() {
+        return last.get();
+    }
+
+    /**
+     * @return Physical time in milliseconds of a timestamp
+     */
+    public static long physicalMillis(long timestamp) {
+        return timestamp >>> LOGICAL_BITS;
+    }
+
+    /**
+     * @return Logical counter of a timestamp, how many events preceded it within its millisecond
+     */
+    public static int logical(long timestamp) {
+        return (int) (timestamp & ((1 << LOGICAL_BITS) - 1));
+    }
+
+    /**
+     * @return The smallest timestamp at the given physical time, for range queries by time
+     */
+    public static long lowerBound(long millis) {
+        return millis << LOGICAL_BITS;
+    }
+}
@@ -2,15 +2,19 @@ package weather.lamport;
 
 public interface LamportClock {
     // Get the current time
-    int getTime();
+    long getTime();
 
     // Increment the clock for an internal event
     // Carefully use it; It only used on node internally
     void tick();
 
     // Update the clock after receiving a message
-    void update(int otherClock);
+    void update(long otherClock);
 
     // Prepare clock for sending a message
-    int incrementAndGet();
+    long incrementAndGet();
+
+    // Advance the clock for several events at once, e.g. a batch of received messages
+    // Returns the first of the reserved times, the events get consecutive times
+    long reserve(int events);
 }
@@ -1,32 +1,42 @@
 package weather.lamport;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lamport clock shared by all request threads of a node. Every operation is a single atomic update of a 64-bit
+ * counter, so concurrent PUTs never queue for a lock to take their time. Times are 64-bit end to end, so a received
+ * time close to {@link Integer#MAX_VALUE} neither wraps nor overflows.
+ */
 public class LamportClockImpl implements LamportClock {
-    private int clock;
+    private final AtomicLong clock = new AtomicLong();
 
     public LamportClockImpl() {
         // Start clock at 0
-        this.clock = 0;
     }
 
     @Override
-    public synchronized int getTime() {
-        return clock;
+    public long getTime() {
+        return clock.get();
     }
 
     @Override
-    public synchronized void tick() {
-        clock++;
+    public void tick() {
+        clock.incrementAndGet();
     }
 
     @Override
-    public synchronized void update(int otherClock) {
-        clock = Math.max(clock, otherClock) + 1;
+    public void update(long otherClock) {
+        clock.accumulateAndGet(otherClock, (current, other) -> Math.max(current, other) + 1);
     }
 
     @Override
-    public synchronized int incrementAndGet() {
+    public long incrementAndGet() {
         // Increment the clock before sending
-        tick();
-        return getTime();
+        return clock.incrementAndGet();
+    }
+
+    @Override
+    public long reserve(int events) {
+        return clock.addAndGet(events) - events + 1;
     }
 }
@@ -0,0 +1,164 @@
+package weather.server;
+
+import org.json.JSONObject;
+import weather.http.HttpRequest;
+import weather.http.HttpResponse;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs requests on bounded worker pools and sheds load once they are full.
+ * PUT requests go to the ingest pool, all other requests to the query pool, so a burst of content servers
+ * cannot starve GET clients and the other way around. A request which finds its queue full is answered at once
+ * with 503 and Retry-After instead of piling up threads or memory.
+ * <p>
+ * GET /metrics reports queue depths and rejection counts, it bypasses the pools so it stays available under load.
+ * A long-poll GET only holds its worker while it is checked, it is answered later from the broker's thread.
+ * A PUT only holds its worker while it is decoded and handed to the {@link IngestPipeline}, or while the ring of its
+ * partition is full.
+ */
+public class AdmissionController {
+    private static final Logger logger = Logger.getLogger(AdmissionController.class.getName());
+    private static final String METRICS_PATH = "/metrics";
+
+    private final RequestProcessor processor;
+    private final ThreadPoolExecutor ingestPool;
+    private final ThreadPoolExecutor queryPool;
+    private final int retryAfterSeconds;
+    private final LongAdder ingestRejected = new LongAdder();
+    private final LongAdder queryRejected = new LongAdder();
+
+    public AdmissionController(RequestProcessor processor, WorkerPoolConfig config) {
+        this.processor = processor;
+        this.ingestPool = newPool("ingest-worker-", config.ingestThreads(), config.ingestQueueCapacity());
+        this.queryPool = newPool("query-worker-", config.queryThreads(), config.queryQueueCapacity());
+        this.retryAfterSeconds = config.retryAfterSeconds();
+    }
+
+    /**
+     * Runs the request on its pool and hands the response to the callback on the worker thread,
+     * or on the calling thread when the request was rejected.
+     */
+    public void submit(HttpRequest request, Consumer<HttpResponse> callback) {
+        if (request.method().equals("GET") && request.target().startsWith(METRICS_PATH)) {
+            callback.accept(HttpResponse.json(metrics().toString()));
+            return;
+        }
+
+        boolean ingest = request.method().equals("PUT");
+        ThreadPoolExecutor pool = ingest ? ingestPool : queryPool;
+        try {
+            pool.execute(() -> dispatch(request, callback));
+        } catch (RejectedExecutionException e) {
+            (ingest ? ingestRejected : queryRejected).increment();
+            logger.warning("Rejected " + request.requestLine() + ", " + (ingest ? "ingest" : "query") + " queue is full");
+            callback.accept(HttpResponse.of(503, "Service Unavailable")
+                    .withHeader("Retry-After", String.valueOf(retryAfterSeconds)));
+        }
+    }
+
+    /*
+     * Every request is answered even when handling it throws, an unanswered request would hold its connection until
+     * the client gives up. A request the handlers could not make sense of gets 400, anything else 500.
+     */
+    private void dispatch(HttpRequest request, Consumer<HttpResponse> callback) {
+        AtomicBoolean answered = new AtomicBoolean();
+        Consumer<HttpResponse> once = response -> {
+            if (answered.compareAndSet(false, true)) {
+                callback.accept(response);
+            }
+        };
+        try {
+            processor.dispatch(request, once);
+        } catch (IllegalArgumentException e) {
+            logger.warning("Bad request " + request.requestLine() + ": " + e.getMessage());
+            once.accept(HttpResponse.of(400, "Bad Request"));
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to handle " + request.requestLine(), e);
+            once.accept(HttpResponse.of(500, "Internal Server Error"));
+        }
+    }
+
+    /**
+     * Blocking variant of {@link #submit} for connection threads which wait for their response
+     */
+    public HttpResponse execute(HttpRequest request) {
+        CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+        submit(request, response::complete);
+        return response.join();
+    }
+
+    /**
+     * Subscribes a GET /weather/stream request; streams hold their connection, not a worker
+     */
+    public Subscription subscribe(HttpRequest request) {
+        return processor.subscribe(request);
+    }
+
+    public int ingestQueueDepth() {
+        return ingestPool.getQueue().size();
+    }
+
+    public int queryQueueDepth() {
+        return queryPool.getQueue().size();
+    }
+
+    public long ingestRejected() {
+        return ingestRejected.sum();
+    }
+
+    public long queryRejected() {
+        return queryRejected.sum();
+    }
+
+    public JSONObject metrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("ingest", poolMetrics(ingestPool, ingestRejected));
+        metrics.put("query", poolMetrics(queryPool, queryRejected));
+        metrics.put("stream", new JSONObject()
+                .put("subscribers", processor.broker().subscribers())
+                .put("overflowed", processor.broker().overflowed()));
+        return metrics;
+    }
+
+    public void shutdown() {
+        ingestPool.shutdown();
+        queryPool.shutdown();
+        try {
+            ingestPool.awaitTermination(5, TimeUnit.SECONDS);
+            queryPool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static JSONObject poolMetrics(ThreadPoolExecutor pool, LongAdder rejected) {
+        JSONObject metrics = new JSONObject();
+        metrics.put("threads", pool.getPoolSize());
+        metrics.put("active", pool.getActiveCount());
+        metrics.put("queueDepth", pool.getQueue().size());
+        metrics.put("queueCapacity", pool.getQueue().size() + pool.getQueue().remainingCapacity());
+        metrics.put("completed", pool.getCompletedTaskCount());
+        metrics.put("rejected", rejected.sum());
+        return metrics;
+    }
+
+    private static ThreadPoolExecutor newPool(String namePrefix, int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        int size = Math.max(1, threads);
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> new Thread(runnable, namePrefix + count.getAndIncrement()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -9,6 +9,8 @@ public class AggregationServer {
         String host = "localhost"; // Default host
         int port = 4567; // Default port
         int backlog = 10; // Default backlog
+        ServerMode mode = ServerMode.BLOCKING; // Default thread per connection
+        ThreadMode threadMode = ThreadMode.PLATFORM; // Default platform threads
 
         // Parse command-line arguments
         if (args.length >= 1) {
@@ -29,7 +31,22 @@ public class AggregationServer {
             }
         }
 
-        ServerConfig config = new ServerConfig(host, port, backlog);
+        if (args.length >= 4) {
+            try {
+                mode = ServerMode.valueOf(args[3].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                logger.warning("Invalid server mode provided. Using default mode: BLOCKING");
+            }
+        }
+        if (args.length >= 5) {
+            try {
+                threadMode = ThreadMode.valueOf(args[4].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                logger.warning("Invalid thread mode provided. Using default thread mode: PLATFORM");
+            }
+        }
+
+        ServerConfig config = new ServerConfig(host, port, backlog, mode, threadMode);
         ServerActivator serverActivator = new ServerActivator(config);
         /* Core server execution */
         serverActivator.run();
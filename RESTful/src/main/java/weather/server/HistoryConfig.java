@@ -0,0 +1,22 @@
+package weather.server;
+
+import weather.utils.ConfigProperties;
+
+/**
+ * Size of the per-station history served by GET /weather/{id}?from=&amp;to=, see {@link ObservationHistory}.
+ *
+ * @param capacity Observations kept per station, the oldest is overwritten by a new one; 0 keeps no history
+ */
+public record HistoryConfig(int capacity) {
+
+    public static HistoryConfig defaults() {
+        return new HistoryConfig(1024);
+    }
+
+    /**
+     * Reads the history size from the given settings, a missing entry keeps its default
+     */
+    public static HistoryConfig from(ConfigProperties props) {
+        return new HistoryConfig(Math.max(0, props.getInt("history.capacity", defaults().capacity())));
+    }
+}
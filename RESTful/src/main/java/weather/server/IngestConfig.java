@@ -0,0 +1,29 @@
+package weather.server;
+
+import weather.utils.ConfigProperties;
+
+/**
+ * How PUTs are applied to the store.
+ *
+ * @param reorderWindow Updates per station a late update, by its content server's Lamport time, may still be placed
+ *                      behind; older ones are rejected, 0 applies updates in arrival order, see {@link ReorderBuffer}
+ * @param partitions    Writer threads, each storing the stations hashed to it; with the LOG store every partition also
+ *                      has its own log and snapshot, see {@link IngestPipeline}
+ * @param ringSize      Observations waiting for a partition's writer before further PUTs wait too
+ */
+public record IngestConfig(int reorderWindow, int partitions, int ringSize) {
+
+    public static IngestConfig defaults() {
+        return new IngestConfig(64, 1, 1024);
+    }
+
+    /**
+     * Reads the ingest settings from the given settings, missing entries keep their default
+     */
+    public static IngestConfig from(ConfigProperties props) {
+        IngestConfig defaults = defaults();
+        return new IngestConfig(Math.max(0, props.getInt("ingest.reorderWindow", defaults.reorderWindow())),
+                Math.max(1, props.getInt("ingest.partitions", defaults.partitions())),
+                Math.max(1, props.getInt("ingest.ringSize", defaults.ringSize())));
+    }
+}
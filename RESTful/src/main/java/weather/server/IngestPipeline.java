@@ -0,0 +1,259 @@
+package weather.server;
+
+import weather.data.PartitionedWeatherStore;
+import weather.data.WeatherObservation;
+import weather.utils.RingBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The write path of the server: observations of PUTs, decoded on the threads which received them, are published into
+ * one of several preallocated {@link RingBuffer}s, chosen by the hash of their station id. Each partition has one writer
+ * thread which takes everything its ring holds and stores it as one batch, so a station is only ever written by one
+ * thread and the writers of different partitions share nothing but the server clock.
+ * <p>
+ * Batching comes naturally: while a writer waits for its batch to become durable, the next PUTs collect in its ring
+ * and are stored together, so a loaded partition writes fewer, larger batches instead of queueing for its log.
+ * <p>
+ * Removals of stations go through the same rings, so a station is removed exactly between the PUTs published before
+ * and after the removal.
+ * <p>
+ * Closing the pipeline closes the rings: the writers store what was published before and stop, later PUTs, also those
+ * waiting for a slot of a full ring, are answered with 503.
+ */
+public class IngestPipeline implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(IngestPipeline.class.getName());
+    private static final long POLL_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Stores the batch of one partition, always called on that partition's writer thread
+     */
+    public interface BatchWriter {
+        /**
+         * @param status    Filled in with the HTTP status of each observation
+         * @param logicTime Filled in with the server Lamport time each stored observation got
+         */
+        void write(int partition, List<WeatherObservation> batch, int[] status, long[] logicTime);
+
+        /**
+         * Removes a station, after the observations published before the removal are written
+         */
+        void remove(int partition, String stationId);
+    }
+
+    /**
+     * The observations of one PUT, completed once the writers of all their partitions stored them
+     */
+    public static final class PendingPut {
+        private final int[] status;
+        private final long[] logicTime;
+        private final AtomicInteger remaining;
+        private final Consumer<PendingPut> onStored;
+
+        private PendingPut(int items, Consumer<PendingPut> onStored) {
+            this.status = new int[items];
+            this.logicTime = new long[items];
+            this.remaining = new AtomicInteger(items);
+            this.onStored = onStored;
+        }
+
+        public int status(int item) {
+            return status[item];
+        }
+
+        public long logicTime(int item) {
+            return logicTime[item];
+        }
+
+        private void complete(int item, int itemStatus, long itemLogicTime) {
+            status[item] = itemStatus;
+            logicTime[item] = itemLogicTime;
+            // The last writer to finish sees the other writers' results through the decrement
+            if (remaining.decrementAndGet() == 0) {
+                onStored.accept(this);
+            }
+        }
+    }
+
+    // A preallocated ring entry, one observation of a PUT or the removal of a station
+    private static final class Slot {
+        private WeatherObservation observation;
+        private PendingPut put;
+        private int item;
+        private String removal;
+    }
+
+    private final BatchWriter batchWriter;
+    private final List<RingBuffer<Slot>> rings = new ArrayList<>();
+    private final List<Thread> writers = new ArrayList<>();
+
+    /**
+     * @param partitions Number of rings and writer threads
+     * @param ringSize   Observations a partition holds before PUTs wait for its writer
+     */
+    public IngestPipeline(int partitions, int ringSize, BatchWriter batchWriter) {
+        this.batchWriter = batchWriter;
+        for (int partition = 0; partition < Math.max(1, partitions); partition++) {
+            RingBuffer<Slot> ring = new RingBuffer<>(ringSize, Slot::new);
+            int index = partition;
+            Thread writer = new Thread(() -> writeLoop(index, ring), "ingest-writer-" + partition);
+            writer.setDaemon(true);
+            rings.add(ring);
+            writers.add(writer);
+        }
+        writers.forEach(Thread::start);
+    }
+
+    public int partitions() {
+        return rings.size();
+    }
+
+    /**
+     * Hands the observations to the writers of their partitions, waiting only while a partition's ring is full
+     *
+     * @param onStored Called, on the thread of the last writer involved, once every observation is stored or rejected
+     */
+    public void submit(List<WeatherObservation> observations, Consumer<PendingPut> onStored) {
+        PendingPut put = new PendingPut(observations.size(), onStored);
+        for (int i = 0; i < observations.size(); i++) {
+            WeatherObservation observation = observations.get(i);
+            RingBuffer<Slot> ring = rings.get(PartitionedWeatherStore.partitionOf(observation.id(), rings.size()));
+            long sequence = ring.claim();
+            if (sequence == RingBuffer.NO_SEQUENCE) {
+                put.complete(i, 503, 0);
+                continue;
+            }
+            Slot slot = ring.get(sequence);
+            slot.observation = observation;
+            slot.put = put;
+            slot.item = i;
+            ring.publish(sequence);
+        }
+    }
+
+    /**
+     * Hands the removal of a station to the writer of its partition, ordered after the PUTs of the station submitted so
+     * far; dropped once the pipeline is closed
+     */
+    public void submitRemoval(String stationId) {
+        RingBuffer<Slot> ring = rings.get(PartitionedWeatherStore.partitionOf(stationId, rings.size()));
+        long sequence = ring.claim();
+        if (sequence == RingBuffer.NO_SEQUENCE) {
+            return;
+        }
+        ring.get(sequence).removal = stationId;
+        ring.publish(sequence);
+    }
+
+    /**
+     * Stores what the rings still hold, then stops the writers
+     */
+    @Override
+    public void close() {
+        rings.forEach(RingBuffer::close);
+        for (Thread writer : writers) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeLoop(int partition, RingBuffer<Slot> ring) {
+        List<WeatherObservation> batch = new ArrayList<>(ring.capacity());
+        List<Slot> slots = new ArrayList<>(ring.capacity());
+        int[] status = new int[ring.capacity()];
+        long[] logicTime = new long[ring.capacity()];
+        long next = 0;
+        boolean drained = false;
+        try {
+            while (!drained) {
+                int ready = ring.await(next, ring.capacity(), POLL_TIMEOUT_NANOS);
+                if (ready == 0) {
+                    drained = ring.drained(next);
+                    continue;
+                }
+                for (int i = 0; i < ready; i++) {
+                    Slot slot = ring.get(next + i);
+                    if (slot.removal == null) {
+                        batch.add(slot.observation);
+                        slots.add(slot);
+                        continue;
+                    }
+                    // The observations before the removal are stored first
+                    writeBatch(partition, batch, slots, status, logicTime);
+                    try {
+                        batchWriter.remove(partition, slot.removal);
+                    } catch (RuntimeException e) {
+                        logger.log(Level.SEVERE, "Failed to remove station " + slot.removal, e);
+                    }
+                    slot.removal = null;
+                }
+                writeBatch(partition, batch, slots, status, logicTime);
+                // The slots are reused only after their contents were taken
+                ring.release(next + ready - 1);
+                next += ready;
+            }
+        } finally {
+            if (!drained) {
+                // A writer which died takes no more entries, what its ring holds is answered instead of stored
+                ring.close();
+                reject(ring, next);
+            }
+        }
+    }
+
+    // Answers the PUTs the ring still holds with 503 until it is drained, the removals are dropped
+    private static void reject(RingBuffer<Slot> ring, long next) {
+        while (!ring.drained(next)) {
+            int ready = ring.await(next, ring.capacity(), POLL_TIMEOUT_NANOS);
+            for (int i = 0; i < ready; i++) {
+                Slot slot = ring.get(next + i);
+                // Slots whose PUT was already answered have none
+                PendingPut put = slot.put;
+                if (put != null) {
+                    slot.observation = null;
+                    slot.put = null;
+                    put.complete(slot.item, 503, 0);
+                }
+                slot.removal = null;
+            }
+            if (ready > 0) {
+                ring.release(next + ready - 1);
+                next += ready;
+            }
+        }
+    }
+
+    private void writeBatch(int partition, List<WeatherObservation> batch, List<Slot> slots, int[] status,
+                            long[] logicTime) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            batchWriter.write(partition, batch, status, logicTime);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to store a batch of " + batch.size() + " observations", e);
+            Arrays.fill(status, 0, batch.size(), 500);
+        }
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            PendingPut put = slot.put;
+            int item = slot.item;
+            slot.observation = null;
+            slot.put = null;
+            put.complete(item, status[i], logicTime[i]);
+        }
+        batch.clear();
+        slots.clear();
+    }
+}
@@ -0,0 +1,175 @@
+package weather.server;
+
+import weather.http.HttpDecoder;
+import weather.http.HttpParseException;
+import weather.http.HttpRequest;
+import weather.http.HttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * State of one client connection in {@link ServerMode#NIO}.
+ * Received bytes are decoded into requests which are handed to the worker stage one at a time, so responses to
+ * pipelined requests go out in order. The connection stays open while the client keeps it alive.
+ * After a GET /weather/stream it only sends the events of its {@link Subscription} until either side closes it.
+ */
+class NioConnection {
+    private final SocketChannel channel;
+    private final HttpDecoder decoder = new HttpDecoder();
+    private ByteBuffer outbound;
+    private boolean keepAlive = true;
+    private boolean endOfStream = false;
+    // A request is with the worker stage or its response is still being written
+    private boolean busy = false;
+    private long lastActivity = System.currentTimeMillis();
+    // Set once the connection serves an event stream
+    private Subscription subscription;
+    private boolean streamEnded;
+
+    NioConnection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    /**
+     * Passes the bytes read by the event loop to the request decoder
+     */
+    void append(ByteBuffer readBuffer) {
+        decoder.feed(readBuffer);
+        lastActivity = System.currentTimeMillis();
+    }
+
+    void markEndOfStream() {
+        endOfStream = true;
+    }
+
+    boolean endOfStream() {
+        return endOfStream;
+    }
+
+    /**
+     * @return The next complete request, or null when more bytes are needed
+     */
+    HttpRequest nextRequest() throws HttpParseException {
+        HttpRequest request = decoder.nextRequest(endOfStream);
+        if (request != null) {
+            busy = true;
+        }
+        return request;
+    }
+
+    void setResponse(HttpRequest request, HttpResponse response) {
+        keepAlive = request.keepAlive() && !endOfStream;
+        if (!keepAlive) {
+            response = response.withHeader("Connection", "close");
+        } else if (!"HTTP/1.1".equals(request.version())) {
+            response = response.withHeader("Connection", "keep-alive");
+        }
+        outbound = ByteBuffer.wrap(response.encode());
+        busy = true;
+    }
+
+    /**
+     * Answers a request which could not be decoded, the connection is closed afterwards
+     */
+    void setErrorResponse(HttpParseException e) {
+        keepAlive = false;
+        outbound = ByteBuffer.wrap(e.toResponse().encode());
+        busy = true;
+    }
+
+    /**
+     * @return True once the whole response has been written
+     */
+    boolean writeResponse() throws IOException {
+        channel.write(outbound);
+        if (outbound.hasRemaining()) {
+            return false;
+        }
+        outbound = null;
+        // A stream is never idle, it sends heartbeats instead
+        busy = streaming();
+        lastActivity = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Turns the connection into an event stream, the stream head is sent first
+     */
+    void startStream(Subscription subscription) {
+        this.subscription = subscription;
+        keepAlive = false;
+        outbound = ByteBuffer.wrap(Subscription.STREAM_HEAD);
+        busy = true;
+    }
+
+    boolean streaming() {
+        return subscription != null;
+    }
+
+    Subscription subscription() {
+        return subscription;
+    }
+
+    /**
+     * Takes the events waiting in the subscription as the next bytes to send, unless a write is still in progress
+     *
+     * @return True if there is something to send
+     */
+    boolean pumpEvents() {
+        if (outbound != null) {
+            return true;
+        }
+        List<Subscription.Event> events = subscription.drain(64);
+        if (events.isEmpty()) {
+            if (subscription.isClosed() && !streamEnded) {
+                // A subscriber which fell behind is told so before the connection is closed
+                streamEnded = true;
+                outbound = ByteBuffer.wrap(subscription.overflowed() ? Subscription.OVERFLOW : new byte[0]);
+                return true;
+            }
+            return false;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Subscription.Event event : events) {
+            bytes.writeBytes(event.encode());
+        }
+        outbound = ByteBuffer.wrap(bytes.toByteArray());
+        return true;
+    }
+
+    /**
+     * @return True once the stream sent its last bytes and the connection can be closed
+     */
+    boolean streamEnded() {
+        return streamEnded && outbound == null;
+    }
+
+    /**
+     * Sends a heartbeat comment if the stream sent nothing since the deadline
+     *
+     * @return True if a heartbeat was queued
+     */
+    boolean heartbeatIfQuietSince(long deadline) {
+        if (!streaming() || outbound != null || lastActivity >= deadline) {
+            return false;
+        }
+        outbound = ByteBuffer.wrap(Subscription.HEARTBEAT);
+        return true;
+    }
+
+    boolean keepAlive() {
+        return keepAlive;
+    }
+
+    boolean idleSince(long deadline) {
+        return !busy && lastActivity < deadline;
+    }
+}
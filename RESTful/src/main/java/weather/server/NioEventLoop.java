@@ -0,0 +1,278 @@
+package weather.server;
+
+import weather.http.HttpParseException;
+import weather.http.HttpRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One selector thread handling read and write readiness for its share of the connections.
+ * Complete requests are passed to the {@link AdmissionController}, so the loop itself never runs PUT/GET logic.
+ * Event streams are fed by their subscription's listener, which hands the sending over to the loop thread.
+ */
+class NioEventLoop implements Runnable {
+    private static final Logger logger = Logger.getLogger(NioEventLoop.class.getName());
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    // How often idle kept-alive connections are looked for
+    private static final long IDLE_CHECK_INTERVAL_MS = 1000;
+
+    private final Selector selector;
+    private final AdmissionController admission;
+    private final int idleTimeoutMillis;
+    private final long heartbeatMillis;
+    // Work handed over from other threads, only ever executed on the loop thread
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private volatile boolean running = true;
+    private long lastIdleCheck = System.currentTimeMillis();
+
+    NioEventLoop(AdmissionController admission, int idleTimeoutMillis, long heartbeatMillis) throws IOException {
+        this.selector = Selector.open();
+        this.admission = admission;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * Hands an accepted connection over to this loop
+     */
+    void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new NioConnection(channel));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to register client connection.", e);
+                closeQuietly(channel);
+            }
+        });
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select(IDLE_CHECK_INTERVAL_MS);
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        handle(key);
+                    }
+                }
+                closeIdleConnections();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Event loop failed to select.", e);
+            }
+        }
+        closeAll();
+    }
+
+    // A connection whose handling fails is closed, the loop keeps serving all others
+    private void handle(SelectionKey key) {
+        try {
+            if (key.isReadable()) {
+                read(key);
+            } else if (key.isWritable()) {
+                write(key);
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Closing a client connection which failed unexpectedly.", e);
+            close(key);
+        }
+    }
+
+    private void read(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        if (connection.streaming()) {
+            readFromStream(key, connection);
+            return;
+        }
+        try {
+            int read;
+            while ((read = connection.channel().read(readBuffer)) > 0) {
+                readBuffer.flip();
+                connection.append(readBuffer);
+                readBuffer.clear();
+            }
+            if (read < 0) {
+                connection.markEndOfStream();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read from client connection.", e);
+            close(key);
+            return;
+        }
+        processNextRequest(key, connection);
+    }
+
+    // Dispatches the next buffered request, or waits for more bytes when there is none
+    private void processNextRequest(SelectionKey key, NioConnection connection) {
+        HttpRequest request;
+        try {
+            request = connection.nextRequest();
+        } catch (HttpParseException e) {
+            logger.log(Level.WARNING, "Received malformed request: " + e.getMessage());
+            connection.setErrorResponse(e);
+            key.interestOps(SelectionKey.OP_WRITE);
+            return;
+        }
+
+        if (request != null && RequestProcessor.isStream(request)) {
+            startStream(key, connection, request);
+        } else if (request != null) {
+            // Stop reading while the worker stage owns the request, this keeps pipelined responses in order
+            key.interestOps(0);
+            dispatch(key, connection, request);
+        } else if (connection.endOfStream()) {
+            close(key);
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void startStream(SelectionKey key, NioConnection connection, HttpRequest request) {
+        Subscription subscription = admission.subscribe(request);
+        connection.startStream(subscription);
+        // Called on the publishing thread, the loop thread does the sending
+        subscription.setListener(() -> execute(() -> {
+            if (key.isValid() && connection.pumpEvents()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }));
+        key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    // A stream client sends nothing more, reading only notices when it closes the connection
+    private void readFromStream(SelectionKey key, NioConnection connection) {
+        try {
+            int read;
+            while ((read = connection.channel().read(readBuffer)) > 0) {
+                readBuffer.clear();
+            }
+            readBuffer.clear();
+            if (read < 0) {
+                logger.info("Stream subscriber disconnected");
+                close(key);
+            }
+        } catch (IOException e) {
+            logger.info("Stream subscriber disconnected: " + e.getMessage());
+            close(key);
+        }
+    }
+
+    private void dispatch(SelectionKey key, NioConnection connection, HttpRequest request) {
+        // Rejected requests are answered with 503 straight away, that response goes out the same way
+        admission.submit(request, response -> execute(() -> {
+            if (key.isValid()) {
+                connection.setResponse(request, response);
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }));
+    }
+
+    private void write(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        try {
+            if (!connection.writeResponse()) {
+                return;
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write response to client connection.", e);
+            close(key);
+            return;
+        }
+
+        if (connection.streaming()) {
+            if (connection.pumpEvents()) {
+                return;
+            }
+            if (connection.streamEnded()) {
+                close(key);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } else if (connection.keepAlive()) {
+            processNextRequest(key, connection);
+        } else {
+            close(key);
+        }
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        if (now - lastIdleCheck < IDLE_CHECK_INTERVAL_MS) {
+            return;
+        }
+        lastIdleCheck = now;
+        long deadline = now - idleTimeoutMillis;
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && ((NioConnection) key.attachment()).heartbeatIfQuietSince(now - heartbeatMillis)) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (key.isValid() && ((NioConnection) key.attachment()).idleSince(deadline)) {
+                logger.info("Closing connection idle for more than " + idleTimeoutMillis + " ms");
+                close(key);
+            }
+        }
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Event loop task failed.", e);
+            }
+        }
+    }
+
+    private void close(SelectionKey key) {
+        if (key.attachment() instanceof NioConnection connection && connection.streaming()) {
+            connection.subscription().close();
+        }
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            close(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close selector.", e);
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close client connection.", e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package weather.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking Aggregation Server built on {@link ServerSocketChannel} and {@link Selector}.
+ * The calling thread accepts connections and spreads them over a small number of {@link NioEventLoop},
+ * the PUT/GET logic runs on the worker pools of the {@link AdmissionController}.
+ */
+public class NioServer {
+    private static final Logger logger = Logger.getLogger(NioServer.class.getName());
+    // How often the acceptor checks whether the server should stop
+    private static final long SELECT_TIMEOUT_MS = 500;
+
+    private final ServerConfig config;
+    private final AdmissionController admission;
+    private final AtomicBoolean running;
+
+    public NioServer(ServerConfig config, AdmissionController admission, AtomicBoolean running) {
+        this.config = config;
+        this.admission = admission;
+        this.running = running;
+    }
+
+    public void run() throws IOException {
+        NioEventLoop[] loops = new NioEventLoop[Math.max(1, config.ioThreads())];
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open(); Selector acceptSelector = Selector.open()) {
+            serverChannel.bind(new InetSocketAddress(config.host(), config.port()), config.backlog());
+            serverChannel.configureBlocking(false);
+            serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new NioEventLoop(admission, config.idleTimeoutMillis(),
+                        TimeUnit.SECONDS.toMillis(config.stream().heartbeatSeconds()));
+                new Thread(loops[i], "nio-event-loop-" + i).start();
+            }
+            logger.info("Server started in NIO mode on " + config.host() + ":" + config.port()
+                    + " with " + loops.length + " I/O threads");
+
+            acceptConnections(serverChannel, acceptSelector, loops);
+        } finally {
+            for (NioEventLoop loop : loops) {
+                if (loop != null) {
+                    loop.shutdown();
+                }
+            }
+        }
+    }
+
+    private void acceptConnections(ServerSocketChannel serverChannel, Selector acceptSelector, NioEventLoop[] loops) throws IOException {
+        int next = 0;
+        while (running.get()) {
+            acceptSelector.select(SELECT_TIMEOUT_MS);
+            acceptSelector.selectedKeys().clear();
+
+            SocketChannel clientChannel;
+            while ((clientChannel = acceptClient(serverChannel)) != null) {
+                logger.info("Accepted client connection from " + clientChannel.socket().getInetAddress().getHostAddress());
+                // Round-robin the connections over the event loops
+                loops[next].register(clientChannel);
+                next = (next + 1) % loops.length;
+            }
+        }
+        logger.info("Server is shutting down, no more connections will be accepted.");
+    }
+
+    private SocketChannel acceptClient(ServerSocketChannel serverChannel) {
+        try {
+            return serverChannel.accept();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to accept connection.", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package weather.server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Pushes every observation stored by a PUT to the consumers waiting for it: GET /weather/stream subscribers, each
+ * through its own bounded {@link Subscription}, and long-poll GETs waiting for a newer version.
+ * <p>
+ * Publishing runs on the single writer thread of the observation's {@link IngestPipeline} partition, right after the
+ * batch was stored, so it must never wait for a consumer. A slow subscriber cannot block that thread: each subscriber
+ * only takes the short lock of its bounded buffer and is disconnected once the buffer is full, its listener only hands
+ * the sending over to the connection's own thread, and the long-polls it wakes are answered on the broker's thread.
+ */
+public class ObservationBroker {
+    private static final Logger logger = Logger.getLogger(ObservationBroker.class.getName());
+    // Waiter key of long-polls following all stations
+    private static final String ANY_STATION = "";
+
+    private final int bufferEvents;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Map<String, Queue<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final LongAdder overflowed = new LongAdder();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "observation-broker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param bufferEvents Observations a subscriber may fall behind by before it is disconnected
+     */
+    public ObservationBroker(int bufferEvents) {
+        this.bufferEvents = Math.max(1, bufferEvents);
+    }
+
+    /**
+     * @param stationId Station to follow, null for all stations
+     */
+    public Subscription subscribe(String stationId) {
+        Subscription subscription = new Subscription(this, stationId, bufferEvents);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Hands a newly stored observation to its subscribers and wakes the long-polls waiting for its station
+     *
+     * @param stationId Station of the observation, null when it has none
+     * @param version   Server Lamport time the observation was stored at
+     * @param json      The observation as compact JSON
+     */
+    public void publish(String stationId, long version, String json) {
+        if (!subscriptions.isEmpty()) {
+            Subscription.Event event = new Subscription.Event(version, json);
+            for (Subscription subscription : subscriptions) {
+                if (subscription.stationId() != null && !subscription.stationId().equals(stationId)) {
+                    continue;
+                }
+                if (!subscription.offer(event)) {
+                    overflowed.increment();
+                    subscriptions.remove(subscription);
+                    logger.warning("Disconnecting a stream subscriber which fell " + bufferEvents + " observations behind");
+                }
+            }
+        }
+        if (stationId != null) {
+            wake(stationId);
+        }
+        wake(ANY_STATION);
+    }
+
+    /**
+     * Runs the action once, on the broker's thread, when the next observation of the station is published or the
+     * timeout passed, whichever comes first
+     *
+     * @param stationId Station to wait for, null for any station
+     */
+    public Waiter awaitPublish(String stationId, long timeoutMillis, Runnable action) {
+        String key = (stationId == null) ? ANY_STATION : stationId;
+        Waiter waiter = new Waiter(key, action);
+        waiters.computeIfAbsent(key, station -> new ConcurrentLinkedQueue<>()).add(waiter);
+        waiter.timeout = timer.schedule(waiter::fire, timeoutMillis, TimeUnit.MILLISECONDS);
+        return waiter;
+    }
+
+    public int subscribers() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return How many subscribers were disconnected for falling behind
+     */
+    public long overflowed() {
+        return overflowed.sum();
+    }
+
+    private void wake(String key) {
+        Queue<Waiter> waiting = waiters.get(key);
+        if (waiting == null) {
+            return;
+        }
+        Waiter waiter;
+        while ((waiter = waiting.poll()) != null) {
+            waiter.fire();
+        }
+    }
+
+    /**
+     * A long-poll waiting for the next observation
+     */
+    public final class Waiter {
+        private final String key;
+        private final Runnable action;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timeout;
+
+        private Waiter(String key, Runnable action) {
+            this.key = key;
+            this.action = action;
+        }
+
+        /**
+         * Runs the action now unless it already ran, e.g. when the awaited data arrived while registering
+         */
+        public void fire() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            ScheduledFuture<?> pending = timeout;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            Queue<Waiter> waiting = waiters.get(key);
+            if (waiting != null) {
+                waiting.remove(this);
+            }
+            timer.execute(action);
+        }
+    }
+}
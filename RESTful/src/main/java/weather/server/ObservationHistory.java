@@ -0,0 +1,65 @@
+package weather.server;
+
+import weather.lamport.HybridLogicalClock;
+import weather.utils.TimeSeriesRing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The recent observations of every station in the order they were received, for GET /weather/{id}?from=&amp;to=.
+ * <p>
+ * Each station has a {@link TimeSeriesRing} of a fixed number of observations, keyed by the hybrid logical time they
+ * were stored at; once full, a new observation overwrites the station's oldest one. A station therefore takes the same
+ * memory however often it sends, and a time range is found by binary search. The history is only held in memory, it
+ * starts empty when the server starts.
+ */
+public class ObservationHistory {
+    private final int capacity;
+    private final Map<String, TimeSeriesRing<String>> stations = new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity Observations kept per station, 0 keeps none
+     */
+    public ObservationHistory(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a stored observation, called by the single writer of the station
+     *
+     * @param timestamp Hybrid logical time it was stored at, see {@link HybridLogicalClock}; not older than the
+     *                  station's previous one
+     * @param json      The observation as compact JSON
+     */
+    public void add(String stationId, long timestamp, String json) {
+        if (capacity <= 0 || stationId == null) {
+            return;
+        }
+        stations.computeIfAbsent(stationId, id -> new TimeSeriesRing<>(capacity)).append(timestamp, json);
+    }
+
+    /**
+     * @return The observations of the station stored from fromMillis to toMillis, both inclusive, oldest first; null
+     * if the station has no history
+     */
+    public List<TimeSeriesRing.Entry<String>> range(String stationId, long fromMillis, long toMillis) {
+        TimeSeriesRing<String> series = stations.get(stationId);
+        if (series == null) {
+            return null;
+        }
+        // Beyond the physical part of a timestamp, the range is open ended
+        long to = (toMillis >= HybridLogicalClock.physicalMillis(Long.MAX_VALUE))
+                ? Long.MAX_VALUE : HybridLogicalClock.lowerBound(toMillis + 1);
+        return series.range(HybridLogicalClock.lowerBound(Math.max(0, fromMillis)), to);
+    }
+
+    public void removeStation(String stationId) {
+        stations.remove(stationId);
+    }
+
+    public int stations() {
+        return stations.size();
+    }
+}
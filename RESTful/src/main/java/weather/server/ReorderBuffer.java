@@ -0,0 +1,116 @@
+package weather.server;
+
+import weather.data.WeatherObservation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders the updates of each station by the Lamport time their content server stamped them with ("LogicTimestamp"),
+ * rather than by whichever PUT arrives first.
+ * <p>
+ * Every station remembers the source times of its last {@code window} updates: an update older than the latest one
+ * but within these is late, it is stored in its place in the station's history without replacing the latest
+ * observation; an update older than all of them is too late to be placed and is rejected. Updates without a Lamport
+ * time or station id are applied as they come.
+ * <p>
+ * Not thread-safe: a buffer belongs to the writer of an {@link IngestPipeline} partition, which applies all updates
+ * of its stations one batch at a time.
+ */
+public class ReorderBuffer {
+    private final int window;
+    // Source times of the last updates of each station, ascending
+    private final Map<String, long[]> stations = new HashMap<>();
+
+    public enum Placement {
+        // Newer than every update of the station so far, it becomes the station's latest observation
+        IN_ORDER,
+        // Within the window but older than the station's latest observation
+        LATE,
+        // Older than the whole window, not stored
+        TOO_LATE
+    }
+
+    /**
+     * @param window Updates per station a late update may be placed behind, 0 applies all updates in arrival order
+     */
+    public ReorderBuffer(int window) {
+        this.window = Math.max(0, window);
+    }
+
+    /**
+     * Places a batch of updates, earlier updates of the batch count as applied for later ones.
+     * Nothing is remembered until the caller stored the accepted updates and commits.
+     */
+    public Placements place(List<WeatherObservation> observations) {
+        return new Placements(observations);
+    }
+
+    /**
+     * Forgets a removed station, its next update is in order whatever its source time
+     */
+    public void forget(String stationId) {
+        stations.remove(stationId);
+    }
+
+    /**
+     * Where each update of a batch goes in its station's order
+     */
+    public final class Placements {
+        private final List<Placement> placements;
+        // Source times of each station once the accepted updates are applied
+        private final Map<String, long[]> pending = new HashMap<>();
+
+        private Placements(List<WeatherObservation> observations) {
+            this.placements = new ArrayList<>(observations.size());
+            for (WeatherObservation observation : observations) {
+                if (window == 0 || observation.id() == null || observation.logicTimestamp() == WeatherObservation.NO_TIMESTAMP) {
+                    placements.add(Placement.IN_ORDER);
+                    continue;
+                }
+                long[] recent = pending.computeIfAbsent(observation.id(), id -> stations.getOrDefault(id, new long[0]));
+                long time = observation.logicTimestamp();
+                Placement placement = place(recent, time);
+                placements.add(placement);
+                if (placement != Placement.TOO_LATE) {
+                    pending.put(observation.id(), insert(recent, time));
+                }
+            }
+        }
+
+        /**
+         * @return Where the update at the index is placed in its station's order
+         */
+        public Placement get(int index) {
+            return placements.get(index);
+        }
+
+        /**
+         * Records the accepted updates as applied, once they are stored
+         */
+        public void commit() {
+            stations.putAll(pending);
+        }
+    }
+
+    private Placement place(long[] recent, long time) {
+        if (recent.length == 0 || time > recent[recent.length - 1]) {
+            return Placement.IN_ORDER;
+        }
+        return (recent.length < window || time > recent[0]) ? Placement.LATE : Placement.TOO_LATE;
+    }
+
+    // The source times in ascending order with the given one added, keeping only the newest window of them
+    private long[] insert(long[] recent, long time) {
+        int at = Arrays.binarySearch(recent, time);
+        at = (at < 0) ? -at - 1 : at;
+        long[] added = new long[recent.length + 1];
+        System.arraycopy(recent, 0, added, 0, at);
+        added[at] = time;
+        System.arraycopy(recent, at, added, at + 1, recent.length - at);
+        return (added.length > window) ? Arrays.copyOfRange(added, added.length - window, added.length) : added;
+    }
+}
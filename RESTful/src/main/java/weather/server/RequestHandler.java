@@ -1,59 +1,128 @@
 package weather.server;
 
-import weather.data.WeatherDataStore;
+import weather.http.HttpDecoder;
+import weather.http.HttpParseException;
+import weather.http.HttpRequest;
+import weather.http.HttpResponse;
 import weather.lamport.LamportClockImpl;
-import weather.utils.JSONParser;
 
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Help Aggregation Server handle HTTP requests
+ * Help Aggregation Server handle HTTP requests.
+ * The connection is kept alive and serves requests in order until the client asks to close it,
+ * closes it itself, or stays idle longer than the configured timeout.
+ * A GET /weather/stream turns the connection into a Server-Sent Events stream of the stored observations, until the
+ * client closes it.
  */
 public class RequestHandler implements Runnable {
     private static final Logger logger = Logger.getLogger(RequestHandler.class.getName());
-    private static int currentIndex = 0;
+    private static final int READ_BUFFER_SIZE = 8192;
     private final Socket clientSocket;
-    private final WeatherDataStore database;
-    private final LamportClockImpl serverClock;
+    private final Function<HttpRequest, HttpResponse> dispatcher;
+    private final Function<HttpRequest, Subscription> subscriber;
+    private final int idleTimeoutMillis;
+    private final int heartbeatSeconds;
 
     public RequestHandler(Socket clientSocket) {
-        this.clientSocket = clientSocket;
-        database = new WeatherDataStore();
-        serverClock = new LamportClockImpl();
+        this(clientSocket, new LamportClockImpl());
     }
 
     public RequestHandler(Socket clientSocket, LamportClockImpl serverClock) {
+        this(clientSocket, new RequestProcessor(serverClock));
+    }
+
+    public RequestHandler(Socket clientSocket, RequestProcessor processor) {
+        this(clientSocket, processor, ServerConfig.DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    public RequestHandler(Socket clientSocket, RequestProcessor processor, int idleTimeoutMillis) {
+        this(clientSocket, request -> {
+            CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+            processor.dispatch(request, response::complete);
+            return response.join();
+        }, processor::subscribe, idleTimeoutMillis, StreamConfig.defaults().heartbeatSeconds());
+    }
+
+    /**
+     * The connection thread only does the I/O, the PUT/GET logic runs on the bounded worker pools
+     */
+    public RequestHandler(Socket clientSocket, AdmissionController admission, int idleTimeoutMillis) {
+        this(clientSocket, admission, idleTimeoutMillis, StreamConfig.defaults().heartbeatSeconds());
+    }
+
+    /**
+     * @param heartbeatSeconds How often an idle event stream sends a comment
+     */
+    public RequestHandler(Socket clientSocket, AdmissionController admission, int idleTimeoutMillis, int heartbeatSeconds) {
+        this(clientSocket, admission::execute, admission::subscribe, idleTimeoutMillis, heartbeatSeconds);
+    }
+
+    private RequestHandler(Socket clientSocket, Function<HttpRequest, HttpResponse> dispatcher,
+                           Function<HttpRequest, Subscription> subscriber, int idleTimeoutMillis, int heartbeatSeconds) {
         this.clientSocket = clientSocket;
-        this.serverClock = serverClock;
-        this.database = new WeatherDataStore();
+        this.dispatcher = dispatcher;
+        this.subscriber = subscriber;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.heartbeatSeconds = heartbeatSeconds;
     }
 
     @Override
     public void run() {
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream())); BufferedWriter out = new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream()))) {
-
-            String request = in.readLine();
-            if (request == null) {
-                logger.log(Level.SEVERE, "Received null request, possibly due to client disconnection.");
-                return;
-            }
-            logger.info("Received request: " + request);
-
-            /* Only design PUT & GET; Add POST or other HTTP request in future */
-            if (request.startsWith("PUT")) {
-                // From `in` read Header, use `out` return result
-                handlePutRequest(in, out);
-            } else if (request.startsWith("GET")) {
-                handleGetRequest(out);
-            } else {
-                handleUnsupportedMethod(out, request);
+        try (InputStream in = clientSocket.getInputStream(); OutputStream out = new BufferedOutputStream(clientSocket.getOutputStream())) {
+            clientSocket.setSoTimeout(idleTimeoutMillis);
+            HttpDecoder decoder = new HttpDecoder();
+            byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+
+            boolean keepAlive = true;
+            while (keepAlive) {
+                HttpRequest request;
+                try {
+                    request = readRequest(in, decoder, readBuffer);
+                } catch (HttpParseException e) {
+                    logger.log(Level.WARNING, "Received malformed request: " + e.getMessage());
+                    out.write(e.toResponse().encode());
+                    break;
+                }
+                if (request == null) {
+                    break; // Client closed the connection
+                }
+
+                if (RequestProcessor.isStream(request)) {
+                    out.flush();
+                    stream(request, out);
+                    break;
+                }
+
+                keepAlive = request.keepAlive();
+                HttpResponse response = dispatcher.apply(request);
+                if (!keepAlive) {
+                    response = response.withHeader("Connection", "close");
+                } else if (!"HTTP/1.1".equals(request.version())) {
+                    response = response.withHeader("Connection", "keep-alive");
+                }
+                out.write(response.encode());
+
+                // Pipelined requests are answered together, flush once nothing more is waiting
+                if (!decoder.hasBufferedInput() && in.available() == 0) {
+                    out.flush();
+                }
             }
             out.flush();
+        } catch (SocketTimeoutException e) {
+            logger.info("Closing connection idle for more than " + idleTimeoutMillis + " ms");
         } catch (IOException e) {
             logger.log(Level.SEVERE, "IOException occurred while processing client request", e);
+        } catch (RuntimeException e) {
+            // Only this connection is lost, the socket is closed below
+            logger.log(Level.SEVERE, "Unexpected error while processing client request", e);
         } finally {
             try {
                 clientSocket.close();
@@ -63,89 +132,51 @@ public class RequestHandler implements Runnable {
         }
     }
 
-    private void handlePutRequest(BufferedReader in, BufferedWriter out) throws IOException {
-        StringBuilder headers = new StringBuilder(); // TODO: Unknown how to process the header now
-        StringBuilder body = new StringBuilder();
-        String line;
-        boolean isBody = false;
-
-        // Separate headers and body
-        while ((line = in.readLine()) != null) {
-            if (line.isEmpty()) {
-                isBody = true; // Blank line indicates start of the body
-                continue;
-            }
-            if (isBody) {
-                body.append(line).append("\n"); // Append to body after the blank line
-            } else {
-                headers.append(line).append("\n"); // Collect headers before the blank line
+    // Sends the subscribed observations until the client goes away or falls behind
+    private void stream(HttpRequest request, OutputStream out) {
+        try (Subscription subscription = subscriber.apply(request)) {
+            out.write(Subscription.STREAM_HEAD);
+            out.flush();
+            while (true) {
+                Subscription.Event event = subscription.poll(heartbeatSeconds, TimeUnit.SECONDS);
+                if (event != null) {
+                    out.write(event.encode());
+                    // Whatever else is waiting goes out with the same flush
+                    for (Subscription.Event next : subscription.drain(64)) {
+                        out.write(next.encode());
+                    }
+                } else if (subscription.isClosed()) {
+                    if (subscription.overflowed()) {
+                        out.write(Subscription.OVERFLOW);
+                    }
+                    out.flush();
+                    return;
+                } else {
+                    out.write(Subscription.HEARTBEAT);
+                }
+                out.flush();
             }
+        } catch (IOException e) {
+            logger.info("Stream subscriber disconnected: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-
-        if (body.isEmpty()) {
-            logger.log(Level.WARNING, "Received PUT request with no body content.");
-            out.write("HTTP/1.1 400 Bad Request\r\n\r\n");
-            return;
-        }
-
-        // Log the raw headers and body to debug
-        logger.info("Received headers: " + headers);
-        logger.info("Received body: " + body.toString().trim());
-
-        /* Store the JSON body data in file system */
-        database.saveWeatherData(body.toString().trim());
-        logger.info("Stored weather data:\n" + body.toString().trim()); // Debug track
-
-        out.write("HTTP/1.1 200 OK\r\n\r\n");
-        out.flush();
-        logger.info("Response sent: 200 OK");
     }
 
-    private void handleGetRequest(BufferedWriter out) throws IOException {
-        logger.info("Handling GET request. Sending stored weather data.");
-
-        // Retrieve data using the WeatherDataStore
-        String weatherData = database.readWeatherData();
-
-        if (weatherData == null || weatherData.isEmpty() || weatherData.trim().equals("{}")) {
-            out.write("HTTP/1.1 204 No Content\r\n\r\n");
-            logger.info("Response sent: 204 No Content");
-            return;
-        }
-
-        int logicTime = serverClock.incrementAndGet();
-        String extractedJsonObject = JSONParser.extractJsonObjectByIndex(weatherData, currentIndex);
-
-        // Check if extracted JSON object is null or empty
-        if (extractedJsonObject == null) {
-            out.write("HTTP/1.1 204 No Content\r\n\r\n");
-            logger.info("Response sent: 204 No Content");
-            return;
-        }
-
-        out.write("HTTP/1.1 200 OK\r\n");
-        out.write("Content-Type: application/json\r\n\r\n");
-        out.write(extractedJsonObject);
-        out.flush();
-
-        logger.info("Response sent: 200 OK with weather data");
-        System.out.println("Current Logic Time: " + logicTime);
-
-        // Update the index for the next request
-        currentIndex++;
-        System.out.println("Current index: " + currentIndex);
-        int jsonArrayLength = JSONParser.getJsonArrayLength(weatherData);
-        if (jsonArrayLength != -1 && currentIndex >= jsonArrayLength) {
-            currentIndex = 0;  // Reset the index if we have sent all objects
+    // Reads from the socket until the decoder has a whole request, null once the client closed the connection
+    private HttpRequest readRequest(InputStream in, HttpDecoder decoder, byte[] readBuffer) throws IOException {
+        boolean endOfStream = false;
+        while (true) {
+            HttpRequest request = decoder.nextRequest(endOfStream);
+            if (request != null || endOfStream) {
+                return request;
+            }
+            int read = in.read(readBuffer);
+            if (read < 0) {
+                endOfStream = true;
+            } else {
+                decoder.feed(readBuffer, 0, read);
+            }
         }
     }
-
-    private void handleUnsupportedMethod(BufferedWriter out, String request) throws IOException {
-        logger.warning("Unsupported request method: " + request);
-
-        out.write("HTTP/1.1 405 Method Not Allowed\r\n\r\n");
-        out.flush();
-
-        logger.info("Response sent: 405 Method Not Allowed");
-    }
 }
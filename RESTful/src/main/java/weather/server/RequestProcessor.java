@@ -0,0 +1,824 @@
+package weather.server;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import weather.data.WeatherDataInterface;
+import weather.data.WeatherDataStore;
+import weather.data.WeatherObservation;
+import weather.http.HttpRequest;
+import weather.http.HttpResponse;
+import weather.lamport.HybridLogicalClock;
+import weather.lamport.LamportClockImpl;
+import weather.utils.JsonTokenizer;
+import weather.utils.JsonWriter;
+import weather.utils.TimeSeriesRing;
+
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * PUT/GET logic of the Aggregation Server.
+ * It only works on already received request content, so the blocking {@link RequestHandler}
+ * and the selector based {@link NioServer} share the same behaviour.
+ * Every stored observation is published to the {@link ObservationBroker}, which pushes it to GET /weather/stream
+ * subscribers and answers long-poll GETs. PUTs are stored by the single writer of their station's partition, see
+ * {@link IngestPipeline}, in their content server's Lamport order, see {@link ReorderBuffer}. The stations of a
+ * content server which sent nothing for the expiry window are removed, see {@link SourceExpiry}. The recent
+ * observations of every station are kept in time order for range queries, see {@link ObservationHistory}.
+ */
+public class RequestProcessor {
+    private static final Logger logger = Logger.getLogger(RequestProcessor.class.getName());
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    private static final int MAX_PAGE_LIMIT = 1000;
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String STREAM_PATH = "/weather/stream";
+    private static final String STATION_PATH = "/weather/";
+    // PUT responses carry the server's Lamport time, content servers move their clocks past it
+    private static final String LAMPORT_HEADER = "Lamport-Clock";
+    // Largest LogicTimestamp a PUT may carry, leaves 2^62 times for the events after it
+    private static final long MAX_LOGIC_TIMESTAMP = Long.MAX_VALUE / 2;
+    // Identifies the content server of a PUT for expiry, PUTs without it count as sent by their station
+    private static final String SOURCE_HEADER = "Content-Server-Id";
+    private static final String STATION_SOURCE = "station:";
+    // Version of the last round-robin GET response, shared by all handler threads
+    private final AtomicLong nextIndex = new AtomicLong();
+    private final WeatherDataInterface database;
+    private final LamportClockImpl serverClock;
+    private final ResponseCache responseCache;
+    private final ObservationBroker broker;
+    private final int maxWaitSeconds;
+    // One per partition, only used by that partition's writer
+    private final List<ReorderBuffer> reorderBuffers = new ArrayList<>();
+    private final IngestPipeline pipeline;
+    private final SourceExpiry expiry;
+    private final ObservationHistory history;
+    // Stamps stored observations for the history, close to the wall clock and ordered per station
+    private final HybridLogicalClock historyClock = new HybridLogicalClock();
+
+    public RequestProcessor(LamportClockImpl serverClock) {
+        this(serverClock, new WeatherDataStore());
+    }
+
+    public RequestProcessor(LamportClockImpl serverClock, WeatherDataInterface database) {
+        this(serverClock, database, StreamConfig.defaults());
+    }
+
+    public RequestProcessor(LamportClockImpl serverClock, WeatherDataInterface database, StreamConfig streamConfig) {
+        this(serverClock, database, streamConfig, IngestConfig.defaults());
+    }
+
+    public RequestProcessor(LamportClockImpl serverClock, WeatherDataInterface database, StreamConfig streamConfig,
+                            IngestConfig ingestConfig) {
+        this(serverClock, database, streamConfig, ingestConfig, RetentionConfig.defaults());
+    }
+
+    public RequestProcessor(LamportClockImpl serverClock, WeatherDataInterface database, StreamConfig streamConfig,
+                            IngestConfig ingestConfig, RetentionConfig retentionConfig) {
+        this(serverClock, database, streamConfig, ingestConfig, retentionConfig, HistoryConfig.defaults());
+    }
+
+    public RequestProcessor(LamportClockImpl serverClock, WeatherDataInterface database, StreamConfig streamConfig,
+                            IngestConfig ingestConfig, RetentionConfig retentionConfig, HistoryConfig historyConfig) {
+        this.serverClock = serverClock;
+        this.database = database;
+        this.responseCache = ResponseCache.load(database, serverClock, retentionConfig.updatesPerStation());
+        this.broker = new ObservationBroker(streamConfig.bufferEvents());
+        this.maxWaitSeconds = streamConfig.maxWaitSeconds();
+        this.history = new ObservationHistory(historyConfig.capacity());
+        for (int partition = 0; partition < Math.max(1, ingestConfig.partitions()); partition++) {
+            reorderBuffers.add(new ReorderBuffer(ingestConfig.reorderWindow()));
+        }
+        IngestPipeline.BatchWriter batchWriter = new IngestPipeline.BatchWriter() {
+            @Override
+            public void write(int partition, List<WeatherObservation> batch, int[] status, long[] logicTime) {
+                RequestProcessor.this.write(partition, batch, status, logicTime);
+            }
+
+            @Override
+            public void remove(int partition, String stationId) {
+                RequestProcessor.this.remove(partition, stationId);
+            }
+        };
+        this.pipeline = new IngestPipeline(ingestConfig.partitions(), ingestConfig.ringSize(), batchWriter);
+        this.expiry = new SourceExpiry(retentionConfig.expiryMillis(), retentionConfig.tickMillis(),
+                pipeline::submitRemoval);
+        // Stations recovered from the store expire unless updated within the window, their content server is unknown
+        for (String stationId : responseCache.stations()) {
+            expiry.seen(STATION_SOURCE + stationId, stationId);
+        }
+    }
+
+    /**
+     * Routes a fully received request to the matching handler
+     */
+    public HttpResponse dispatch(HttpRequest request) {
+        logger.info("Received request: " + request.requestLine());
+
+        /* Only design PUT & GET; Add POST or other HTTP request in future */
+        return switch (request.method()) {
+            case "PUT" -> handlePut(request);
+            case "GET" -> handleGet(request);
+            default -> handleUnsupportedMethod(request.requestLine());
+        };
+    }
+
+    /**
+     * Routes a request like {@link #dispatch(HttpRequest)}, except that a PUT is answered once its partition writers
+     * stored it and a long-poll GET once there is something new, neither holding the calling thread meanwhile.
+     */
+
+    public void dispatch(HttpRequest request, Consumer<HttpResponse> callback) {
+        if (request.method().equals("PUT")) {
+            logger.info("Received request: " + request.requestLine());
+            handlePut(request, callback);
+            return;
+        }
+        try {
+            dispatchGet(request, callback);
+        } catch (IllegalArgumentException e) {
+            callback.accept(malformedTarget(request, e));
+        }
+    }
+
+    /*
+     * A long-poll GET by station id or cursor with wait=<seconds> whose data did not change is answered once it
+     * changes or the wait passed. Unchanged means the If-None-Match ETag still matches, or without one that the
+     * station has no observation yet or the cursor is at the end.
+     */
+    private void dispatchGet(HttpRequest request, Consumer<HttpResponse> callback) {
+        String wait = request.method().equals("GET") ? request.queryParameter("wait") : null;
+        if (wait == null) {
+            callback.accept(dispatch(request));
+            return;
+        }
+        long waitMillis;
+        try {
+            waitMillis = TimeUnit.SECONDS.toMillis(Math.min(Integer.parseInt(wait), maxWaitSeconds));
+        } catch (NumberFormatException e) {
+            logger.warning("Invalid long-poll wait: " + wait);
+            callback.accept(HttpResponse.of(400, "Bad Request"));
+            return;
+        }
+        if (waitMillis <= 0 || !unchanged(request)) {
+            callback.accept(dispatch(request));
+            return;
+        }
+        ObservationBroker.Waiter waiter = broker.awaitPublish(request.queryParameter("id"), waitMillis,
+                () -> callback.accept(dispatch(request)));
+        // An observation stored while the waiter was registered did not wake it, answer now if there was one
+        if (!unchanged(request)) {
+            waiter.fire();
+        }
+    }
+
+    /**
+     * @return True for GET /weather/stream, which is answered with a stream of events by the connection itself
+     */
+    public static boolean isStream(HttpRequest request) {
+        return request.method().equals("GET") && request.path().equals(STREAM_PATH) && wellFormedQuery(request);
+    }
+
+    // A stream request with a malformed query is answered 400 by handleGet instead of being subscribed
+    private static boolean wellFormedQuery(HttpRequest request) {
+        try {
+            request.queryParameter("id");
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Subscribes a GET /weather/stream request to the stored observations, GET /weather/stream?id=... to those of
+     * one station
+     */
+    public Subscription subscribe(HttpRequest request) {
+        String stationId = request.queryParameter("id");
+        Subscription subscription = broker.subscribe((stationId == null || stationId.isEmpty()) ? null : stationId);
+        logger.info("Stream subscriber added" + ((stationId == null) ? "" : " for station " + stationId)
+                + ", " + broker.subscribers() + " subscribers");
+        return subscription;
+    }
+
+    public ObservationBroker broker() {
+        return broker;
+    }
+
+    // Whether a long-poll GET would find nothing newer than what the client has
+    private boolean unchanged(HttpRequest request) {
+        String ifNoneMatch = request.header("If-None-Match");
+        String stationId = request.queryParameter("id");
+        if (stationId != null) {
+            HttpResponse latest = responseCache.latest(stationId);
+            return latest == null || (ifNoneMatch != null && matches(ifNoneMatch, latest.header("ETag")));
+        }
+        String cursor = request.queryParameter("cursor");
+        if (cursor == null && request.queryParameter("limit") == null) {
+            // The round-robin GET always has a next observation, unless there is none at all
+            return responseCache.size() == 0;
+        }
+        if (ifNoneMatch != null) {
+            return matches(ifNoneMatch, responseCache.datasetETag());
+        }
+        try {
+            return cursor != null && !cursor.isEmpty() && !responseCache.hasAfter(decodeCursor(cursor));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public HttpResponse handlePut(HttpRequest request) {
+        CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+        handlePut(request, response::complete);
+        return response.join();
+    }
+
+    /**
+     * Decodes a PUT on the calling thread and hands its observations to the {@link IngestPipeline}, the callback gets
+     * the response on the writer thread which stored the last of them
+     */
+    public void handlePut(HttpRequest request, Consumer<HttpResponse> callback) {
+        String body = request.body();
+        if (body.isBlank()) {
+            logger.log(Level.WARNING, "Received PUT request with no body content.");
+            callback.accept(HttpResponse.of(400, "Bad Request"));
+            return;
+        }
+
+        if (isBatch(request, body)) {
+            handlePutBatch(request.header(SOURCE_HEADER), body, callback);
+            return;
+        }
+
+        // Log the raw headers and body to debug
+        logger.info("Received headers: " + request.headers());
+        logger.info("Received body: " + body.trim());
+
+        /* Decode the observation once, its partition's writer indexes it by the server time it is stored at */
+        WeatherObservation observation = WeatherObservation.fromContent(body.trim());
+        if (!validLogicTimestamp(observation)) {
+            logger.warning("Rejected a PUT with LogicTimestamp " + observation.logicTimestamp() + " out of range");
+            callback.accept(HttpResponse.of(400, "Bad Request"));
+            return;
+        }
+        receive(List.of(observation));
+        seen(request, observation);
+        pipeline.submit(List.of(observation), put -> callback.accept(switch (put.status(0)) {
+            case 200 -> {
+                logger.info("Stored weather data:\n" + body.trim()); // Debug track
+                logger.info("Response sent: 200 OK");
+                yield withClock(HttpResponse.of(200, "OK"));
+            }
+            case 409 -> withClock(HttpResponse.of(409, "Conflict"));
+            case 503 -> HttpResponse.of(503, "Service Unavailable");
+            default -> HttpResponse.of(500, "Internal Server Error");
+        }));
+    }
+
+    public HttpResponse handlePutBatch(String body) {
+        CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+        handlePutBatch(null, body, response::complete);
+        return response.join();
+    }
+
+    /**
+     * Stores a batch of observations, sent as NDJSON (one observation per line) or as a JSON array; the writer of each
+     * partition stores its share with one storage operation and one advance of the server clock. Items which are no
+     * JSON object, or too late to be placed in their station's order, are rejected on their own. The body reports the
+     * status of every item in order, e.g.
+     * {"stored":1,"failed":1,"items":[{"status":200,"id":"IDS60901","logicTime":7},{"status":400,"error":"..."}]}
+     */
+    public void handlePutBatch(String body, Consumer<HttpResponse> callback) {
+        handlePutBatch(null, body, callback);
+    }
+
+    private void handlePutBatch(String sourceId, String body, Consumer<HttpResponse> callback) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        List<BatchItem> items;
+        try {
+            items = (firstNonWhitespace(bytes) == '[') ? decodeArray(bytes) : decodeLines(bytes);
+        } catch (JSONException e) {
+            logger.warning("Received a malformed batch: " + e.getMessage());
+            callback.accept(HttpResponse.of(400, "Bad Request"));
+            return;
+        }
+        if (items.isEmpty()) {
+            callback.accept(HttpResponse.of(400, "Bad Request"));
+            return;
+        }
+        List<WeatherObservation> decoded = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            if (item.observation() != null) {
+                decoded.add(item.observation());
+            }
+        }
+        if (decoded.isEmpty()) {
+            callback.accept(batchResponse(items, null));
+            return;
+        }
+        receive(decoded);
+        for (WeatherObservation observation : decoded) {
+            expiry.seen(source(sourceId, observation), observation.id());
+        }
+        pipeline.submit(decoded, put -> callback.accept(batchResponse(items, put)));
+    }
+
+    // The status of every item of a batch, put holds those of the decoded items in order
+    private HttpResponse batchResponse(List<BatchItem> items, IngestPipeline.PendingPut put) {
+        List<BatchItem> results = new ArrayList<>(items.size());
+        int stored = 0;
+        int serverError = 0;
+        int decoded = 0;
+        for (BatchItem item : items) {
+            if (item.observation() == null) {
+                results.add(item);
+                continue;
+            }
+            int status = put.status(decoded++);
+            if (status == 200) {
+                stored++;
+            } else if (status >= 500) {
+                serverError = status;
+            }
+            results.add(new BatchItem(item.observation(), status, switch (status) {
+                case 200 -> null;
+                case 409 -> "Older than the reorder window of station " + item.observation().id();
+                case 503 -> "The server is shutting down";
+                default -> "Failed to store the observation";
+            }));
+        }
+
+        JsonWriter result = new JsonWriter(32 * items.size() + 64);
+        result.beginObject().name("stored").value(stored)
+                .name("failed").value(items.size() - stored)
+                .name("items").beginArray();
+        decoded = 0;
+        for (BatchItem item : results) {
+            result.beginObject().name("status").value(item.status());
+            if (item.status() == 200) {
+                result.name("id").value(item.observation().id()).name("logicTime").value(put.logicTime(decoded));
+            } else {
+                result.name("error").value(item.error());
+            }
+            if (item.observation() != null) {
+                decoded++;
+            }
+            result.endObject();
+        }
+        result.endArray().endObject();
+
+        logger.info("Stored a batch of " + stored + " observations, rejected " + (items.size() - stored));
+        HttpResponse response = withClock(HttpResponse.json(result.toString()));
+        if (stored > 0) {
+            return response;
+        }
+        return (serverError != 0) ? new HttpResponse(serverError, (serverError == 503) ? "Service Unavailable"
+                : "Internal Server Error", response.headers(), response.body())
+                : new HttpResponse(400, "Bad Request", response.headers(), response.body());
+    }
+
+    // Stores the batch of one partition on its writer thread: places every update in its station's order, stores the
+    // accepted ones with one storage operation and one advance of the server clock, then publishes them
+    private void write(int partition, List<WeatherObservation> batch, int[] status, long[] logicTime) {
+        ReorderBuffer.Placements placements = reorderBuffers.get(partition).place(batch);
+        List<WeatherObservation> accepted = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            WeatherObservation observation = batch.get(i);
+            logicTime[i] = 0;
+            if (placements.get(i) == ReorderBuffer.Placement.TOO_LATE) {
+                logger.warning("Rejected an update of station " + observation.id() + " at Lamport time "
+                        + observation.logicTimestamp() + ", older than the reorder window");
+                status[i] = 409;
+            } else {
+                accepted.add(observation);
+                status[i] = 200;
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        long firstLogicTime = serverClock.reserve(accepted.size());
+        try {
+            database.saveObservations(accepted, firstLogicTime);
+        } catch (UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Failed to store a batch of " + accepted.size() + " observations", e);
+            for (int i = 0; i < batch.size(); i++) {
+                if (status[i] == 200) {
+                    status[i] = 500;
+                }
+            }
+            return;
+        }
+        placements.commit();
+        long next = firstLogicTime;
+        for (int i = 0; i < batch.size(); i++) {
+            if (status[i] != 200) {
+                continue;
+            }
+            WeatherObservation observation = batch.get(i);
+            logicTime[i] = next++;
+            // Encode the GET response now, once, instead of on every GET
+            String json = observation.toJson();
+            responseCache.add(observation.id(), logicTime[i], observation.logicTimestamp(), json);
+            history.add(observation.id(), historyClock.now(), json);
+            broker.publish(observation.id(), logicTime[i], json);
+        }
+    }
+
+    // Removes an expired station on its partition's writer, unless a content server sent it again since it expired
+    private void remove(int partition, String stationId) {
+        if (expiry.owned(stationId)) {
+            return;
+        }
+        try {
+            database.removeStation(stationId);
+        } catch (UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Failed to remove the expired station " + stationId, e);
+            return;
+        }
+        // A new version, so validators of the dataset taken before the removal no longer match
+        responseCache.removeStation(stationId, serverClock.incrementAndGet());
+        history.removeStation(stationId);
+        reorderBuffers.get(partition).forget(stationId);
+        logger.info("Removed the expired station " + stationId);
+    }
+
+    // Records the PUT of the observation for the expiry of its content server
+    private void seen(HttpRequest request, WeatherObservation observation) {
+        expiry.seen(source(request.header(SOURCE_HEADER), observation), observation.id());
+    }
+
+    private static String source(String sourceId, WeatherObservation observation) {
+        if (sourceId != null && !sourceId.isBlank()) {
+            return sourceId.trim();
+        }
+        return (observation.id() != null) ? STATION_SOURCE + observation.id() : STATION_SOURCE;
+    }
+
+    /**
+     * Stores the PUTs already handed to the writers, then stops them; later PUTs are answered with 503
+     */
+    public void close() {
+        expiry.close();
+        pipeline.close();
+    }
+
+    // A JSON array, or NDJSON declared by its content type
+    private static boolean isBatch(HttpRequest request, String body) {
+        String contentType = request.header("Content-Type");
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(NDJSON)) {
+            return true;
+        }
+        for (int i = 0; i < body.length(); i++) {
+            if (!Character.isWhitespace(body.charAt(i))) {
+                return body.charAt(i) == '[';
+            }
+        }
+        return false;
+    }
+
+    private static int firstNonWhitespace(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    // An item of a batch PUT, either decoded or the reason it was rejected
+    private record BatchItem(WeatherObservation observation, int status, String error) {
+        BatchItem(WeatherObservation observation, String error) {
+            this(observation, (observation != null) ? 200 : 400, error);
+        }
+    }
+
+    // A received time moves the server clock past it, so a time near the top of the range would leave no room for
+    // the server's own events; negative times are no Lamport times at all
+    private static boolean validLogicTimestamp(WeatherObservation observation) {
+        long logicTimestamp = observation.logicTimestamp();
+        return logicTimestamp == WeatherObservation.NO_TIMESTAMP
+                || (logicTimestamp >= 0 && logicTimestamp <= MAX_LOGIC_TIMESTAMP);
+    }
+
+    private HttpResponse withClock(HttpResponse response) {
+        return response.withHeader(LAMPORT_HEADER, Long.toString(serverClock.getTime()));
+    }
+
+    // Receiving the content servers' Lamport times moves the server clock past them
+    private void receive(List<WeatherObservation> observations) {
+        long latest = WeatherObservation.NO_TIMESTAMP;
+        for (WeatherObservation observation : observations) {
+            latest = Math.max(latest, observation.logicTimestamp());
+        }
+        if (latest != WeatherObservation.NO_TIMESTAMP) {
+            serverClock.update(latest);
+        }
+    }
+
+    private static List<BatchItem> decodeArray(byte[] bytes) {
+        List<BatchItem> items = new ArrayList<>();
+        JsonTokenizer tokenizer = new JsonTokenizer(bytes);
+        if (tokenizer.next() != JsonTokenizer.Token.BEGIN_ARRAY) {
+            throw new JSONException("Expected a JSON array");
+        }
+        while (true) {
+            JsonTokenizer.Token token = tokenizer.next();
+            if (token == JsonTokenizer.Token.END_ARRAY) {
+                break;
+            }
+            int start = tokenizer.tokenStart();
+            if (token == JsonTokenizer.Token.BEGIN_OBJECT || token == JsonTokenizer.Token.BEGIN_ARRAY) {
+                tokenizer.skipContainer();
+            }
+            items.add(token == JsonTokenizer.Token.BEGIN_OBJECT
+                    ? decodeItem(bytes, start, tokenizer.tokenEnd() - start)
+                    : new BatchItem(null, "Not a JSON object"));
+        }
+        if (tokenizer.next() != JsonTokenizer.Token.END) {
+            throw new JSONException("Unexpected content after the array");
+        }
+        return items;
+    }
+
+    private static List<BatchItem> decodeLines(byte[] bytes) {
+        List<BatchItem> items = new ArrayList<>();
+        int start = 0;
+        while (start < bytes.length) {
+            int end = start;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+            int first = start;
+            while (first < end && (bytes[first] == ' ' || bytes[first] == '\t' || bytes[first] == '\r')) {
+                first++;
+            }
+            if (first < end) {
+                items.add(decodeItem(bytes, first, end - first));
+            }
+            start = end + 1;
+        }
+        return items;
+    }
+
+    private static BatchItem decodeItem(byte[] bytes, int offset, int length) {
+        try {
+            WeatherObservation observation = WeatherObservation.decode(bytes, offset, length);
+            return validLogicTimestamp(observation) ? new BatchItem(observation, null)
+                    : new BatchItem(null, "LogicTimestamp out of range");
+        } catch (JSONException e) {
+            return new BatchItem(null, e.getMessage());
+        }
+    }
+
+    /**
+     * GET /weather?id=... answers the latest observation of the station,
+     * GET /weather?cursor=...&amp;limit=... a page of observations, GET /weather/{id}?from=...&amp;to=... the history
+     * of a station within a time range, any other GET the next observation in turn.
+     * Responses carry the Lamport version of their content as ETag; a GET whose If-None-Match holds it is answered
+     * with 304 Not Modified and no body.
+     */
+    public HttpResponse handleGet(HttpRequest request) {
+        try {
+            return route(request);
+        } catch (IllegalArgumentException e) {
+            return malformedTarget(request, e);
+        }
+    }
+
+    private HttpResponse route(HttpRequest request) {
+        String path = request.path();
+        if (path.startsWith(STATION_PATH) && path.length() > STATION_PATH.length() && !path.equals(STREAM_PATH)) {
+            String stationId;
+            try {
+                stationId = URLDecoder.decode(path.substring(STATION_PATH.length()), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                logger.warning("Invalid history request, malformed station id: " + path);
+                return HttpResponse.of(400, "Bad Request");
+            }
+            return handleGetHistory(stationId, request.queryParameter("from"), request.queryParameter("to"));
+        }
+        String ifNoneMatch = request.header("If-None-Match");
+        String stationId = request.queryParameter("id");
+        if (stationId != null) {
+            return notModifiedIfMatching(ifNoneMatch, handleGetLatest(stationId));
+        }
+        String cursor = request.queryParameter("cursor");
+        String limit = request.queryParameter("limit");
+        if (cursor != null || limit != null) {
+            // Taken before reading the page, so a PUT meanwhile can only make the ETag older than the page
+            String etag = responseCache.datasetETag();
+            if (matches(ifNoneMatch, etag)) {
+                serverClock.tick();
+                return notModified(etag);
+            }
+            HttpResponse page = handleGetPage(cursor, limit);
+            return (page.status() == 200) ? page.withHeader("ETag", etag) : page;
+        }
+        return notModifiedIfMatching(ifNoneMatch, handleGet());
+    }
+
+    // The query parameters and station ids of the target are %-decoded, a malformed escape is the client's error
+    private static HttpResponse malformedTarget(HttpRequest request, IllegalArgumentException e) {
+        logger.warning("Malformed request target " + request.target() + ": " + e.getMessage());
+        return HttpResponse.of(400, "Bad Request");
+    }
+
+    // The cached responses are already encoded, a 304 saves sending the body
+    private static HttpResponse notModifiedIfMatching(String ifNoneMatch, HttpResponse response) {
+        String etag = response.header("ETag");
+        return (response.status() == 200 && etag != null && matches(ifNoneMatch, etag)) ? notModified(etag) : response;
+    }
+
+    private static HttpResponse notModified(String etag) {
+        logger.info("Response sent: 304 Not Modified");
+        return HttpResponse.of(304, "Not Modified").withHeader("ETag", etag);
+    }
+
+    // If-None-Match holds "*" or a list of ETags, weak ones compare equal to the strong ETag they were taken from
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public HttpResponse handleGet() {
+        logger.info("Handling GET request. Sending stored weather data.");
+
+        // Served from the pre-encoded responses, the stored data is not read
+        int count = responseCache.size();
+        if (count <= 0) {
+            logger.info("Response sent: 204 No Content");
+            return HttpResponse.of(204, "No Content");
+        }
+
+        long logicTime = serverClock.incrementAndGet();
+        // Each GET claims the response after the last one sent, concurrent GETs never get the same one until all were
+        // sent
+        Map.Entry<Long, HttpResponse> next;
+        long previous;
+        do {
+            previous = nextIndex.get();
+            next = responseCache.next(previous);
+        } while (next != null && !nextIndex.compareAndSet(previous, next.getKey()));
+
+        // Check if there is still an observation, the last ones may have expired meanwhile
+        if (next == null) {
+            logger.info("Response sent: 204 No Content");
+            return HttpResponse.of(204, "No Content");
+        }
+
+        logger.info("Response sent: 200 OK with weather data");
+        logger.fine("Current Logic Time: " + logicTime);
+        logger.fine("Current version: " + next.getKey());
+        return next.getValue();
+    }
+
+    /**
+     * Answers the latest observation of the station, 404 if it never sent one
+     */
+    public HttpResponse handleGetLatest(String stationId) {
+        serverClock.tick();
+        HttpResponse latest = responseCache.latest(stationId);
+        if (latest == null) {
+            logger.info("Response sent: 404 Not Found for station " + stationId);
+            return HttpResponse.of(404, "Not Found");
+        }
+        logger.info("Response sent: 200 OK with the latest data of station " + stationId);
+        return latest;
+    }
+
+    /**
+     * Answers up to limit observations in insertion order, starting at the cursor; the first page has no cursor.
+     * The body holds the observations and the cursor of the next page, which also picks up observations stored later.
+     * A cursor holds the version of the last observation sent, so observations expiring meanwhile skip nothing.
+     */
+    public HttpResponse handleGetPage(String cursor, String limitParameter) {
+        long after;
+        int limit;
+        try {
+            after = (cursor == null || cursor.isEmpty()) ? 0 : decodeCursor(cursor);
+            limit = (limitParameter == null || limitParameter.isEmpty()) ? DEFAULT_PAGE_LIMIT : Integer.parseInt(limitParameter);
+        } catch (IllegalArgumentException e) {
+            logger.warning("Invalid page request, cursor: " + cursor + ", limit: " + limitParameter);
+            return HttpResponse.of(400, "Bad Request");
+        }
+        if (after < 0 || limit <= 0) {
+            return HttpResponse.of(400, "Bad Request");
+        }
+        serverClock.tick();
+
+        ResponseCache.Page page = responseCache.page(after, Math.min(limit, MAX_PAGE_LIMIT));
+        List<String> observations = page.observations();
+        // The cached observations are already compact JSON, so the page is put together as text
+        StringBuilder body = new StringBuilder("{\"observations\":[");
+        for (int i = 0; i < observations.size(); i++) {
+            body.append(i == 0 ? "" : ",").append(observations.get(i));
+        }
+        body.append("],\"nextCursor\":\"").append(encodeCursor(page.lastVersion())).append("\"}");
+        logger.info("Response sent: 200 OK with " + observations.size() + " observations");
+        return HttpResponse.json(body.toString());
+    }
+
+
+    /**
+     * Answers the observations of the station received from from to to, both inclusive, oldest first; 404 if the
+     * station has no history. A time is epoch milliseconds, an ISO-8601 instant such as 2024-09-01T06:00:00Z, or an
+     * ISO-8601 duration such as PT6H meaning that long ago. Without from the history starts with the oldest kept
+     * observation, without to it ends now. The body holds only the matching observations, each with the time it was
+     * received: {"id":"IDS60901","from":...,"to":...,"observations":[{"time":...,"observation":{...}},...]}
+     */
+    public HttpResponse handleGetHistory(String stationId, String fromParameter, String toParameter) {
+        long now = System.currentTimeMillis();
+        long from;
+        long to;
+        try {
+            from = parseTime(fromParameter, now, 0);
+            to = parseTime(toParameter, now, now);
+        } catch (IllegalArgumentException | DateTimeException | ArithmeticException e) {
+            logger.warning("Invalid history request, from: " + fromParameter + ", to: " + toParameter);
+            return HttpResponse.of(400, "Bad Request");
+        }
+        if (from > to) {
+            return HttpResponse.of(400, "Bad Request");
+        }
+        serverClock.tick();
+
+        List<TimeSeriesRing.Entry<String>> range = history.range(stationId, from, to);
+        if (range == null) {
+            logger.info("Response sent: 404 Not Found for the history of station " + stationId);
+            return HttpResponse.of(404, "Not Found");
+        }
+        // The kept observations are already compact JSON, so the response is put together as text
+        StringBuilder body = new StringBuilder(64 + range.size() * 160)
+                .append("{\"id\":").append(JSONObject.quote(stationId))
+                .append(",\"from\":").append(from)
+                .append(",\"to\":").append(to)
+                .append(",\"observations\":[");
+        for (int i = 0; i < range.size(); i++) {
+            TimeSeriesRing.Entry<String> entry = range.get(i);
+            body.append(i == 0 ? "" : ",")
+                    .append("{\"time\":").append(HybridLogicalClock.physicalMillis(entry.timestamp()))
+                    .append(",\"observation\":").append(entry.value()).append('}');
+        }
+        body.append("]}");
+        logger.info("Response sent: 200 OK with " + range.size() + " observations of station " + stationId);
+        return HttpResponse.json(body.toString());
+    }
+
+    // Epoch milliseconds, an ISO-8601 instant, or an ISO-8601 duration back from now
+    private static long parseTime(String value, long now, long absent) {
+        if (value == null || value.isEmpty()) {
+            return absent;
+        }
+        char first = value.charAt(0);
+        if (Character.isDigit(first) && value.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(value);
+        }
+        if (first == 'P' || first == 'p') {
+            return now - Duration.parse(value).toMillis();
+        }
+        return Instant.parse(value).toEpochMilli();
+    }
+
+    // Cursors are opaque to clients, they only hand back what the previous page returned
+    private static String encodeCursor(long version) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(("v" + version).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static long decodeCursor(String cursor) {
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+        if (!decoded.startsWith("v")) {
+            throw new IllegalArgumentException("Not a cursor: " + cursor);
+        }
+        return Long.parseLong(decoded.substring(1));
+    }
+
+    public HttpResponse handleUnsupportedMethod(String request) {
+        logger.warning("Unsupported request method: " + request);
+        logger.info("Response sent: 405 Method Not Allowed");
+        return HttpResponse.of(405, "Method Not Allowed");
+    }
+}
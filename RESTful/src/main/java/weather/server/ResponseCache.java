@@ -0,0 +1,239 @@
+package weather.server;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import weather.data.WeatherDataInterface;
+import weather.data.WeatherObservation;
+import weather.http.HttpResponse;
+import weather.lamport.LamportClock;
+import weather.utils.JSONParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * GET responses of all stored observations, encoded once to their UTF-8 wire format with headers and Content-Length.
+ * It is filled from the store on startup and a PUT adds its observation, so answering a GET costs no JSON work and
+ * does not depend on how much data is stored.
+ * <p>
+ * Responses are kept in a concurrent sorted map by their version for round-robin and paginated reads, and the latest
+ * one per station in a concurrent map for lookups by station id. Like the store, the cache keeps only the most recent
+ * updates of each station and drops expired stations, see {@link RetentionConfig}.
+ * <p>
+ * Every observation is versioned by the server Lamport time it was stored at, sent as its ETag, and the dataset as a
+ * whole by the latest of these times or of a removal. The ETags start with the time the cache was created, so a restarted server whose
+ * clock starts over never answers a validator of the previous run with 304 Not Modified.
+ */
+public class ResponseCache {
+    private static final Logger logger = Logger.getLogger(ResponseCache.class.getName());
+    // Groups the observations without station id for retention
+    private static final String NO_STATION = "";
+
+    private final int updatesPerStation;
+    // In the order of their versions, which is the order they were stored in
+    private final ConcurrentNavigableMap<Long, HttpResponse> responses = new ConcurrentSkipListMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    // Versions of the kept updates of each station, in their content server's Lamport order; changed in compute()
+    private final Map<String, List<Update>> updatesByStation = new ConcurrentHashMap<>();
+    private final Map<String, LatestResponse> latestByStation = new ConcurrentHashMap<>();
+    private final AtomicLong datasetVersion = new AtomicLong();
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private record LatestResponse(long logicTime, HttpResponse response) {
+    }
+
+    private record Update(long sourceTime, long version) {
+    }
+
+    /**
+     * A page of observations in version order
+     *
+     * @param lastVersion Version of the last observation of the page, or where the page was asked to start if empty
+     */
+    public record Page(List<String> observations, long lastVersion) {
+    }
+
+    public ResponseCache() {
+        this(0);
+    }
+
+    /**
+     * @param updatesPerStation Most recent updates kept per station, 0 keeps all
+     */
+    public ResponseCache(int updatesPerStation) {
+        this.updatesPerStation = updatesPerStation;
+    }
+
+    /**
+     * Encodes every observation the store holds, reading the stored data once
+     *
+     * @param clock Server clock, advanced once per loaded observation to give each its own version
+     */
+    public static ResponseCache load(WeatherDataInterface database, LamportClock clock) {
+        return load(database, clock, 0);
+    }
+
+    /**
+     * @param updatesPerStation Most recent updates kept per station, 0 keeps all
+     */
+    public static ResponseCache load(WeatherDataInterface database, LamportClock clock, int updatesPerStation) {
+        ResponseCache cache = new ResponseCache(updatesPerStation);
+        String stored = database.readWeatherData();
+        try {
+            JSONArray observations = new JSONArray(stored);
+            long version = (observations.length() > 0) ? clock.reserve(observations.length()) : 0;
+            for (int i = 0; i < observations.length(); i++) {
+                JSONObject observation = observations.getJSONObject(i);
+                cache.add(JSONParser.extractStationId(observation), version + i, observation.toString());
+            }
+        } catch (JSONException e) {
+            // E.g. "{}" when there is no data file yet
+            logger.info("No stored observations to cache");
+        }
+        return cache;
+    }
+
+    /**
+     * Encodes a newly stored observation
+     *
+     * @param stationId Station of the observation, null when it has none
+     * @param logicTime Server Lamport time of the PUT, the version of the observation
+     * @param json      The observation as compact JSON, as it is sent to GET clients
+     */
+    public void add(String stationId, long logicTime, String json) {
+        add(stationId, logicTime, WeatherObservation.NO_TIMESTAMP, json);
+    }
+
+    /**
+     * Encodes a newly stored observation, which may be older than the station's latest
+     *
+     * @param sourceTime The Lamport time its content server stamped it with, see {@link ReorderBuffer}; an observation
+     *                   older than the station's latest one does not replace it
+     */
+    public void add(String stationId, long logicTime, long sourceTime, String json) {
+        HttpResponse response = HttpResponse.json(json).withHeader("ETag", etag(logicTime)).preEncoded();
+        responses.put(logicTime, response);
+        size.incrementAndGet();
+        datasetVersion.accumulateAndGet(logicTime, Math::max);
+        // The updates of one station are added one at a time
+        updatesByStation.compute((stationId == null) ? NO_STATION : stationId, (station, updates) -> {
+            List<Update> kept = (updates == null) ? new ArrayList<>() : updates;
+            int at = kept.size();
+            if (sourceTime != WeatherObservation.NO_TIMESTAMP) {
+                while (at > 0 && sourceTime < kept.get(at - 1).sourceTime()) {
+                    at--;
+                }
+            }
+            kept.add(at, new Update(sourceTime, logicTime));
+            if (stationId != null && at == kept.size() - 1) {
+                latestByStation.put(stationId, new LatestResponse(logicTime, response));
+            }
+            while (updatesPerStation > 0 && kept.size() > updatesPerStation) {
+                remove(kept.remove(0).version());
+            }
+            return kept;
+        });
+    }
+
+    /**
+     * Drops every response of the station
+     *
+     * @param logicTime Server Lamport time of the removal, the new version of the dataset if the station had responses
+     */
+    public void removeStation(String stationId, long logicTime) {
+        updatesByStation.computeIfPresent(stationId, (station, updates) -> {
+            updates.forEach(update -> remove(update.version()));
+            latestByStation.remove(stationId);
+            datasetVersion.accumulateAndGet(logicTime, Math::max);
+            return null;
+        });
+    }
+
+    /**
+     * @return The response following the given version in version order, the first one after the last; null if there
+     * is none. The key is the version of the response.
+     */
+    public Map.Entry<Long, HttpResponse> next(long version) {
+        Map.Entry<Long, HttpResponse> next = responses.higherEntry(version);
+        return (next != null) ? next : responses.firstEntry();
+    }
+
+    /**
+     * @return The pre-encoded response of the station's latest observation, or null if it never sent one
+     */
+    public HttpResponse latest(String stationId) {
+        LatestResponse latest = latestByStation.get(stationId);
+        return (latest == null) ? null : latest.response();
+    }
+
+    /**
+     * @return Up to limit observations as JSON, the ones stored after the given version
+     */
+    public Page page(long afterVersion, int limit) {
+        List<String> page = new ArrayList<>(Math.min(limit, 64));
+        long lastVersion = afterVersion;
+        for (Map.Entry<Long, HttpResponse> entry : responses.tailMap(afterVersion, false).entrySet()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(entry.getValue().body());
+            lastVersion = entry.getKey();
+        }
+        return new Page(page, lastVersion);
+    }
+
+    /**
+     * @return True if an observation was stored after the given version
+     */
+    public boolean hasAfter(long version) {
+        return responses.higherKey(version) != null;
+    }
+
+    /**
+     * @return The ETag of the dataset as a whole, it changes with every stored or removed observation
+     */
+    public String datasetETag() {
+        return etag(datasetVersion.get());
+    }
+
+    private String etag(long version) {
+        return "\"" + epoch + "." + version + "\"";
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return The stations with cached observations
+     */
+    public Set<String> stations() {
+        return latestByStation.keySet();
+    }
+
+    /**
+     * @param logicTime Server Lamport time of the removal, the new version of the dataset
+     */
+    public void clear(long logicTime) {
+        responses.clear();
+        size.set(0);
+        updatesByStation.clear();
+        latestByStation.clear();
+        datasetVersion.accumulateAndGet(logicTime, Math::max);
+    }
+
+    private void remove(long version) {
+        if (responses.remove(version) != null) {
+            size.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package weather.server;
+
+import weather.utils.ConfigProperties;
+
+/**
+ * How long the server keeps the data of its content servers.
+ *
+ * @param updatesPerStation Most recent updates kept per station, older ones are dropped; 0 keeps all
+ * @param expiryMillis      Data of a content server which sent no PUT for this long is removed; 0 keeps it forever,
+ *                          see {@link SourceExpiry}
+ * @param tickMillis        Resolution of the expiry, data is removed at most this much after it expired
+ */
+public record RetentionConfig(int updatesPerStation, long expiryMillis, long tickMillis) {
+
+    public static RetentionConfig defaults() {
+        return new RetentionConfig(20, 30_000, 250);
+    }
+
+    /**
+     * Reads the retention settings from the given settings, missing entries keep their default
+     */
+    public static RetentionConfig from(ConfigProperties props) {
+        RetentionConfig defaults = defaults();
+        return new RetentionConfig(
+                Math.max(0, props.getInt("retention.updatesPerStation", defaults.updatesPerStation())),
+                Math.max(0, props.getLong("retention.expiryMillis", defaults.expiryMillis())),
+                Math.max(1, props.getLong("retention.tickMillis", defaults.tickMillis())));
+    }
+}
@@ -1,11 +1,14 @@
 package weather.server;
 
+import weather.data.WeatherDataInterface;
 import weather.lamport.LamportClockImpl;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -15,20 +18,48 @@ public class ServerActivator {
     private static final AtomicBoolean running = new AtomicBoolean(true);
     private final ServerConfig config;
     private final LamportClockImpl clock;
+    private final WeatherDataInterface store;
+    private final RequestProcessor processor;
+    private final AdmissionController admission;
 
     public ServerActivator(ServerConfig config) {
         this.config = config;
         this.clock = new LamportClockImpl();
+        this.store = config.storage().createStore(clock, config.ingest().partitions(), config.retention().updatesPerStation());
+        this.processor = new RequestProcessor(clock, store, config.stream(), config.ingest(), config.retention(),
+                config.history());
+        this.admission = new AdmissionController(processor, config.workerPools());
     }
 
     public void run() {
         setUpShutdownHook();
 
-        try (ServerSocket serverSocket = initializeServer()) {
-            handleClientConnections(serverSocket); // Process RESTFul API
+        if (config.mode() == ServerMode.NIO) {
+            runNonBlocking();
+            return;
+        }
+
+        try (ServerSocket serverSocket = initializeServer(); ExecutorService handlers = createHandlerExecutor()) {
+            handleClientConnections(serverSocket, handlers); // Process RESTFul API
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Server encountered an issue and needs to shut down.", e);
         } finally {
+            admission.shutdown();
+            processor.close();
+            store.close();
+            logger.info("Server has stopped.");
+        }
+    }
+
+    private void runNonBlocking() {
+        try {
+            new NioServer(config, admission, running).run();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Server encountered an issue and needs to shut down.", e);
+        } finally {
+            admission.shutdown();
+            processor.close();
+            store.close();
             logger.info("Server has stopped.");
         }
     }
@@ -37,6 +68,9 @@ public class ServerActivator {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             running.set(false);
             logger.info("Shutdown signal received. Stopping server...");
+            // The accept loop may never return, so store the accepted PUTs and persist what the store holds here
+            processor.close();
+            store.close();
         }));
     }
 
@@ -47,14 +81,27 @@ public class ServerActivator {
         return serverSocket;
     }
 
-    private void handleClientConnections(ServerSocket serverSocket) {
+    /**
+     * Threads running the RequestHandler of each connection, chosen by {@link ThreadMode}
+     */
+    private ExecutorService createHandlerExecutor() {
+        logger.info("Request handlers run on " + config.threadMode() + " threads");
+        return switch (config.threadMode()) {
+            case VIRTUAL -> Executors.newVirtualThreadPerTaskExecutor();
+            case POOLED -> Executors.newFixedThreadPool(Math.max(1, config.workerThreads()));
+            case PLATFORM -> Executors.newThreadPerTaskExecutor(Thread.ofPlatform().name("request-handler-", 0).factory());
+        };
+    }
+
+    private void handleClientConnections(ServerSocket serverSocket, ExecutorService handlers) {
         while (running.get()) {
             try {
                 // Listening income connection request
                 Socket clientSocket = serverSocket.accept(); // a blocking call that waits until a client tries to connect to the server
                 logger.info("Accepted client connection from " + clientSocket.getInetAddress().getHostAddress());
                 /* Core Step: Handling the connected client requests */
-                new Thread(new RequestHandler(clientSocket, clock)).start();
+                handlers.execute(new RequestHandler(clientSocket, admission, config.idleTimeoutMillis(),
+                        config.stream().heartbeatSeconds()));
             } catch (IOException e) {
                 if (running.get()) {
                     logger.log(Level.WARNING, "Failed to accept connection.", e);
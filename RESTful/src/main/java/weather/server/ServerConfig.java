@@ -1,4 +1,55 @@
 package weather.server;
 
-public record ServerConfig(String host, int port, int backlog) {
+import weather.data.StorageConfig;
+import weather.utils.ConfigProperties;
+
+/**
+ * @param mode          Connection handling mode, see {@link ServerMode}
+ * @param threadMode    Threads running each connection in {@link ServerMode#BLOCKING}, see {@link ThreadMode}
+ * @param ioThreads     Number of selector threads, only used by {@link ServerMode#NIO}
+ * @param workerThreads Number of connection threads in {@link ThreadMode#POOLED}
+ * @param idleTimeoutMillis How long a kept-alive connection may wait for its next request before it is closed
+ * @param workerPools   Bounded pools running the PUT/GET logic in both modes, see {@link AdmissionController}
+ * @param storage       Where the weather data is stored, see {@link StorageConfig}
+ * @param stream        Limits of GET /weather/stream and long-poll GETs, see {@link StreamConfig}
+ * @param ingest        How PUTs are applied, see {@link IngestConfig}
+ * @param retention     How long the data of content servers is kept, see {@link RetentionConfig}
+ * @param history       Size of the per-station history, see {@link HistoryConfig}
+ */
+public record ServerConfig(String host, int port, int backlog, ServerMode mode, ThreadMode threadMode,
+                           int ioThreads, int workerThreads, int idleTimeoutMillis, WorkerPoolConfig workerPools,
+                           StorageConfig storage, StreamConfig stream, IngestConfig ingest,
+                           RetentionConfig retention, HistoryConfig history) {
+    public static final int DEFAULT_IDLE_TIMEOUT_MILLIS = 30_000;
+    // Optional settings file on the classpath for everything not given on the command line
+    private static final String PROPERTIES_FILE = "server.properties";
+
+    public ServerConfig(String host, int port, int backlog) {
+        this(host, port, backlog, ServerMode.BLOCKING);
+    }
+
+    public ServerConfig(String host, int port, int backlog, ServerMode mode) {
+        this(host, port, backlog, mode, ThreadMode.PLATFORM);
+    }
+
+    public ServerConfig(String host, int port, int backlog, ServerMode mode, ThreadMode threadMode) {
+        this(host, port, backlog, mode, threadMode, ConfigProperties.load(PROPERTIES_FILE));
+    }
+
+    // The thread counts and the idle timeout are read from the settings, missing entries keep their default
+    private ServerConfig(String host, int port, int backlog, ServerMode mode, ThreadMode threadMode,
+                         ConfigProperties props) {
+        this(host, port, backlog, mode, threadMode,
+                props.getInt("server.ioThreads", 1),
+                props.getInt("server.workerThreads", Runtime.getRuntime().availableProcessors()),
+                props.getInt("server.idleTimeoutMillis", DEFAULT_IDLE_TIMEOUT_MILLIS),
+                props);
+    }
+
+    private ServerConfig(String host, int port, int backlog, ServerMode mode, ThreadMode threadMode,
+                         int ioThreads, int workerThreads, int idleTimeoutMillis, ConfigProperties props) {
+        this(host, port, backlog, mode, threadMode, ioThreads, workerThreads, idleTimeoutMillis,
+                WorkerPoolConfig.from(props), StorageConfig.from(props), StreamConfig.from(props),
+                IngestConfig.from(props), RetentionConfig.from(props), HistoryConfig.from(props));
+    }
 }
@@ -0,0 +1,11 @@
+package weather.server;
+
+/**
+ * How the Aggregation Server accepts and dispatches client connections.
+ */
+public enum ServerMode {
+    // One blocking RequestHandler per accepted socket
+    BLOCKING,
+    // Selector based event loops for I/O, a separate worker pool runs the PUT/GET logic
+    NIO
+}
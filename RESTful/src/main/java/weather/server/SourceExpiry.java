@@ -0,0 +1,185 @@
+package weather.server;
+
+import weather.utils.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Expires the stations of content servers which stopped sending: a station belongs to the source of its last PUT, and
+ * once that source sent nothing for the expiry window, its stations are handed to the expire callback.
+ * <p>
+ * A PUT only records the time its source was last seen, so it costs O(1) and takes no lock. Every source sits once in
+ * a {@link TimerWheel} at the deadline it had when it was scheduled; when that deadline passes, a source seen since is
+ * scheduled again at its new deadline, and only a source really silent for the whole window expires. Expiry therefore
+ * never scans the stored data and does work only for sources which were due.
+ */
+public final class SourceExpiry implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(SourceExpiry.class.getName());
+
+    private final long expiryMillis;
+    private final LongSupplier clock;
+    private final Consumer<String> expireStation;
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+    // Station id to the source of its last PUT
+    private final Map<String, Source> owners = new ConcurrentHashMap<>();
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    // Guarded by wheelLock
+    private final TimerWheel<Source> wheel;
+    private final ScheduledExecutorService ticker;
+
+    private static final class Source {
+        private final String id;
+        private final Set<String> stations = ConcurrentHashMap.newKeySet();
+        private volatile long lastSeen;
+        // Set under wheelLock
+        private volatile boolean scheduled;
+        private volatile boolean expired;
+
+        private Source(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * @param expiryMillis  How long a source may stay silent, 0 never expires anything
+     * @param tickMillis    How often due sources are checked
+     * @param expireStation Called with every station whose source expired, on the expiry thread
+     */
+    public SourceExpiry(long expiryMillis, long tickMillis, Consumer<String> expireStation) {
+        this(expiryMillis, tickMillis, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()), expireStation);
+        if (expiryMillis > 0) {
+            ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Without a background thread, {@link #tick()} expires the due sources
+     */
+    SourceExpiry(long expiryMillis, long tickMillis, LongSupplier clock, Consumer<String> expireStation) {
+        this.expiryMillis = expiryMillis;
+        this.clock = clock;
+        this.expireStation = expireStation;
+        this.wheel = new TimerWheel<>(tickMillis, clock.getAsLong());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "source-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Records a PUT of the station by the source, called before the PUT is stored
+     *
+     * @param stationId Null for an observation without station id, which only keeps its source alive
+     */
+    public void seen(String sourceId, String stationId) {
+        if (expiryMillis <= 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        while (true) {
+            Source source = sources.computeIfAbsent(sourceId, Source::new);
+            source.lastSeen = now;
+            // Read after writing lastSeen, so either this PUT sees the expiry or the expiry sees this PUT
+            if (source.expired) {
+                sources.remove(sourceId, source);
+                continue;
+            }
+            if (stationId != null && owners.get(stationId) != source) {
+                source.stations.add(stationId);
+                Source previous = owners.put(stationId, source);
+                if (previous != null && previous != source) {
+                    previous.stations.remove(stationId);
+                }
+            }
+            if (!source.scheduled) {
+                schedule(source, now);
+            }
+            return;
+        }
+    }
+
+    /**
+     * @return True while the station belongs to a source which has not expired
+     */
+    public boolean owned(String stationId) {
+        return owners.containsKey(stationId);
+    }
+
+    public int sources() {
+        return sources.size();
+    }
+
+    /**
+     * Expires the sources silent for the whole window and hands their stations to the callback
+     */
+    void tick() {
+        long now = clock.getAsLong();
+        List<String> expiredStations = new ArrayList<>();
+        wheelLock.lock();
+        try {
+            wheel.advance(now, source -> {
+                source.scheduled = false;
+                if (expired(source, now)) {
+                    sources.remove(source.id, source);
+                    int before = expiredStations.size();
+                    for (String station : source.stations) {
+                        if (owners.remove(station, source)) {
+                            expiredStations.add(station);
+                        }
+                    }
+                    logger.info("Content server " + source.id + " sent nothing for " + expiryMillis + " ms, expiring "
+                            + (expiredStations.size() - before) + " stations");
+                } else {
+                    wheel.schedule(source, source.lastSeen + expiryMillis);
+                    source.scheduled = true;
+                }
+            });
+        } finally {
+            wheelLock.unlock();
+        }
+        // Outside the lock, the callback may wait for the writers
+        expiredStations.forEach(expireStation);
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    private void schedule(Source source, long now) {
+        wheelLock.lock();
+        try {
+            if (!source.scheduled && !source.expired) {
+                wheel.schedule(source, now + expiryMillis);
+                source.scheduled = true;
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    // Marks the source expired unless a PUT was seen within the window, see seen()
+    private boolean expired(Source source, long now) {
+        if (now - source.lastSeen < expiryMillis) {
+            return false;
+        }
+        source.expired = true;
+        if (now - source.lastSeen < expiryMillis) {
+            source.expired = false;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,29 @@
+package weather.server;
+
+import weather.utils.ConfigProperties;
+
+/**
+ * Limits of the push endpoints served from the {@link ObservationBroker}.
+ *
+ * @param bufferEvents     Observations a GET /weather/stream subscriber may fall behind by; a subscriber whose buffer is
+ *                         full is disconnected, so a slow consumer never holds up a PUT
+ * @param heartbeatSeconds How often an idle stream sends a comment, so connections of gone clients are noticed
+ * @param maxWaitSeconds   Longest wait a long-poll GET may ask for
+ */
+public record StreamConfig(int bufferEvents, int heartbeatSeconds, int maxWaitSeconds) {
+
+    public static StreamConfig defaults() {
+        return new StreamConfig(1024, 15, 60);
+    }
+
+    /**
+     * Reads the stream limits from the given settings, missing entries keep their default
+     */
+    public static StreamConfig from(ConfigProperties props) {
+        StreamConfig defaults = defaults();
+        return new StreamConfig(
+                Math.max(1, props.getInt("stream.bufferEvents", defaults.bufferEvents())),
+                Math.max(1, props.getInt("stream.heartbeatSeconds", defaults.heartbeatSeconds())),
+                Math.max(0, props.getInt("stream.maxWaitSeconds", defaults.maxWaitSeconds())));
+    }
+}
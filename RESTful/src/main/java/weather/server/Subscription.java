@@ -0,0 +1,172 @@
+package weather.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A GET /weather/stream consumer of the {@link ObservationBroker}, holding the observations published for it but not
+ * sent yet in a bounded buffer. Publishing never waits: an observation finding the buffer full closes the subscription
+ * instead, and the consumer is told it fell behind once it sent what the buffer still holds.
+ */
+public class Subscription implements AutoCloseable {
+    // Response head of a stream; the events follow until the connection is closed
+    static final byte[] STREAM_HEAD = ("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\nCache-Control: no-cache\r\n"
+            + "Connection: close\r\n\r\n: subscribed\n\n").getBytes(StandardCharsets.US_ASCII);
+    // A comment line, ignored by clients
+    static final byte[] HEARTBEAT = ": heartbeat\n\n".getBytes(StandardCharsets.US_ASCII);
+    // Last event of a subscriber which fell behind, it reconnects and reads what it missed with GET /weather?cursor=...
+    static final byte[] OVERFLOW = "event: overflow\ndata: {\"error\":\"subscriber fell behind\"}\n\n"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * An observation as a Server-Sent Event, its id is the Lamport version the observation was stored at
+     */
+    public record Event(long version, String json) {
+        public byte[] encode() {
+            return ("id: " + version + "\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private final ObservationBroker broker;
+    private final String stationId;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    // Guarded by lock
+    private final ArrayDeque<Event> events = new ArrayDeque<>();
+    private boolean closed;
+    private boolean overflowed;
+    private Runnable listener;
+
+    Subscription(ObservationBroker broker, String stationId, int capacity) {
+        this.broker = broker;
+        this.stationId = stationId;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return The station the subscriber follows, null for all stations
+     */
+    public String stationId() {
+        return stationId;
+    }
+
+    /**
+     * Called, on the publishing thread, when an observation arrives in an empty buffer or the subscription is closed;
+     * lets event loops send without polling
+     */
+    public void setListener(Runnable listener) {
+        lock.lock();
+        try {
+            this.listener = listener;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a published observation without waiting
+     *
+     * @return False if the buffer was full and the subscription is closed now
+     */
+    boolean offer(Event event) {
+        Runnable notify;
+        boolean accepted;
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            accepted = events.size() < capacity;
+            if (accepted) {
+                events.add(event);
+            } else {
+                overflowed = true;
+                closed = true;
+            }
+            published.signalAll();
+            notify = (!accepted || events.size() == 1) ? listener : null;
+        } finally {
+            lock.unlock();
+        }
+        if (notify != null) {
+            notify.run();
+        }
+        return accepted;
+    }
+
+    /**
+     * Waits for the next observation
+     *
+     * @return The observation, or null if none arrived within the timeout or the subscription is closed and sent all
+     */
+    public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (events.isEmpty() && !closed && remaining > 0) {
+                remaining = published.awaitNanos(remaining);
+            }
+            return events.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Up to max buffered observations, without waiting
+     */
+    public List<Event> drain(int max) {
+        lock.lock();
+        try {
+            List<Event> drained = new ArrayList<>(Math.min(max, events.size()));
+            while (drained.size() < max && !events.isEmpty()) {
+                drained.add(events.poll());
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return True once nothing more will be published to the subscriber
+     */
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return True if the subscription was closed because its buffer was full
+     */
+    public boolean overflowed() {
+        lock.lock();
+        try {
+            return overflowed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        broker.unsubscribe(this);
+    }
+}
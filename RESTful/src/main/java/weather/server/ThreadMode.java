@@ -0,0 +1,13 @@
+package weather.server;
+
+/**
+ * Which threads run the {@link RequestHandler} of each accepted connection in {@link ServerMode#BLOCKING}.
+ */
+public enum ThreadMode {
+    // A new platform thread per connection
+    PLATFORM,
+    // A new virtual thread per connection
+    VIRTUAL,
+    // A fixed size pool of platform threads, sized by ServerConfig.workerThreads
+    POOLED
+}
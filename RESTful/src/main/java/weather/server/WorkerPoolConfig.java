@@ -0,0 +1,31 @@
+package weather.server;
+
+import weather.utils.ConfigProperties;
+
+/**
+ * Limits of the worker pools behind {@link AdmissionController}.
+ * PUT requests run on the ingest pool, everything else on the query pool, each with a bounded queue.
+ *
+ * @param retryAfterSeconds Value of the Retry-After header sent with a 503 once a queue is full
+ */
+public record WorkerPoolConfig(int ingestThreads, int ingestQueueCapacity, int queryThreads, int queryQueueCapacity,
+                               int retryAfterSeconds) {
+
+    public static WorkerPoolConfig defaults() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return new WorkerPoolConfig(processors, 1024, processors, 1024, 1);
+    }
+
+    /**
+     * Reads the pool limits from the given settings, missing entries keep their default
+     */
+    public static WorkerPoolConfig from(ConfigProperties props) {
+        WorkerPoolConfig defaults = defaults();
+        return new WorkerPoolConfig(
+                props.getInt("pool.ingest.threads", defaults.ingestThreads()),
+                props.getInt("pool.ingest.queue", defaults.ingestQueueCapacity()),
+                props.getInt("pool.query.threads", defaults.queryThreads()),
+                props.getInt("pool.query.queue", defaults.queryQueueCapacity()),
+                props.getInt("pool.retryAfterSeconds", defaults.retryAfterSeconds()));
+    }
+}
@@ -0,0 +1,52 @@
+package weather.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: the n-th retry in a row waits a random time between 0 and
+ * min(max, initial * 2^n), so clients retrying after the same outage spread out instead of returning all at once.
+ * <p>
+ * Example usage:
+ * <pre>
+ * Backoff backoff = new Backoff(100, 30_000);
+ * while (!trySend()) {
+ *     Thread.sleep(backoff.nextDelayMillis());
+ * }
+ * backoff.reset();
+ * </pre>
+ */
+public final class Backoff {
+    private final long initialMillis;
+    private final long maxMillis;
+    private int attempts;
+
+    public Backoff(long initialMillis, long maxMillis) {
+        this.initialMillis = Math.max(1, initialMillis);
+        this.maxMillis = Math.max(this.initialMillis, maxMillis);
+    }
+
+    /**
+     * @return How long to wait before the next retry; every call doubles the upper bound until it reaches the maximum
+     */
+    public long nextDelayMillis() {
+        int shift = Math.min(attempts, 30);
+        // Compared before shifting, so a long run of failures cannot overflow the bound
+        long ceiling = (initialMillis > (maxMillis >> shift)) ? maxMillis : initialMillis << shift;
+        attempts++;
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * @return How many delays were handed out since the last success
+     */
+    public int attempts() {
+        return attempts;
+    }
+
+    /**
+     * Starts over with the initial delay, e.g. once a retry succeeded
+     */
+    public void reset() {
+        attempts = 0;
+    }
+}
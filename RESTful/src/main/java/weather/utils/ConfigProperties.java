@@ -0,0 +1,74 @@
+package weather.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Helper Class to read optional settings from a properties file on the classpath.
+ * Missing files, missing keys and invalid values all fall back to the given default.
+ */
+public class ConfigProperties {
+    private static final Logger logger = Logger.getLogger(ConfigProperties.class.getName());
+    private final Properties props;
+
+    private ConfigProperties(Properties props) {
+        this.props = props;
+    }
+
+    public static ConfigProperties load(String fileName) {
+        Properties props = new Properties();
+        try (InputStream input = ConfigProperties.class.getClassLoader().getResourceAsStream(fileName)) {
+            if (input == null) {
+                logger.info("No " + fileName + " found, using default settings.");
+            } else {
+                props.load(input);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error loading " + fileName + ", using default settings.", e);
+        }
+        return new ConfigProperties(props);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = props.getProperty(key);
+        return (value == null || value.isBlank()) ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warning("Invalid value for " + key + ": " + value + ". Using default: " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = props.getProperty(key);
+        return (value == null || value.isBlank()) ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    public <E extends Enum<E>> E getEnum(String key, Class<E> type, E defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warning("Invalid value for " + key + ": " + value + ". Using default: " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
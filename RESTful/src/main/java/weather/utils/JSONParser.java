@@ -6,16 +6,27 @@ import org.json.JSONObject;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Helper Class to handle JSON-related tasks, including formatting data, ensuring valid JSON,
  * appending to JSON arrays in files, and handling multiple write operations.
+ * <p>
+ * The content server compacts observations with the streaming {@link JsonTokenizer} and {@link JsonWriter} through
+ * {@link #toCompactJson(String)}, which never builds org.json trees; the server decodes PUT bodies the same way into a
+ * {@link weather.data.WeatherObservation}.
  */
 public class JSONParser {
+    // Guard the read-modify-write of each data file, so appends to different files never wait for each other;
+    // a ReentrantLock does not pin virtual threads during file I/O
+    private static final Map<Path, ReentrantLock> FILE_LOCKS = new ConcurrentHashMap<>();
 
     /**
      * Formats the given data as JSON and adds additional key-value pairs.
@@ -47,6 +58,59 @@ public class JSONParser {
         return jsonObject.toString(4);
     }
 
+    /**
+     * The content server wraps the station fields in "data", plain observations carry the id at the top level
+     *
+     * @return The station id of the observation, or null if it has none
+     */
+    public static String extractStationId(JSONObject jsonObject) {
+        JSONObject data = jsonObject.optJSONObject("data");
+        String stationId = (data != null) ? data.optString("id", null) : null;
+        return (stationId != null) ? stationId : jsonObject.optString("id", null);
+    }
+
+    /**
+     * Validates a JSON value and writes it again without whitespace, token by token
+     *
+     * @throws JSONException When the input is not valid JSON
+     */
+    public static byte[] compact(byte[] json, int offset, int length) {
+        JsonTokenizer tokenizer = new JsonTokenizer(json, offset, length);
+        JsonWriter writer = new JsonWriter(length);
+        for (JsonTokenizer.Token token = tokenizer.next(); token != JsonTokenizer.Token.END; token = tokenizer.next()) {
+            int start = tokenizer.tokenStart();
+            int tokenLength = tokenizer.tokenEnd() - start;
+            switch (token) {
+                case BEGIN_OBJECT -> writer.beginObject();
+                case END_OBJECT -> writer.endObject();
+                case BEGIN_ARRAY -> writer.beginArray();
+                case END_ARRAY -> writer.endArray();
+                case NAME -> writer.rawName(json, start, tokenLength);
+                default -> writer.rawValue(json, start, tokenLength);
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Compact UTF-8 JSON of an observation; content which is no JSON object is wrapped like {@link #ensureJsonFormat(String)} does
+     */
+    public static byte[] toCompactJson(String content) {
+        byte[] json = content.getBytes(StandardCharsets.UTF_8);
+        int start = 0;
+        while (start < json.length && Character.isWhitespace(json[start])) {
+            start++;
+        }
+        if (start < json.length && json[start] == '{') {
+            try {
+                return compact(json, 0, json.length);
+            } catch (JSONException e) {
+                // Not valid JSON after all, fall back to wrapping the text below
+            }
+        }
+        return ensureJsonFormat(content).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * Ensures the content is valid JSON
      */
@@ -64,12 +128,62 @@ public class JSONParser {
      * Appends a JSON object to the existing JSON array in the file, then writes it back
      */
     public static void appendJsonObject(String data, String filePath) throws IOException {
-        // Read existing array or create a new one
-        JSONArray jsonArray = readJsonArrayFrom(filePath);
         // Convert the string data to a JSONObject
         JSONObject jsonObject = ensureJsonFormat(data);
-        jsonArray.put(jsonObject);  // Append new JSON object to array
-        writeJsonArrayTo(jsonArray, filePath);  // Write updated array back to file
+        ReentrantLock lock = fileLock(filePath);
+        lock.lock();
+        try {
+            // Read existing array or create a new one
+            JSONArray jsonArray = readJsonArrayFrom(filePath);
+            jsonArray.put(jsonObject);  // Append new JSON object to array
+            writeJsonArrayTo(jsonArray, filePath);  // Write updated array back to file
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the JSON array in the file with an empty one, ordered with the appends to the same file
+     */
+    public static void clearJsonArray(String filePath) throws IOException {
+        ReentrantLock lock = fileLock(filePath);
+        lock.lock();
+        try {
+            writeJsonArrayTo(new JSONArray(), filePath);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the JSON objects of a station from the JSON array in the file, ordered with the appends to the same file
+     *
+     * @return The number of objects removed
+     */
+    public static int removeJsonObjects(String stationId, String filePath) throws IOException {
+        ReentrantLock lock = fileLock(filePath);
+        lock.lock();
+        try {
+            JSONArray jsonArray = readJsonArrayFrom(filePath);
+            JSONArray kept = new JSONArray();
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject jsonObject = jsonArray.optJSONObject(i);
+                if (jsonObject == null || !stationId.equals(extractStationId(jsonObject))) {
+                    kept.put(jsonArray.get(i));
+                }
+            }
+            int removed = jsonArray.length() - kept.length();
+            if (removed > 0) {
+                writeJsonArrayTo(kept, filePath);
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ReentrantLock fileLock(String filePath) {
+        return FILE_LOCKS.computeIfAbsent(Paths.get(filePath).toAbsolutePath().normalize(), path -> new ReentrantLock());
     }
 
     // Reads the JSON array from the source
@@ -84,13 +198,16 @@ public class JSONParser {
         return new JSONArray();  // Return an empty array if file doesn't exist or is blank
     }
 
-    // Writes the JSON array to the destination
+    // Writes the JSON array to the destination; aside first and then moved over it, so readers, which take no lock,
+    // see either the previous or the new array but never a half written file
     private static void writeJsonArrayTo(JSONArray jsonArray, String filePath) throws IOException {
-        Path path = Paths.get(filePath);
+        Path path = Paths.get(filePath).toAbsolutePath();
         Files.createDirectories(path.getParent());  // Ensure directory exists
-        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+        Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile)) {
             writer.write(jsonArray.toString(4));  // Write the formatted JSON array to the file
         }
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     // Converts plain text data into a valid JSON object; wrapping the text as key-value pairs
@@ -0,0 +1,431 @@
+package weather.utils;
+
+import org.json.JSONException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull tokenizer reading UTF-8 JSON straight from a byte array, without building a tree.
+ * Each {@link #next()} validates the grammar up to the returned token; its bytes are then available as a span of the
+ * input, so strings and numbers are only turned into Java objects when asked for.
+ * <p>
+ * Example usage:
+ * <pre>
+ * JsonTokenizer tokenizer = new JsonTokenizer(bytes);
+ * for (Token token = tokenizer.next(); token != Token.END; token = tokenizer.next()) {
+ *     if (token == Token.NAME &amp;&amp; tokenizer.nameEquals("id")) { ... }
+ * }
+ * </pre>
+ */
+public final class JsonTokenizer {
+    private static final int MAX_DEPTH = 256;
+
+    public enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END }
+
+    // What the grammar allows at the current position
+    private enum Expect { VALUE, NAME_OR_END, VALUE_OR_END, COMMA_OR_END, NAME, END }
+
+    private final byte[] input;
+    private final int limit;
+    private int position;
+    // true marks an object, false an array
+    private final boolean[] containers = new boolean[MAX_DEPTH];
+    private int depth;
+    private Expect expect = Expect.VALUE;
+    private int tokenStart;
+    private int tokenEnd;
+    private boolean escaped;
+
+    public JsonTokenizer(byte[] input) {
+        this(input, 0, input.length);
+    }
+
+    public JsonTokenizer(byte[] input, int offset, int length) {
+        this.input = input;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Reads the remaining bytes of the buffer; a heap buffer is read in place, a direct one is copied once
+     */
+    public JsonTokenizer(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.input = buffer.array();
+            this.position = buffer.arrayOffset() + buffer.position();
+            this.limit = buffer.arrayOffset() + buffer.limit();
+        } else {
+            this.input = new byte[buffer.remaining()];
+            buffer.duplicate().get(input);
+            this.position = 0;
+            this.limit = input.length;
+        }
+    }
+
+    /**
+     * @return The next token, END once the top level value and trailing whitespace are consumed
+     * @throws JSONException When the input is not valid JSON
+     */
+    public Token next() {
+        while (true) {
+            skipWhitespace();
+            if (position >= limit) {
+                if (expect != Expect.END) {
+                    throw error("Unexpected end of input");
+                }
+                tokenStart = tokenEnd = position;
+                return Token.END;
+            }
+            byte c = input[position];
+            switch (expect) {
+                case END -> throw error("Unexpected content after the top level value");
+                case COMMA_OR_END -> {
+                    if (c == ',') {
+                        position++;
+                        expect = containers[depth - 1] ? Expect.NAME : Expect.VALUE;
+                        continue;
+                    }
+                    return endContainer(c);
+                }
+                case NAME_OR_END -> {
+                    return (c == '}') ? endContainer(c) : readName(c);
+                }
+                case NAME -> {
+                    return readName(c);
+                }
+                case VALUE_OR_END -> {
+                    return (c == ']') ? endContainer(c) : readValue(c);
+                }
+                default -> {
+                    return readValue(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Consumes the rest of the object or array whose BEGIN token was just returned
+     *
+     * @return Input position right after its closing bracket
+     */
+    public int skipContainer() {
+        int target = depth - 1;
+        while (depth > target) {
+            if (next() == Token.END) {
+                throw error("Unexpected end of input");
+            }
+        }
+        return tokenEnd;
+    }
+
+    /**
+     * Consumes the next value, including everything nested in it
+     *
+     * @return Input position where the value starts, {@link #tokenEnd()} is where it ends
+     */
+    public int skipValue() {
+        Token token = next();
+        int start = tokenStart;
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+            skipContainer();
+        } else if (token == Token.END || token == Token.NAME || token == Token.END_OBJECT || token == Token.END_ARRAY) {
+            throw error("Expected a value");
+        }
+        return start;
+    }
+
+    public int tokenStart() {
+        return tokenStart;
+    }
+
+    public int tokenEnd() {
+        return tokenEnd;
+    }
+
+    public byte[] input() {
+        return input;
+    }
+
+    /**
+     * Compares the current NAME or STRING with an ASCII text without decoding it
+     */
+    public boolean nameEquals(String name) {
+        if (escaped) {
+            return stringValue().equals(name);
+        }
+        int length = tokenEnd - tokenStart - 2;
+        if (length != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (input[tokenStart + 1 + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The decoded text of the current NAME or STRING, or the literal text of any other token
+     */
+    public String stringValue() {
+        if (!isString()) {
+            return new String(input, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8);
+        }
+        if (!escaped) {
+            return new String(input, tokenStart + 1, tokenEnd - tokenStart - 2, StandardCharsets.UTF_8);
+        }
+        return unescape();
+    }
+
+    /**
+     * @return The current NUMBER as an int
+     * @throws JSONException When it is not an integer in range
+     */
+    public int intValue() {
+        long value = 0;
+        int i = tokenStart;
+        boolean negative = input[i] == '-';
+        if (negative) {
+            i++;
+        }
+        for (; i < tokenEnd; i++) {
+            byte c = input[i];
+            if (c < '0' || c > '9') {
+                throw error("Not an integer");
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw error("Integer out of range");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw error("Integer out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * @return The current NUMBER as a long
+     * @throws JSONException When it is not an integer in range
+     */
+    public long longValue() {
+        int i = tokenStart;
+        boolean negative = input[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == tokenEnd) {
+            throw error("Not an integer");
+        }
+        long value = 0;
+        for (; i < tokenEnd; i++) {
+            byte c = input[i];
+            if (c < '0' || c > '9') {
+                throw error("Not an integer");
+            }
+            // Accumulated negatively, Long.MIN_VALUE has no positive counterpart
+            if (value < (Long.MIN_VALUE + (c - '0')) / 10) {
+                throw error("Integer out of range");
+            }
+            value = value * 10 - (c - '0');
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw error("Integer out of range");
+        }
+        return negative ? value : -value;
+    }
+
+    private boolean isString() {
+        return tokenEnd > tokenStart && input[tokenStart] == '"';
+    }
+
+    private Token readName(byte c) {
+        if (c != '"') {
+            throw error("Expected a member name");
+        }
+        readString();
+        skipWhitespace();
+        if (position >= limit || input[position] != ':') {
+            throw error("Expected ':' after a member name");
+        }
+        position++;
+        expect = Expect.VALUE;
+        return Token.NAME;
+    }
+
+    private Token readValue(byte c) {
+        tokenStart = position;
+        Token token;
+        switch (c) {
+            case '{' -> {
+                beginContainer(true);
+                return Token.BEGIN_OBJECT;
+            }
+            case '[' -> {
+                beginContainer(false);
+                return Token.BEGIN_ARRAY;
+            }
+            case '"' -> {
+                readString();
+                token = Token.STRING;
+            }
+            case 't' -> token = readLiteral("true", Token.TRUE);
+            case 'f' -> token = readLiteral("false", Token.FALSE);
+            case 'n' -> token = readLiteral("null", Token.NULL);
+            default -> token = readNumber(c);
+        }
+        afterValue();
+        return token;
+    }
+
+    private void beginContainer(boolean object) {
+        if (depth == MAX_DEPTH) {
+            throw error("Nesting deeper than " + MAX_DEPTH);
+        }
+        containers[depth++] = object;
+        tokenStart = position;
+        tokenEnd = ++position;
+        expect = object ? Expect.NAME_OR_END : Expect.VALUE_OR_END;
+    }
+
+    private Token endContainer(byte c) {
+        boolean object = containers[depth - 1];
+        if (c != (object ? '}' : ']')) {
+            throw error("Expected ',' or '" + (object ? '}' : ']') + "'");
+        }
+        depth--;
+        tokenStart = position;
+        tokenEnd = ++position;
+        afterValue();
+        return object ? Token.END_OBJECT : Token.END_ARRAY;
+    }
+
+    private void afterValue() {
+        expect = (depth == 0) ? Expect.END : Expect.COMMA_OR_END;
+    }
+
+    private void readString() {
+        tokenStart = position++;
+        escaped = false;
+        while (position < limit) {
+            byte c = input[position++];
+            if (c == '"') {
+                tokenEnd = position;
+                return;
+            }
+            if (c == '\\') {
+                escaped = true;
+                if (position >= limit) {
+                    break;
+                }
+                byte e = input[position++];
+                if (e == 'u') {
+                    for (int i = 0; i < 4; i++) {
+                        if (position >= limit || Character.digit(input[position++], 16) < 0) {
+                            throw error("Invalid unicode escape");
+                        }
+                    }
+                } else if ("\"\\/bfnrt".indexOf(e) < 0) {
+                    throw error("Invalid escape");
+                }
+            } else if (c >= 0 && c < 0x20) {
+                throw error("Control character in string");
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Token readLiteral(String literal, Token token) {
+        if (limit - position < literal.length()) {
+            throw error("Unexpected end of input");
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (input[position + i] != literal.charAt(i)) {
+                throw error("Unexpected character");
+            }
+        }
+        position += literal.length();
+        tokenEnd = position;
+        return token;
+    }
+
+    // -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+    private Token readNumber(byte c) {
+        if (c == '-') {
+            position++;
+        }
+        if (position < limit && input[position] == '0') {
+            position++;
+        } else if (digits() == 0) {
+            throw error("Unexpected character");
+        }
+        if (position < limit && input[position] == '.') {
+            position++;
+            if (digits() == 0) {
+                throw error("Expected digits after '.'");
+            }
+        }
+        if (position < limit && (input[position] == 'e' || input[position] == 'E')) {
+            position++;
+            if (position < limit && (input[position] == '+' || input[position] == '-')) {
+                position++;
+            }
+            if (digits() == 0) {
+                throw error("Expected digits in the exponent");
+            }
+        }
+        tokenEnd = position;
+        return Token.NUMBER;
+    }
+
+    private int digits() {
+        int start = position;
+        while (position < limit && input[position] >= '0' && input[position] <= '9') {
+            position++;
+        }
+        return position - start;
+    }
+
+    private void skipWhitespace() {
+        while (position < limit) {
+            byte c = input[position];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private String unescape() {
+        StringBuilder text = new StringBuilder(tokenEnd - tokenStart);
+        String raw = new String(input, tokenStart + 1, tokenEnd - tokenStart - 2, StandardCharsets.UTF_8);
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\') {
+                text.append(c);
+                continue;
+            }
+            char e = raw.charAt(++i);
+            switch (e) {
+                case 'b' -> text.append('\b');
+                case 'f' -> text.append('\f');
+                case 'n' -> text.append('\n');
+                case 'r' -> text.append('\r');
+                case 't' -> text.append('\t');
+                case 'u' -> {
+                    text.append((char) Integer.parseInt(raw, i + 1, i + 5, 16));
+                    i += 4;
+                }
+                default -> text.append(e);
+            }
+        }
+        return text.toString();
+    }
+
+    private JSONException error(String message) {
+        return new JSONException(message + " at byte " + position);
+    }
+}
@@ -0,0 +1,261 @@
+package weather.utils;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes compact UTF-8 JSON into a growing byte array, without building a tree first.
+ * Separators are added automatically; the caller is responsible for well-formed nesting.
+ * <p>
+ * Example usage:
+ * <pre>
+ * byte[] json = new JsonWriter().beginObject().name("logicTime").value(12).name("observation").rawValue(observation)
+ *         .endObject().toByteArray();
+ * </pre>
+ */
+public final class JsonWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer;
+    private int size;
+    private boolean needsComma;
+
+    public JsonWriter() {
+        this(256);
+    }
+
+    public JsonWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public JsonWriter beginObject() {
+        separator();
+        put('{');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        put('}');
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        separator();
+        put('[');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        put(']');
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter name(String name) {
+        separator();
+        writeString(name);
+        put(':');
+        needsComma = false;
+        return this;
+    }
+
+    /**
+     * Writes a member name which is already a quoted, escaped JSON string
+     */
+    public JsonWriter rawName(byte[] source, int offset, int length) {
+        separator();
+        putBytes(source, offset, length);
+        put(':');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        separator();
+        writeString(value);
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        separator();
+        writeAscii(Long.toString(value));
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new JSONException("JSON does not allow " + value);
+        }
+        separator();
+        writeAscii(value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value));
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        separator();
+        writeAscii(value ? "true" : "false");
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        separator();
+        writeAscii("null");
+        needsComma = true;
+        return this;
+    }
+
+    /**
+     * Writes a value which is already valid JSON, e.g. a span returned by {@link JsonTokenizer}
+     */
+    public JsonWriter rawValue(byte[] source, int offset, int length) {
+        separator();
+        putBytes(source, offset, length);
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter rawValue(byte[] json) {
+        return rawValue(json, 0, json.length);
+    }
+
+    /**
+     * Writes object members which are already JSON, e.g. "a":1,"b":2, into the current object
+     */
+    public JsonWriter rawMembers(byte[] members) {
+        if (members.length == 0) {
+            return this;
+        }
+        separator();
+        putBytes(members, 0, members.length);
+        needsComma = true;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public void writeTo(ByteBuffer target) {
+        target.put(buffer, 0, size);
+    }
+
+    public void writeTo(OutputStream target) throws IOException {
+        target.write(buffer, 0, size);
+    }
+
+    /**
+     * Empties the writer so its buffer can be reused
+     */
+    public void reset() {
+        size = 0;
+        needsComma = false;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, size, StandardCharsets.UTF_8);
+    }
+
+    private void separator() {
+        if (needsComma) {
+            put(',');
+        }
+    }
+
+    // Encodes to UTF-8 by hand, escaping what JSON requires; no intermediate byte array
+    private void writeString(String text) {
+        ensureCapacity(text.length() + 2);
+        put('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '"' -> putEscape('"');
+                    case '\\' -> putEscape('\\');
+                    case '\n' -> putEscape('n');
+                    case '\r' -> putEscape('r');
+                    case '\t' -> putEscape('t');
+                    case '\b' -> putEscape('b');
+                    case '\f' -> putEscape('f');
+                    default -> {
+                        if (c < 0x20) {
+                            putEscape('u');
+                            put('0');
+                            put('0');
+                            put(HEX[c >> 4]);
+                            put(HEX[c & 0xF]);
+                        } else {
+                            put(c);
+                        }
+                    }
+                }
+            } else if (c < 0x800) {
+                put(0xC0 | (c >> 6));
+                put(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                put(0xF0 | (codePoint >> 18));
+                put(0x80 | ((codePoint >> 12) & 0x3F));
+                put(0x80 | ((codePoint >> 6) & 0x3F));
+                put(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                put('?'); // Unpaired surrogate, not encodable
+            } else {
+                put(0xE0 | (c >> 12));
+                put(0x80 | ((c >> 6) & 0x3F));
+                put(0x80 | (c & 0x3F));
+            }
+        }
+        put('"');
+    }
+
+    private void putEscape(char c) {
+        put('\\');
+        put(c);
+    }
+
+    private void writeAscii(String text) {
+        ensureCapacity(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer[size++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void putBytes(byte[] source, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(source, offset, buffer, size, length);
+        size += length;
+    }
+
+    private void put(int b) {
+        if (size == buffer.length) {
+            ensureCapacity(1);
+        }
+        buffer[size++] = (byte) b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package weather.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies with a fixed relative precision, in the style of HdrHistogram: values are counted in
+ * buckets whose width doubles with every power of two, each split into 1024 sub-buckets, so every recorded value is
+ * kept to three significant digits (an error below 0.1%) from nanoseconds up to the highest trackable value.
+ * Recording is a single array increment without allocation, and the memory use does not grow with the count.
+ * <p>
+ * Thread safe and lock-free: any number of threads can record into the same histogram, and the percentiles can be
+ * read while they do. A read taken meanwhile may miss the values being recorded at that moment.
+ * <p>
+ * Example usage:
+ * <pre>
+ * LatencyHistogram histogram = new LatencyHistogram();
+ * histogram.recordValue(System.nanoTime() - intendedStart);
+ * long p99 = histogram.valueAtPercentile(99.0);
+ * </pre>
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 11;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final long SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    private final DoubleAdder sum = new DoubleAdder();
+
+    /**
+     * Tracks latencies in nanoseconds up to an hour
+     */
+    public LatencyHistogram() {
+        this(TimeUnit.HOURS.toNanos(1));
+    }
+
+    /**
+     * @param highestTrackableValue Larger values are counted as this value
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        if (highestTrackableValue < SUB_BUCKET_COUNT) {
+            throw new IllegalArgumentException("Highest trackable value must be at least " + SUB_BUCKET_COUNT);
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        int buckets = 1;
+        while (buckets < 64 - SUB_BUCKET_BITS && ((long) SUB_BUCKET_COUNT << (buckets - 1)) <= highestTrackableValue) {
+            buckets++;
+        }
+        // The first bucket uses all its sub-buckets, every further one only the upper half
+        this.counts = new AtomicLongArray((buckets + 1) * SUB_BUCKET_HALF_COUNT);
+    }
+
+    /**
+     * @param value A latency, values above the highest trackable value are counted as that value
+     */
+    public void recordValue(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Latency cannot be negative: " + value);
+        }
+        long tracked = Math.min(value, highestTrackableValue);
+        counts.incrementAndGet(indexOf(tracked));
+        totalCount.increment();
+        min.accumulate(tracked);
+        max.accumulate(tracked);
+        sum.add(tracked);
+    }
+
+    /**
+     * Adds the counts of the other histogram to this one; both must track the same highest value
+     */
+    public void add(LatencyHistogram other) {
+        if (other.counts.length() != counts.length()) {
+            throw new IllegalArgumentException("Histograms track different ranges");
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.add(other.totalCount.sum());
+        min.accumulate(other.min.get());
+        max.accumulate(other.max.get());
+        sum.add(other.sum.sum());
+    }
+
+    public long totalCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * @return The smallest recorded value, 0 if nothing was recorded
+     */
+    public long min() {
+        long smallest = min.get();
+        return (smallest == Long.MAX_VALUE) ? 0 : smallest;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long count = totalCount.sum();
+        return (count == 0) ? 0 : sum.sum() / count;
+    }
+
+    /**
+     * @param percentile Between 0 and 100, e.g. 99.9
+     * @return The value that the given share of recorded values is equal to or below, 0 if nothing was recorded
+     */
+    public long valueAtPercentile(double percentile) {
+        // Counted from a copy, so values recorded meanwhile cannot move the total while walking the buckets
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        double share = Math.min(Math.max(percentile, 0), 100) / 100;
+        long countAtPercentile = Math.max(1, (long) Math.ceil(share * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= countAtPercentile) {
+                return Math.min(highestEquivalentValue(i), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * Forgets all recorded values; values recorded while resetting may be partly kept
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        min.reset();
+        max.reset();
+        sum.reset();
+    }
+
+    private static int indexOf(long value) {
+        // Values below the sub-bucket count are in the first bucket, one sub-bucket each
+        int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK) - SUB_BUCKET_BITS);
+        int subBucket = (int) (value >>> bucket);
+        return (bucket + 1) * SUB_BUCKET_HALF_COUNT + subBucket - SUB_BUCKET_HALF_COUNT;
+    }
+
+    private static long highestEquivalentValue(int index) {
+        int bucket = index / SUB_BUCKET_HALF_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        if (bucket < 0) {
+            return index;
+        }
+        return (subBucket << bucket) + (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,161 @@
+package weather.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Bounded ring of preallocated entries between any number of producers and one consumer.
+ * A producer claims the next sequence, fills the entry at that position in place and publishes it; the consumer takes
+ * every published entry in sequence order, as many as are ready at once, and releases them for reuse.
+ * <p>
+ * Nothing is allocated per entry and neither side takes a lock: a producer finding the ring full parks until the
+ * consumer released a slot, and the consumer parks while the ring is empty until a producer publishes.
+ * <p>
+ * Once the ring is closed no more entries are claimed, a producer waiting for a slot gives up, and the consumer takes
+ * the entries claimed before until the ring is {@link #drained(long)}.
+ *
+ * @param <E> Entry type, mutable holders which are reused once released
+ */
+public final class RingBuffer<E> {
+    // How long a producer parks before checking a full ring again
+    private static final long PRODUCER_PARK_NANOS = 10_000;
+    // Held by claimed once the ring is closed
+    private static final long CLOSED = Long.MAX_VALUE;
+    /**
+     * Returned by {@link #claim()} once the ring is closed
+     */
+    public static final long NO_SEQUENCE = -1;
+
+    private final E[] entries;
+    private final int mask;
+    // The sequence last published into each slot; the consumer's next entry is ready once its slot holds its sequence
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    // The last sequence claimed before the ring was closed
+    private volatile long lastClaimed = CLOSED;
+    // Highest sequence the consumer is done with, only written by the consumer
+    private volatile long released = -1;
+    // Set while the consumer is parked waiting for an entry
+    private volatile Thread waitingConsumer;
+
+    /**
+     * @param capacity Number of entries, rounded up to a power of two
+     * @param factory  Creates the entries once, up front
+     */
+    @SuppressWarnings("unchecked")
+    public RingBuffer(int capacity, Supplier<E> factory) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.entries = (E[]) new Object[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+            published.set(i, -1);
+        }
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * Claims the next entry for a producer, waiting while the ring is full
+     *
+     * @return Sequence of the entry, see {@link #get(long)} and {@link #publish(long)}; {@link #NO_SEQUENCE} once the
+     * ring is closed, also when it is closed while waiting
+     */
+    public long claim() {
+        while (true) {
+            long current = claimed.get();
+            if (current == CLOSED) {
+                return NO_SEQUENCE;
+            }
+            // A slot is only taken once it is free, so every claimed entry is published without waiting
+            if (current + 1 - entries.length > released) {
+                LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+            } else if (claimed.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Stops producers from claiming entries, those claimed before are still published and consumed
+     */
+    public void close() {
+        long last = claimed.getAndSet(CLOSED);
+        if (last != CLOSED) {
+            lastClaimed = last;
+        }
+    }
+
+    /**
+     * @param next The first sequence not consumed yet
+     * @return True once the ring is closed and every entry claimed before was consumed
+     */
+    public boolean drained(long next) {
+        return next > lastClaimed;
+    }
+
+    public E get(long sequence) {
+        return entries[(int) sequence & mask];
+    }
+
+    /**
+     * Makes the filled entry visible to the consumer
+     */
+    public void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Waits for the consumer's next entry
+     *
+     * @param next         The first sequence not consumed yet
+     * @param max          Most entries to take at once
+     * @param timeoutNanos How long to wait for an entry
+     * @return How many entries from next on are published, at most max; 0 if none was published within the timeout
+     */
+    public int await(long next, int max, long timeoutNanos) {
+        int ready = ready(next, max);
+        if (ready > 0) {
+            return ready;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        waitingConsumer = Thread.currentThread();
+        try {
+            // Checked again after announcing the wait, a producer publishing meanwhile unparks this thread
+            while ((ready = ready(next, max)) == 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return 0;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return ready;
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    /**
+     * Hands the entries up to and including the sequence back to the producers
+     */
+    public void release(long sequence) {
+        released = sequence;
+    }
+
+    private int ready(long next, int max) {
+        int ready = 0;
+        while (ready < max && published.get((int) (next + ready) & mask) == next + ready) {
+            ready++;
+        }
+        return ready;
+    }
+}
@@ -0,0 +1,126 @@
+package weather.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Fixed-capacity series of values in timestamp order, the oldest value is overwritten once the ring is full.
+ * All slots are allocated up front, so the memory a series takes depends only on its capacity.
+ * <p>
+ * Values are appended in timestamp order, so the slots from the oldest to the newest are sorted and a time range is
+ * found by binary search: a range query costs O(log n + k) for k values in the range. One writer appends at a time;
+ * readers take no lock unless an append overlapped their read, see {@link StampedLock#tryOptimisticRead()}.
+ *
+ * @param <T> Value type
+ */
+public final class TimeSeriesRing<T> {
+    private final long[] timestamps;
+    private final T[] values;
+    private final StampedLock lock = new StampedLock();
+    // Number of values ever appended, the newest is at (written - 1) % capacity; guarded by lock
+    private long written;
+
+    /**
+     * A value and its timestamp
+     */
+    public record Entry<T>(long timestamp, T value) {
+    }
+
+    @SuppressWarnings("unchecked")
+    public TimeSeriesRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.timestamps = new long[capacity];
+        this.values = (T[]) new Object[capacity];
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return (int) Math.min(written, values.length);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Appends the value as the newest, overwriting the oldest one if the ring is full
+     *
+     * @throws IllegalArgumentException When the timestamp is older than the newest value's
+     */
+    public void append(long timestamp, T value) {
+        long stamp = lock.writeLock();
+        try {
+            if (written > 0 && timestamp < timestamps[slot(written - 1)]) {
+                throw new IllegalArgumentException("Timestamp " + timestamp + " is older than the newest "
+                        + timestamps[slot(written - 1)]);
+            }
+            int slot = slot(written);
+            timestamps[slot] = timestamp;
+            values[slot] = value;
+            written++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return The values with from &lt;= timestamp &lt; to, oldest first
+     */
+    public List<Entry<T>> range(long from, long to) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            List<Entry<T>> range = collect(from, to);
+            if (lock.validate(stamp)) {
+                return range;
+            }
+        }
+        // An append overlapped the read, the slots read may have been overwritten
+        stamp = lock.readLock();
+        try {
+            return collect(from, to);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Indexes count from the oldest value, 0, to the newest, size - 1
+    private List<Entry<T>> collect(long from, long to) {
+        long end = written;
+        int size = (int) Math.max(0, Math.min(end, values.length));
+        long oldest = end - size;
+        int first = lowerBound(oldest, size, from);
+        int last = lowerBound(oldest, size, to);
+        List<Entry<T>> range = new ArrayList<>(Math.max(0, last - first));
+        for (int i = first; i < last; i++) {
+            int slot = slot(oldest + i);
+            range.add(new Entry<>(timestamps[slot], values[slot]));
+        }
+        return range;
+    }
+
+    // The first index whose timestamp is not below the given one, size if there is none
+    private int lowerBound(long oldest, int size, long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[slot(oldest + middle)] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int slot(long sequence) {
+        return (int) Math.floorMod(sequence, (long) values.length);
+    }
+}
@@ -0,0 +1,158 @@
+package weather.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel: deadlines of keys, fired in tick order once they passed.
+ * <p>
+ * Every level is a ring of 64 slots, a slot of the first level spans one tick and a slot of each further level 64
+ * times the span of the previous one. A key is put in the slot of the level its deadline falls into, in a doubly
+ * linked list, so scheduling, moving and cancelling a key cost O(1) whatever the number of keys. When time reaches a
+ * slot of a higher level, its keys are cascaded into the lower levels, and the keys of each first level slot are fired
+ * when their tick has passed. Four levels cover 64^4 ticks, later deadlines wait in the last level.
+ * <p>
+ * Not thread-safe, the owner serializes the calls.
+ *
+ * @param <K> Key type, a key is scheduled at most once
+ */
+public final class TimerWheel<K> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    // Sentinel heads of the slot lists, per level
+    private final Node<K>[][] wheels;
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+    // The last tick whose keys were fired
+    private long currentTick;
+
+    private static final class Node<K> {
+        private final K key;
+        private long deadlineTick;
+        private Node<K> previous = this;
+        private Node<K> next = this;
+
+        private Node(K key) {
+            this.key = key;
+        }
+
+        private void unlink() {
+            previous.next = next;
+            next.previous = previous;
+            previous = this;
+            next = this;
+        }
+    }
+
+    /**
+     * @param tickMillis Resolution of the wheel, a key fires at most one tick after its deadline
+     * @param nowMillis  Current time, the wheel starts there
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.currentTick = nowMillis / this.tickMillis;
+        this.wheels = new Node[LEVELS][SLOTS];
+        for (Node<K>[] wheel : wheels) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheel[slot] = new Node<>(null);
+            }
+        }
+    }
+
+    /**
+     * Schedules the key to fire once the deadline passed, replacing its previous deadline
+     */
+    public void schedule(K key, long deadlineMillis) {
+        Node<K> node = nodes.computeIfAbsent(key, Node::new);
+        node.unlink();
+        // Rounded up, a key never fires before its deadline
+        node.deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        place(node);
+    }
+
+    /**
+     * @return True if the key was scheduled
+     */
+    public boolean cancel(K key) {
+        Node<K> node = nodes.remove(key);
+        if (node == null) {
+            return false;
+        }
+        node.unlink();
+        return true;
+    }
+
+    public boolean contains(K key) {
+        return nodes.containsKey(key);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Moves the wheel to the given time, firing every key whose deadline passed, in the order of their ticks.
+     * A fired key is no longer scheduled, the callback may schedule it again.
+     */
+    public void advance(long nowMillis, Consumer<K> expired) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Higher levels first, their keys may belong into the lower slots reached now
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level);
+                }
+            }
+            Node<K> head = wheels[0][(int) (currentTick & (SLOTS - 1))];
+            while (head.next != head) {
+                Node<K> node = head.next;
+                node.unlink();
+                nodes.remove(node.key);
+                expired.accept(node.key);
+            }
+        }
+    }
+
+    private void cascade(int level) {
+        Node<K> head = wheels[level][(int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1))];
+        while (head.next != head) {
+            Node<K> node = head.next;
+            node.unlink();
+            if (node.deadlineTick == currentTick) {
+                // Fired right after the cascade
+                link(wheels[0][(int) (currentTick & (SLOTS - 1))], node);
+            } else {
+                place(node);
+            }
+        }
+    }
+
+    private void place(Node<K> node) {
+        long delta = node.deadlineTick - currentTick;
+        if (delta <= 0) {
+            // Due already, fired with the next tick
+            link(wheels[0][(int) ((currentTick + 1) & (SLOTS - 1))], node);
+            return;
+        }
+        // Beyond the last level, the key waits in the last slot it reaches and is placed again from there
+        long tick = (delta < MAX_SPAN) ? node.deadlineTick : currentTick + MAX_SPAN - 1;
+        int level = 0;
+        while (level < LEVELS - 1 && (tick - currentTick) >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        link(wheels[level][(int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1))], node);
+    }
+
+    private static <K> void link(Node<K> head, Node<K> node) {
+        node.previous = head.previous;
+        node.next = head;
+        head.previous.next = node;
+        head.previous = node;
+    }
+}
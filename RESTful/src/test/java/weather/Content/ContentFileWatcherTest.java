@@ -0,0 +1,129 @@
+package weather.Content;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentFileWatcherTest {
+    private Path directory;
+    private Path feed;
+    private Path checkpoint;
+    private final List<String> uploaded = new CopyOnWriteArrayList<>();
+    private Thread watcherThread;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("content-watcher");
+        feed = directory.resolve("feed.txt");
+        checkpoint = directory.resolve("tail.checkpoint");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void uploadsAppendedRecordsOnceAcrossRestarts() throws Exception {
+        Files.writeString(feed, station("IDS1") + "\n");
+
+        ContentFileWatcher watcher = start();
+        try {
+            awaitUploads(1);
+            append(station("IDS2") + "\n");
+            awaitUploads(2);
+            // Without a following blank line the record is only taken once the file settled
+            append("\"id\": \"IDS3\",\n\"air_temp\": 3.5");
+            awaitUploads(3);
+        } finally {
+            stop(watcher);
+        }
+        append("\n\n" + station("IDS4") + "\n");
+
+        watcher = start();
+        try {
+            awaitUploads(4);
+            Thread.sleep(300);
+        } finally {
+            stop(watcher);
+        }
+        assertEquals(List.of("IDS1", "IDS2", "IDS3", "IDS4"),
+                uploaded.stream().map(json -> new JSONObject(json).getString("id")).toList());
+        assertEquals(3.5, new JSONObject(uploaded.get(2)).getDouble("air_temp"));
+    }
+
+    @Test
+    void settlesTheTailWhileOtherFilesOfTheDirectoryKeepChanging() throws Exception {
+        Files.writeString(feed, "\"id\": \"IDS1\",\n\"air_temp\": 3.5");
+        Path neighbour = directory.resolve("weatherData.log");
+
+        ContentFileWatcher watcher = start();
+        try {
+            // Changes more often than the settle time while the followed file stays untouched
+            long deadline = System.currentTimeMillis() + 5000;
+            while (uploaded.isEmpty() && System.currentTimeMillis() < deadline) {
+                Files.writeString(neighbour, "entry\n", StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                Thread.sleep(20);
+            }
+        } finally {
+            stop(watcher);
+        }
+        assertEquals(1, uploaded.size(), "the tail was not taken while the neighbour kept changing");
+        assertEquals("IDS1", new JSONObject(uploaded.get(0)).getString("id"));
+    }
+
+    private ContentFileWatcher start() throws IOException {
+        ContentFileWatcher watcher = new ContentFileWatcher(feed, checkpoint, 200,
+                observation -> uploaded.add(new String(observation, StandardCharsets.UTF_8)));
+        Thread thread = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (IOException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        watcherThread = thread;
+        return watcher;
+    }
+
+    // Waits for the run to end, so the checkpoint of its last upload is saved before the next run reads it
+    private void stop(ContentFileWatcher watcher) throws IOException, InterruptedException {
+        watcher.close();
+        watcherThread.join(5000);
+    }
+
+    private void append(String text) throws IOException {
+        Files.writeString(feed, text, StandardOpenOption.APPEND);
+    }
+
+    private void awaitUploads(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (uploaded.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, uploaded.size(), "uploaded: " + uploaded);
+    }
+
+    private static String station(String id) {
+        return "\"id\": \"" + id + "\",\n\"air_temp\": 13.3,\n\"rel_hum\": 60\n";
+    }
+}
@@ -0,0 +1,71 @@
+package weather.Content;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import weather.utils.JSONParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentRecordReaderTest {
+    private static final String STATION = """
+            "id" : "IDS60901",
+            "name" : "Adelaide (West Terrace / ngayirdapira)",
+            "lat": -34.9,
+            "local_date_time_full": "20230715160000",
+            "rel_hum": 60,
+            "wind_dir": "S",
+            """;
+
+    @Test
+    void typesValuesLikeEnsureJsonFormat() throws IOException {
+        String text = STATION + "press: 1023.9\nraw_time: 20230715160000\nnote: partly: cloudy,\nno colon here\n";
+
+        List<String> records = readAll(text);
+
+        assertEquals(1, records.size());
+        JSONObject expected = JSONParser.ensureJsonFormat(text);
+        assertTrue(expected.similar(new JSONObject(records.get(0))), records.get(0));
+    }
+
+    @Test
+    void splitsRecordsAtBlankLinesAndIds() throws IOException {
+        String text = "\n" + STATION + "\n\n" + STATION.replace("IDS60901", "IDS60902")
+                + STATION.replace("IDS60901", "IDS60903") + "\n";
+
+        List<String> records = readAll(text);
+
+        assertEquals(3, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            JSONObject record = new JSONObject(records.get(i));
+            assertEquals("IDS6090" + (i + 1), record.getString("id"));
+            assertEquals(60, record.getInt("rel_hum"));
+        }
+    }
+
+    @Test
+    void readsJsonRecordsBetweenTextRecords() throws IOException {
+        String text = "{\n  \"id\": \"IDS1\",\n  \"note\": \"a } in text\"\n}{\"id\": \"IDS2\"}\n" + STATION;
+
+        List<String> records = readAll(text);
+
+        assertEquals(List.of("{\"id\":\"IDS1\",\"note\":\"a } in text\"}", "{\"id\":\"IDS2\"}"), records.subList(0, 2));
+        assertEquals("IDS60901", new JSONObject(records.get(2)).getString("id"));
+    }
+
+    private static List<String> readAll(String text) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (ContentRecordReader reader = new ContentRecordReader(new StringReader(text))) {
+            for (byte[] record = reader.next(); record != null; record = reader.next()) {
+                records.add(new String(record, StandardCharsets.UTF_8));
+            }
+            assertEquals(records.size(), reader.records());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,109 @@
+package weather.Content;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weather.lamport.LamportClockImpl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentSpoolTest {
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("content-spool");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void keepsUnacknowledgedRecordsInOrderAcrossRestarts() throws IOException {
+        try (ContentSpool spool = ContentSpool.open(directory, 64, false)) {
+            for (int i = 0; i < 10; i++) {
+                spool.append(record(i));
+            }
+            List<byte[]> batch = spool.peek(4);
+            assertEquals(4, batch.size());
+            // Peeking again without acknowledging returns the same records
+            assertEquals("{\"n\":0}", text(spool.peek(4).get(0)));
+            spool.acknowledge(3);
+            assertEquals(7, spool.size());
+        }
+
+        try (ContentSpool spool = ContentSpool.open(directory, 64, false)) {
+            assertEquals(7, spool.size());
+            List<byte[]> rest = spool.peek(100);
+            assertEquals(7, rest.size());
+            for (int i = 0; i < rest.size(); i++) {
+                assertEquals("{\"n\":" + (i + 3) + "}", text(rest.get(i)));
+            }
+            spool.acknowledge(rest.size());
+            assertEquals(0, spool.size());
+            assertTrue(spool.peek(100).isEmpty());
+        }
+        // Acknowledged segments are deleted, only the one still appended to is left
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().startsWith("spool.")).count());
+        }
+    }
+
+    @Test
+    void dropsTornRecordLeftByCrash() throws IOException {
+        try (ContentSpool spool = ContentSpool.open(directory, 1024, false)) {
+            spool.append(record(1));
+            spool.append(record(2));
+        }
+        Files.writeString(directory.resolve("spool.000001"), "{\"n\":", StandardOpenOption.APPEND);
+
+        try (ContentSpool spool = ContentSpool.open(directory, 1024, false)) {
+            assertEquals(2, spool.size());
+            spool.append(record(3));
+            List<byte[]> records = spool.peek(10);
+            assertEquals(List.of("{\"n\":1}", "{\"n\":2}", "{\"n\":3}"), records.stream().map(ContentSpoolTest::text).toList());
+        }
+    }
+
+    @Test
+    void continuesTheClockAfterTheTimesOfAnEarlierRun() throws IOException {
+        long last;
+        try (ContentSpool spool = ContentSpool.open(directory, 1024, false)) {
+            LamportClockImpl clock = new LamportClockImpl();
+            clock.update(5000);
+            spool.stamp(clock);
+            last = spool.stamp(clock);
+        }
+
+        // The restarted content server starts with a fresh clock
+        try (ContentSpool spool = ContentSpool.open(directory, 1024, false)) {
+            LamportClockImpl clock = new LamportClockImpl();
+            long first = spool.stamp(clock);
+            assertTrue(first > last, first + " is not after " + last);
+            assertEquals(first + 1, spool.stamp(clock));
+        }
+    }
+
+    private static byte[] record(int n) {
+        return ("{\"n\":" + n + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] record) {
+        return new String(record, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,197 @@
+package weather.data;
+
+import org.json.JSONArray;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weather.lamport.LamportClockImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryWeatherStoreTest {
+    private Path dataDir;
+    private Path dataFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("weather-store");
+        dataFile = dataDir.resolve("weatherData.json");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void indexesByStationAndLogicTime() {
+        InMemoryWeatherStore store = new InMemoryWeatherStore(dataFile.toString(), 60_000);
+        store.saveWeatherData("{\"data\": {\"id\": \"IDS60901\", \"air_temp\": 13.3}, \"LogicTimestamp\": 1}", 1);
+        store.saveWeatherData("{\"id\": \"IDS60902\", \"air_temp\": 10.1}", 2);
+        store.saveWeatherData("{\"data\": {\"id\": \"IDS60901\", \"air_temp\": 14.0}, \"LogicTimestamp\": 2}", 3);
+
+        assertEquals(3, store.count());
+        assertEquals(2, store.readStation("IDS60901").size());
+        assertEquals(3, store.readLatest("IDS60901").logicTime());
+        assertEquals("IDS60902", store.readByLogicTime(2).stationId());
+        assertNull(store.readByLogicTime(4));
+        assertTrue(store.readWeatherData(1).contains("IDS60902"));
+        assertNull(store.readWeatherData(3));
+        store.close();
+    }
+
+    @Test
+    void persistsOnCloseAndReloads() throws IOException {
+        InMemoryWeatherStore store = new InMemoryWeatherStore(dataFile.toString(), 60_000);
+        store.saveWeatherData("{\"id\": \"IDS60901\", \"air_temp\": 13.3}", 1);
+        store.saveWeatherData("{\"id\": \"IDS60902\", \"air_temp\": 10.1}", 2);
+        store.close();
+
+        assertEquals(2, new JSONArray(Files.readString(dataFile)).length());
+
+        InMemoryWeatherStore reloaded = new InMemoryWeatherStore(dataFile.toString(), 60_000);
+        assertEquals(2, reloaded.count());
+        assertNotNull(reloaded.readLatest("IDS60902"));
+        reloaded.clearWeatherData();
+        reloaded.close();
+        assertEquals(0, new JSONArray(Files.readString(dataFile)).length());
+    }
+
+    @Test
+    void recoversFromWriteAheadLog() throws IOException {
+        Path logFile = dataDir.resolve("weatherData.log");
+        InMemoryWeatherStore store = new InMemoryWeatherStore(new WriteAheadLog(logFile, 0, 16, true));
+        store.saveWeatherData("{\"id\": \"IDS60901\", \"air_temp\": 13.3}", 1);
+        store.saveWeatherData("{\"id\": \"IDS60902\", \"air_temp\": 10.1}", 2);
+        store.close();
+
+        InMemoryWeatherStore recovered = new InMemoryWeatherStore(new WriteAheadLog(logFile, 0, 16, true));
+        assertEquals(2, recovered.count());
+        assertEquals(2, recovered.readLatest("IDS60902").logicTime());
+        recovered.close();
+    }
+
+    @Test
+    void recoversFromSnapshotAndLogTail() throws IOException {
+        Path logFile = dataDir.resolve("weatherData.log");
+        Path snapshotFile = dataDir.resolve("weatherData.snapshot");
+        LamportClockImpl clock = new LamportClockImpl();
+        InMemoryWeatherStore store = new InMemoryWeatherStore(new WriteAheadLog(logFile, 0, 16, true), snapshotFile, 0, clock);
+        store.saveWeatherData("{\"id\": \"IDS60901\", \"air_temp\": 13.3}", clock.incrementAndGet());
+        store.saveWeatherData("{\"id\": \"IDS60901\", \"air_temp\": 14.0}", clock.incrementAndGet());
+        store.saveWeatherData("{\"id\": \"IDS60902\", \"air_temp\": 10.1}", clock.incrementAndGet());
+        assertTrue(store.snapshot());
+        store.saveWeatherData("{\"id\": \"IDS60903\", \"air_temp\": 9.5}", clock.incrementAndGet());
+        // The snapshot covers the first segment; simulate a crash, the last PUT is only in the log
+        assertFalse(Files.exists(dataDir.resolve("weatherData.log.000001")));
+
+        LamportClockImpl restarted = new LamportClockImpl();
+        InMemoryWeatherStore recovered = new InMemoryWeatherStore(new WriteAheadLog(logFile, 0, 16, true), snapshotFile, 0, restarted);
+        // Only the latest observation of IDS60901 is in the snapshot
+        assertEquals(3, recovered.count());
+        assertEquals(2, recovered.readLatest("IDS60901").logicTime());
+        assertEquals(4, recovered.readLatest("IDS60903").logicTime());
+        assertTrue(restarted.getTime() > 4);
+        recovered.close();
+    }
+
+    @Test
+    void keepsRecentUpdatesAndRemovalsAcrossRestarts() throws IOException {
+        Path logFile = dataDir.resolve("weatherData.log");
+        InMemoryWeatherStore store = new InMemoryWeatherStore(new WriteAheadLog(logFile, 0, 16, true), null, 0,
+                new LamportClockImpl(), 2);
+        for (int i = 1; i <= 4; i++) {
+            store.saveWeatherData("{\"id\": \"IDS60901\", \"air_temp\": " + i + ", \"LogicTimestamp\": " + i + "}", i);
+        }
+        store.saveWeatherData("{\"id\": \"IDS60902\", \"air_temp\": 10.1}", 5);
+
+        assertEquals(3, store.count());
+        assertEquals(List.of(3L, 4L), store.readStation("IDS60901").stream().map(StoredObservation::logicTime).toList());
+        assertNull(store.readByLogicTime(1));
+        store.removeStation("IDS60902");
+        assertNull(store.readLatest("IDS60902"));
+        assertEquals(2, store.count());
+        store.close();
+
+        InMemoryWeatherStore recovered = new InMemoryWeatherStore(new WriteAheadLog(logFile, 0, 16, true), null, 0,
+                new LamportClockImpl(), 2);
+        assertEquals(2, recovered.count());
+        assertEquals(4, recovered.readLatest("IDS60901").logicTime());
+        assertNull(recovered.readLatest("IDS60902"));
+        recovered.close();
+    }
+
+    @Test
+    void keepsEveryUpdateOfConcurrentWriters() throws Exception {
+        InMemoryWeatherStore store = new InMemoryWeatherStore(dataFile.toString(), 60_000);
+        int writers = 8;
+        int perWriter = 2_000;
+        int stations = 64;
+        AtomicInteger logicTime = new AtomicInteger();
+        // Source Lamport time per station, several writers share each station
+        AtomicIntegerArray sourceTime = new AtomicIntegerArray(stations);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    int station = (writer * 7 + i) % stations;
+                    store.saveWeatherData("{\"data\": {\"id\": \"S" + station + "\", \"air_temp\": " + i + "}, "
+                            + "\"LogicTimestamp\": " + sourceTime.incrementAndGet(station) + "}", logicTime.incrementAndGet());
+                }
+            }));
+        }
+        // A reader's snapshot of a station never changes, however the writers go on
+        Future<?> reader = executor.submit(() -> {
+            while (writing.get()) {
+                List<StoredObservation> history = store.readStation("S0");
+                List<StoredObservation> copy = List.copyOf(history);
+                Thread.yield();
+                assertEquals(copy, history);
+            }
+        });
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        reader.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals(writers * perWriter, store.count());
+        int stored = 0;
+        for (int station = 0; station < stations; station++) {
+            List<StoredObservation> history = store.readStation("S" + station);
+            assertEquals(sourceTime.get(station), history.size());
+            for (int i = 0; i < history.size(); i++) {
+                assertEquals(i + 1, history.get(i).observation().logicTimestamp());
+            }
+            stored += history.size();
+        }
+        assertEquals(writers * perWriter, stored);
+        for (int time = 1; time <= logicTime.get(); time++) {
+            assertNotNull(store.readByLogicTime(time));
+        }
+        store.close();
+    }
+}
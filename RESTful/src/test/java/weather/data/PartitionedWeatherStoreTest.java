@@ -0,0 +1,102 @@
+package weather.data;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weather.lamport.LamportClockImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedWeatherStoreTest {
+    private Path dataDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("weather-partitions");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void routesStationsToPartitionsAndMergesReads() throws IOException {
+        LamportClockImpl clock = new LamportClockImpl();
+        PartitionedWeatherStore store = (PartitionedWeatherStore) config().createStore(clock, 4);
+        assertEquals(4, store.partitions());
+        for (int i = 0; i < 20; i++) {
+            store.saveWeatherData("{\"id\": \"IDS609" + (i % 10) + "\", \"air_temp\": " + i + "}", clock.incrementAndGet());
+        }
+
+        assertEquals(20, store.count());
+        for (int station = 0; station < 10; station++) {
+            String id = "IDS609" + station;
+            int partition = PartitionedWeatherStore.partitionOf(id, 4);
+            assertEquals(2, store.partition(partition).readStation(id).size());
+            assertEquals(station + 10.0, new JSONObject(store.readLatest(id).json()).getDouble("air_temp"));
+        }
+        JSONArray all = new JSONArray(store.readWeatherData());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, all.getJSONObject(i).getDouble("air_temp"));
+        }
+        assertTrue(Files.exists(dataDir.resolve("weatherData-p3.log.000001")));
+        assertFalse(Files.exists(dataDir.resolve("weatherData.log.000001")));
+        store.close();
+
+        PartitionedWeatherStore recovered = (PartitionedWeatherStore) config().createStore(new LamportClockImpl(), 4);
+        // The snapshot taken on close keeps the latest observation of each station
+        assertEquals(10, recovered.count());
+        for (int station = 0; station < 10; station++) {
+            String id = "IDS609" + station;
+            assertEquals(store.readLatest(id).json(), recovered.readLatest(id).json());
+        }
+        recovered.close();
+    }
+
+    @Test
+    void savesBatchOfOnePartitionTogether() throws IOException {
+        PartitionedWeatherStore store = (PartitionedWeatherStore) config().createStore(new LamportClockImpl(), 2);
+        List<WeatherObservation> mixed = List.of(
+                WeatherObservation.fromContent("{\"id\": \"IDS60901\", \"air_temp\": 1}"),
+                WeatherObservation.fromContent("{\"id\": \"IDS60902\", \"air_temp\": 2}"),
+                WeatherObservation.fromContent("{\"id\": \"IDS60903\", \"air_temp\": 3}"));
+        store.saveObservations(mixed, 1);
+
+        assertEquals(3, store.count());
+        assertEquals(3, store.readStation("IDS60903").get(0).logicTime());
+        store.close();
+    }
+
+    @Test
+    void refusesLogsOfAnotherPartitionCount() {
+        WeatherDataInterface store = config().createStore(new LamportClockImpl(), 4);
+        for (int i = 0; i < 10; i++) {
+            store.saveWeatherData("{\"id\": \"IDS609" + i + "\", \"air_temp\": 1}", i + 1);
+        }
+        store.close();
+
+        assertThrows(IllegalStateException.class, () -> config().createStore(new LamportClockImpl(), 2));
+        assertThrows(IllegalStateException.class, () -> config().createStore(new LamportClockImpl(), 1));
+        config().createStore(new LamportClockImpl(), 4).close();
+    }
+
+    private StorageConfig config() {
+        return new StorageConfig(StorageType.LOG, dataDir.resolve("weatherData.json").toString(), 1000,
+                dataDir.resolve("weatherData.log").toString(), 0, 16, false,
+                64L * 1024 * 1024, dataDir.resolve("weatherData.snapshot").toString(), 60_000);
+    }
+}
@@ -0,0 +1,105 @@
+package weather.data;
+
+import weather.lamport.LamportClockImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long the aggregation store takes to recover, replaying the whole log versus loading a snapshot.
+ * Not a unit test, run it by hand, e.g. for 1M, 10M and 100M observations:
+ * <pre>
+ * java -cp ... weather.data.RecoveryBenchmark 1000000 10000
+ * </pre>
+ * Arguments: number of observations (default 1000000), number of stations (default 1000), directory for the files
+ * (default a temporary directory, deleted afterwards).
+ */
+class RecoveryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long observations = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        int stations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Path dir = args.length > 2 ? Path.of(args[2]) : Files.createTempDirectory("weather-recovery");
+        Path logFile = dir.resolve("weatherData.log");
+        Path snapshotFile = dir.resolve("weatherData.snapshot");
+
+        try {
+            long start = System.nanoTime();
+            writeLog(logFile, observations, stations);
+            System.out.printf("Wrote %,d observations of %,d stations in %,d ms%n", observations, stations, millisSince(start));
+
+            long heapBefore = usedHeap();
+            start = System.nanoTime();
+            InMemoryWeatherStore replayed = new InMemoryWeatherStore(openLog(logFile), snapshotFile, 0, new LamportClockImpl());
+            System.out.printf("Full log replay: %,d ms, %,d observations in memory%n", millisSince(start), replayed.count());
+            System.out.printf("Heap per observation: %,d bytes, %,d bytes as compact JSON%n",
+                    (usedHeap() - heapBefore) / Math.max(1, replayed.count()), observation(1, stations).length());
+
+            start = System.nanoTime();
+            replayed.snapshot();
+            System.out.printf("Snapshot and compaction: %,d ms%n", millisSince(start));
+            replayed.close();
+
+            start = System.nanoTime();
+            InMemoryWeatherStore recovered = new InMemoryWeatherStore(openLog(logFile), snapshotFile, 0, new LamportClockImpl());
+            System.out.printf("Snapshot recovery: %,d ms, %,d observations in memory%n", millisSince(start), recovered.count());
+            recovered.close();
+        } finally {
+            if (args.length <= 2) {
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    // Appends without fsync and without waiting per record, only the recovery is measured
+    private static void writeLog(Path logFile, long observations, int stations) throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 0, 4096, false, 64L * 1024 * 1024)) {
+            CompletableFuture<Long> last = null;
+            for (long i = 1; i <= observations; i++) {
+                last = log.append("{\"logicTime\":" + i + ",\"observation\":" + observation(i, stations) + "}");
+                if (i % 100_000 == 0) {
+                    last.join(); // Keep the queue of the writer bounded
+                }
+            }
+            if (last != null) {
+                last.join();
+            }
+        }
+    }
+
+    // A content server observation, as stored
+    private static String observation(long i, int stations) {
+        return "{\"data\":{\"id\":\"IDS" + (i % stations) + "\",\"name\":\"Adelaide (West Terrace /  ngayirdapira)\","
+                + "\"state\":\"SA\",\"time_zone\":\"CST\",\"lat\":-34.9,\"lon\":138.6,\"local_date_time\":\"15/04:00pm\","
+                + "\"local_date_time_full\":\"20230715160000\",\"air_temp\":" + (i % 400) / 10.0 + ",\"apparent_t\":9.5,"
+                + "\"cloud\":\"Partly cloudy\",\"dewpt\":5.7,\"press\":1023.9,\"rel_hum\":" + (i % 100) + ",\"wind_dir\":\"S\","
+                + "\"wind_spd_kmh\":15,\"wind_spd_kt\":8},\"SystemTimestamp\":" + (1_700_000_000_000L + i) + ",\"LogicTimestamp\":" + i + "}";
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static WriteAheadLog openLog(Path logFile) throws IOException {
+        return new WriteAheadLog(logFile, 0, 4096, false, 64L * 1024 * 1024);
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package weather.data;
+
+import org.junit.jupiter.api.Test;
+import weather.utils.JSONParser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherObservationTest {
+
+    @Test
+    void decodesContentServerObservation() {
+        String data = JSONParser.formatDataAsJson("""
+                {"id": "IDS60901", "name": "Adelaide (West Terrace /  ngayirdapira)", "state": "SA", "time_zone": "CST",
+                 "lat": -34.9, "lon": 138.6, "local_date_time": "15/04:00pm", "local_date_time_full": "20230715160000",
+                 "air_temp": 13.3, "apparent_t": 9.5, "cloud": "Partly cloudy", "dewpt": 5.7, "press": 1023.9,
+                 "rel_hum": 60, "wind_dir": "S", "wind_spd_kmh": 15, "wind_spd_kt": 8}""",
+                Map.of("SystemTimestamp", 1728000000000L, "LogicTimestamp", 7));
+        WeatherObservation observation = WeatherObservation.fromContent(data);
+
+        assertEquals("IDS60901", observation.id());
+        assertEquals(13.3, observation.airTemp());
+        assertEquals(60, observation.relHum());
+        assertEquals("20230715160000", observation.localDateTimeFull());
+        assertEquals(7, observation.logicTimestamp());
+        assertEquals(1728000000000L, observation.systemTimestamp());
+        assertSame(observation.id(), WeatherObservation.fromContent(data).id());
+
+        // Encoding and decoding again gives the same observation
+        byte[] encoded = observation.encode();
+        assertArrayEquals(encoded, WeatherObservation.decode(encoded, 0, encoded.length).encode());
+    }
+
+    @Test
+    void keepsUnknownAndMistypedMembers() {
+        String json = "{\"id\":\"IDS60902\",\"air_temp\":\"n/a\",\"rel_hum\":60.5,\"uv\":{\"index\":3},\"press\":1012}";
+        WeatherObservation observation = WeatherObservation.fromContent(json);
+
+        assertTrue(Double.isNaN(observation.airTemp()));
+        assertEquals(WeatherObservation.ABSENT, observation.relHum());
+        assertEquals(1012.0, observation.press());
+        assertEquals("{\"index\":3}", observation.extra("uv"));
+        assertEquals("{\"id\":\"IDS60902\",\"press\":1012,\"air_temp\":\"n/a\",\"rel_hum\":60.5,\"uv\":{\"index\":3}}",
+                new String(observation.encode(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void wrapsPlainText() {
+        WeatherObservation observation = WeatherObservation.fromContent("id:IDS60903\nair_temp:13.3");
+        assertEquals("IDS60903", observation.id());
+        assertEquals(13.3, observation.airTemp());
+    }
+}
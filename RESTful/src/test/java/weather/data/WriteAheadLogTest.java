@@ -0,0 +1,151 @@
+package weather.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    private Path logDir;
+    private Path logFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logDir = Files.createTempDirectory("weather-wal");
+        logFile = logDir.resolve("weatherData.log");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(logDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void concurrentAppendsAreAllDurable() throws Exception {
+        int threads = 8;
+        int recordsPerThread = 200;
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 1000, 64, true)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<CompletableFuture<Void>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        log.appendAndSync("{\"thread\":" + thread + ",\"seq\":" + i + "}");
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(writers.toArray(new CompletableFuture<?>[0])).join();
+            executor.shutdown();
+        }
+
+        try (WriteAheadLog reopened = new WriteAheadLog(logFile, 0, 1, false)) {
+            List<String> records = new ArrayList<>();
+            reopened.replay(records::add);
+            assertEquals(threads * recordsPerThread, records.size());
+        }
+    }
+
+    @Test
+    void appendsRacingCloseAreWrittenOrFailButNeverHang() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(logFile, 0, 64, false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<Integer>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            writers.add(CompletableFuture.supplyAsync(() -> {
+                int written = 0;
+                try {
+                    while (true) {
+                        log.appendAndSync("{\"seq\":" + written + "}");
+                        written++;
+                    }
+                } catch (UncheckedIOException e) {
+                    return written;
+                }
+            }, executor));
+        }
+        Thread.sleep(50);
+        log.close();
+        int written = 0;
+        for (CompletableFuture<Integer> writer : writers) {
+            written += writer.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        try (WriteAheadLog reopened = new WriteAheadLog(logFile, 0, 1, false)) {
+            List<String> records = new ArrayList<>();
+            reopened.replay(records::add);
+            assertEquals(written, records.size());
+        }
+    }
+
+    @Test
+    void dropsTornRecordOnOpen() throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 0, 1, true)) {
+            log.appendAndSync("{\"seq\":1}");
+            log.appendAndSync("{\"seq\":2}");
+        }
+        // Simulate a crash in the middle of writing the third record
+        Files.writeString(logDir.resolve("weatherData.log.000001"), "{\"seq\":", StandardOpenOption.APPEND);
+
+        try (WriteAheadLog reopened = new WriteAheadLog(logFile, 0, 1, true)) {
+            reopened.appendAndSync("{\"seq\":3}");
+            List<String> records = new ArrayList<>();
+            reopened.replay(records::add);
+            assertEquals(List.of("{\"seq\":1}", "{\"seq\":2}", "{\"seq\":3}"), records);
+        }
+    }
+
+    @Test
+    void truncateDropsEarlierRecords() throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 0, 1, true)) {
+            log.appendAndSync("{\"seq\":1}");
+            log.truncate();
+            log.appendAndSync("{\"seq\":2}");
+            List<String> records = new ArrayList<>();
+            log.replay(records::add);
+            assertEquals(List.of("{\"seq\":2}"), records);
+        }
+    }
+
+    @Test
+    void replaysFromSegmentAndDeletesOlderOnes() throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(logFile, 0, 1, true, 16)) {
+            log.appendAndSync("{\"seq\":1}");
+            long next = log.rollSegment();
+            log.appendAndSync("{\"seq\":2}");
+            log.appendAndSync("{\"seq\":3}"); // Exceeds the segment size, rolls again
+            log.appendAndSync("{\"seq\":4}");
+            assertEquals(3, log.currentSegment());
+
+            List<String> records = new ArrayList<>();
+            log.replay(next, records::add);
+            assertEquals(List.of("{\"seq\":2}", "{\"seq\":3}", "{\"seq\":4}"), records);
+
+            log.deleteSegmentsBefore(next);
+            records.clear();
+            log.replay(records::add);
+            assertEquals(3, records.size());
+            assertFalse(Files.exists(logDir.resolve("weatherData.log.000001")));
+        }
+    }
+}
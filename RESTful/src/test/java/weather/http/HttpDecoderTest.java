@@ -0,0 +1,107 @@
+package weather.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpDecoderTest {
+
+    @Test
+    void decodesPipelinedRequestsFramedByContentLength() throws HttpParseException {
+        HttpDecoder decoder = new HttpDecoder();
+        feed(decoder, "PUT /weather HTTP/1.1\r\nContent-Length: 13\r\n\r\n{\"id\": \"A1\"}\n"
+                + "GET /weather HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+        HttpRequest put = decoder.nextRequest(false);
+        assertNotNull(put);
+        assertEquals("PUT", put.method());
+        assertEquals("{\"id\": \"A1\"}\n", put.body());
+        assertTrue(put.keepAlive());
+
+        HttpRequest get = decoder.nextRequest(false);
+        assertNotNull(get);
+        assertEquals("GET", get.method());
+        assertEquals("localhost", get.header("host"));
+        assertFalse(decoder.hasBufferedInput());
+        assertNull(decoder.nextRequest(false));
+    }
+
+    @Test
+    void waitsForTheWholeBody() throws HttpParseException {
+        HttpDecoder decoder = new HttpDecoder();
+        feed(decoder, "PUT /weather HTTP/1.1\r\nContent-Length: 10\r\n\r\n01234");
+        assertNull(decoder.nextRequest(false));
+
+        feed(decoder, "56789");
+        HttpRequest put = decoder.nextRequest(false);
+        assertNotNull(put);
+        assertEquals("0123456789", put.body());
+    }
+
+    @Test
+    void decodesChunkedBody() throws HttpParseException {
+        HttpDecoder decoder = new HttpDecoder();
+        feed(decoder, "PUT /weather HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhello\r\n6;ext=1\r\n world\r\n0\r\n\r\n");
+
+        HttpRequest put = decoder.nextRequest(false);
+        assertNotNull(put);
+        assertEquals("hello world", put.body());
+    }
+
+    @Test
+    void putWithoutLengthEndsWithTheStream() throws HttpParseException {
+        HttpDecoder decoder = new HttpDecoder();
+        feed(decoder, "PUT /weather HTTP/1.1\r\n\r\n{\"id\": \"A1\"}");
+        assertNull(decoder.nextRequest(false));
+
+        HttpRequest put = decoder.nextRequest(true);
+        assertNotNull(put);
+        assertEquals("{\"id\": \"A1\"}", put.body());
+    }
+
+    @Test
+    void bareRequestLineClosesTheConnection() throws HttpParseException {
+        HttpDecoder decoder = new HttpDecoder();
+        feed(decoder, "GET /weather\r\n");
+
+        HttpRequest get = decoder.nextRequest(false);
+        assertNotNull(get);
+        assertEquals("/weather", get.target());
+        assertFalse(get.keepAlive());
+    }
+
+    @Test
+    void rejectsInvalidContentLength() {
+        HttpDecoder decoder = new HttpDecoder();
+        feed(decoder, "PUT /weather HTTP/1.1\r\nContent-Length: abc\r\n\r\n");
+        assertThrows(HttpParseException.class, () -> decoder.nextRequest(false));
+    }
+
+    @Test
+    void rejectsChunkSizeOverflowingTheBodyLimit() {
+        HttpDecoder decoder = new HttpDecoder();
+        feed(decoder, "PUT /weather HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n1\r\na\r\n7fffffff\r\nbcd\r\n");
+        HttpParseException e = assertThrows(HttpParseException.class, () -> decoder.nextRequest(false));
+        assertEquals(413, e.toResponse().status());
+    }
+
+    @Test
+    void decodesResponse() throws HttpParseException {
+        HttpDecoder decoder = new HttpDecoder();
+        byte[] encoded = HttpResponse.json("{\"id\": \"A1\"}").withHeader("Connection", "close").encode();
+        decoder.feed(encoded, 0, encoded.length);
+
+        HttpResponse response = decoder.nextResponse(false);
+        assertNotNull(response);
+        assertEquals(200, response.status());
+        assertEquals("{\"id\": \"A1\"}", response.body());
+        assertTrue(response.closesConnection());
+    }
+
+    private static void feed(HttpDecoder decoder, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        decoder.feed(bytes, 0, bytes.length);
+    }
+}
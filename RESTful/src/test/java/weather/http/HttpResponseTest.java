@@ -0,0 +1,27 @@
+package weather.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpResponseTest {
+
+    @Test
+    void preEncodedResponseIsEncodedOnce() {
+        HttpResponse response = HttpResponse.json("{\"id\": \"IDS60901\"}").preEncoded();
+        assertSame(response.encode(), response.encode());
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 18\r\n\r\n{\"id\": \"IDS60901\"}",
+                new String(response.encode(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void addedHeaderIsSplicedIntoPreEncodedResponse() {
+        HttpResponse spliced = HttpResponse.json("{\"air_temp\": 13.3}").preEncoded().withHeader("Connection", "close");
+        assertNotNull(spliced.wire());
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 18\r\nConnection: close\r\n\r\n"
+                + "{\"air_temp\": 13.3}", new String(spliced.encode(), StandardCharsets.UTF_8));
+        assertTrue(spliced.closesConnection());
+    }
+}
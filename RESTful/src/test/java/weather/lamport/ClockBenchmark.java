@@ -0,0 +1,123 @@
+package weather.lamport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Measures how the clocks scale when every request thread takes its time from one shared instance: the lock-free
+ * {@link LamportClockImpl} and {@link HybridLogicalClock}, against a clock guarded by a lock as the clock used to be.
+ * Each thread takes a time per operation and merges a received time every 8th operation, as the server does per PUT.
+ * Not a unit test, run it by hand; it reports operations per second for 1 to 64 threads.
+ * <pre>
+ * java -cp ... weather.lamport.ClockBenchmark [secondsPerRun]
+ * </pre>
+ */
+class ClockBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    // Keeps the JIT from dropping the clock calls whose results are otherwise unused
+    static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        long runMillis = TimeUnit.SECONDS.toMillis(args.length > 0 ? Long.parseLong(args[0]) : 2);
+
+        System.out.printf("%-8s %16s %16s %16s%n", "threads", "locked ops/s", "lamport ops/s", "hybrid ops/s");
+        for (int threads : THREADS) {
+            double locked = run(threads, runMillis, () -> {
+                LockedClock clock = new LockedClock();
+                return received -> (received < 0) ? clock.incrementAndGet() : clock.update((int) received);
+            });
+            double lamport = run(threads, runMillis, () -> {
+                LamportClockImpl clock = new LamportClockImpl();
+                return received -> {
+                    if (received < 0) {
+                        return clock.incrementAndGet();
+                    }
+                    clock.update((int) received);
+                    return 0;
+                };
+            });
+            double hybrid = run(threads, runMillis, () -> {
+                HybridLogicalClock clock = new HybridLogicalClock();
+                return received -> (received < 0) ? clock.now() : clock.update(received);
+            });
+            System.out.printf("%-8d %,16.0f %,16.0f %,16.0f%n", threads, locked, lamport, hybrid);
+        }
+    }
+
+    // One clock operation: a new time for -1, otherwise merging the given received time
+    private interface Operation {
+        long apply(long received);
+    }
+
+    private static double run(int threads, long runMillis, Supplier<Operation> clocks) throws InterruptedException {
+        // Warm up on a clock of its own, then measure on a fresh one
+        measure(threads, runMillis / 4, clocks.get());
+        return measure(threads, runMillis, clocks.get());
+    }
+
+    private static double measure(int threads, long runMillis, Operation clock) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        LongAdder operations = new LongAdder();
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0;
+                long sum = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    // Check the time only every 256 operations so that reading it does not dominate
+                    for (int i = 0; i < 256; i++) {
+                        sum += clock.apply(((i & 7) == 7) ? (sum & 0xFFFF) : -1);
+                    }
+                    count += 256;
+                }
+                operations.add(count);
+                sink = sum;
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        deadline[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(runMillis);
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum() * 1e9 / (System.nanoTime() - started);
+    }
+
+    // The clock as it was before it became lock-free
+    private static final class LockedClock {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int clock;
+
+        int incrementAndGet() {
+            lock.lock();
+            try {
+                return ++clock;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int update(int otherClock) {
+            lock.lock();
+            try {
+                clock = Math.max(clock, otherClock) + 1;
+                return clock;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
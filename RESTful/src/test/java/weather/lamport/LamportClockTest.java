@@ -0,0 +1,80 @@
+package weather.lamport;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LamportClockTest {
+
+    @Test
+    void concurrentEventsGetDistinctTimes() throws InterruptedException {
+        LamportClockImpl clock = new LamportClockImpl();
+        Set<Long> times = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    times.add(clock.incrementAndGet());
+                    long first = clock.reserve(3);
+                    times.add(first);
+                    times.add(first + 1);
+                    times.add(first + 2);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(320_000, times.size());
+        assertEquals(320_000, clock.getTime());
+
+        clock.update(500_000);
+        assertEquals(500_001, clock.getTime());
+        clock.update(7);
+        assertEquals(500_002, clock.getTime());
+    }
+
+    @Test
+    void keepsCountingPastIntRange() {
+        LamportClockImpl clock = new LamportClockImpl();
+        clock.update(Integer.MAX_VALUE - 2);
+        assertEquals(Integer.MAX_VALUE, clock.incrementAndGet());
+        assertEquals(Integer.MAX_VALUE + 1L, clock.incrementAndGet());
+        assertEquals(Integer.MAX_VALUE + 2L, clock.reserve(2));
+        assertEquals(Integer.MAX_VALUE + 3L, clock.getTime());
+    }
+
+    @Test
+    void hybridTimestampsFollowWallClockAndCausality() {
+        AtomicLong wallClock = new AtomicLong(1_000);
+        HybridLogicalClock clock = new HybridLogicalClock(wallClock::get);
+
+        long first = clock.now();
+        long second = clock.now();
+        assertEquals(1_000, HybridLogicalClock.physicalMillis(first));
+        assertEquals(0, HybridLogicalClock.logical(first));
+        assertEquals(1, HybridLogicalClock.logical(second));
+
+        // A timestamp from a node whose clock is ahead moves this clock past it
+        long received = HybridLogicalClock.lowerBound(1_500) + 3;
+        long afterReceive = clock.update(received);
+        assertTrue(afterReceive > received);
+        assertEquals(1_500, HybridLogicalClock.physicalMillis(afterReceive));
+        assertEquals(4, HybridLogicalClock.logical(afterReceive));
+
+        // Once the wall clock passes it, the logical counter starts over
+        wallClock.set(2_000);
+        long later = clock.now();
+        assertEquals(HybridLogicalClock.lowerBound(2_000), later);
+        assertEquals(later, clock.current());
+
+        // A wall clock going backwards never moves timestamps backwards
+        wallClock.set(10);
+        assertTrue(clock.now() > later);
+    }
+}
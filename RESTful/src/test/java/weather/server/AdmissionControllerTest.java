@@ -0,0 +1,127 @@
+package weather.server;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weather.data.InMemoryWeatherStore;
+import weather.http.HttpRequest;
+import weather.http.HttpResponse;
+import weather.lamport.LamportClockImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+    private static final String BLOCK_PATH = "/block";
+    private static final String FAIL_PATH = "/fail";
+
+    private final CountDownLatch started = new CountDownLatch(2);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Path dataDir;
+    private InMemoryWeatherStore store;
+    private RequestProcessor processor;
+    private AdmissionController admission;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("weather-admission");
+        store = new InMemoryWeatherStore(dataDir.resolve("weatherData.json").toString(), 60_000);
+        // Requests to /block hold their worker until released, requests to /fail throw
+        processor = new RequestProcessor(new LamportClockImpl(), store) {
+            @Override
+            public void dispatch(HttpRequest request, Consumer<HttpResponse> callback) {
+                if (request.target().equals(BLOCK_PATH)) {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    callback.accept(HttpResponse.of(200, "OK"));
+                    return;
+                }
+                if (request.target().equals(FAIL_PATH)) {
+                    throw request.method().equals("PUT") ? new IllegalStateException("broken")
+                            : new IllegalArgumentException("bad");
+                }
+                super.dispatch(request, callback);
+            }
+        };
+        // One worker and one queue slot per pool
+        admission = new AdmissionController(processor, new WorkerPoolConfig(1, 1, 1, 1, 7));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        release.countDown();
+        admission.shutdown();
+        processor.close();
+        store.close();
+        Files.deleteIfExists(dataDir.resolve("weatherData.json"));
+        Files.deleteIfExists(dataDir);
+    }
+
+    @Test
+    void shedsRequestsOnceWorkerAndQueueAreBusy() throws Exception {
+        CompletableFuture<HttpResponse> blockedPut = submit(request("PUT", BLOCK_PATH));
+        CompletableFuture<HttpResponse> blockedGet = submit(request("GET", BLOCK_PATH));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<HttpResponse> queuedPut = submit(request("PUT", "/weather"));
+        CompletableFuture<HttpResponse> queuedGet = submit(request("GET", "/weather"));
+
+        HttpResponse rejectedGet = submit(request("GET", "/weather")).getNow(null);
+        assertNotNull(rejectedGet, "a full queue is answered at once");
+        assertEquals(503, rejectedGet.status());
+        assertEquals("7", rejectedGet.header("Retry-After"));
+        HttpResponse rejectedPut = submit(request("PUT", "/weather")).getNow(null);
+        assertNotNull(rejectedPut);
+        assertEquals(503, rejectedPut.status());
+        assertEquals(1, admission.queryRejected());
+        assertEquals(1, admission.ingestRejected());
+        assertEquals(1, admission.queryQueueDepth());
+        assertEquals(1, admission.ingestQueueDepth());
+
+        // Metrics bypass the pools, so they still answer while both are full
+        JSONObject metrics = new JSONObject(admission.execute(request("GET", "/metrics")).body());
+        assertEquals(1, metrics.getJSONObject("query").getLong("rejected"));
+        assertEquals(1, metrics.getJSONObject("ingest").getInt("queueDepth"));
+        assertEquals(1, metrics.getJSONObject("ingest").getInt("queueCapacity"));
+
+        release.countDown();
+        assertEquals(200, blockedPut.get(5, TimeUnit.SECONDS).status());
+        assertEquals(200, blockedGet.get(5, TimeUnit.SECONDS).status());
+        assertNotEquals(503, queuedPut.get(5, TimeUnit.SECONDS).status());
+        assertNotEquals(503, queuedGet.get(5, TimeUnit.SECONDS).status());
+        assertEquals(1, admission.queryRejected());
+    }
+
+    @Test
+    void answersRequestsWhoseHandlingThrows() {
+        release.countDown();
+        assertEquals(400, admission.execute(request("GET", FAIL_PATH)).status());
+        assertEquals(500, admission.execute(request("PUT", FAIL_PATH)).status());
+        assertEquals(400, admission.execute(request("GET", "/weather?id=%zz")).status());
+        // The workers survive and keep serving
+        assertEquals(204, admission.execute(request("GET", "/weather")).status());
+    }
+
+    private CompletableFuture<HttpResponse> submit(HttpRequest request) {
+        CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+        admission.submit(request, response::complete);
+        return response;
+    }
+
+    private static HttpRequest request(String method, String target) {
+        String body = method.equals("PUT") ? "{\"id\": \"IDS60901\"}" : "";
+        return new HttpRequest(method, target, "HTTP/1.1", Map.of(), body);
+    }
+}
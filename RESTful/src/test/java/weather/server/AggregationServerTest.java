@@ -43,7 +43,7 @@ class AggregationServerTest {
     @Test
     void testHandlePutRequest() throws IOException {
         // Simulate a client sending a PUT request with data
-        String putRequest = "PUT /weather HTTP/1.1\r\nContent-Length: 43\r\n\r\n{ \"id\": \"IDS60901\", \"name\": \"Test Location\" }";
+        String putRequest = "PUT /weather HTTP/1.1\r\nContent-Length: 45\r\n\r\n{ \"id\": \"IDS60901\", \"name\": \"Test Location\" }";
         BufferedReader putIn = new BufferedReader(new StringReader(putRequest));
         when(mockSocket.getInputStream()).thenReturn(new ReaderInputStream(putIn));
         when(mockSocket.getOutputStream()).thenReturn(new WriterOutputStream(outputWriter));
@@ -56,7 +56,7 @@ class AggregationServerTest {
         assertFalse(actualOutput.isEmpty(), "The output should not be empty");
 
         // Validate the response header
-        String expectedResponse = "HTTP/1.1 200 OK\r\n\r\n";
+        String expectedResponse = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n";
         assertEquals(expectedResponse, actualOutput, "The server response should be '200 OK'");
 
         // Validate that the data was stored correctly in the database
@@ -70,7 +70,7 @@ class AggregationServerTest {
         // Simulate the PUT request to store data in the server
         BufferedReader putIn = new BufferedReader(new StringReader("""
                 PUT /weather HTTP/1.1\r
-                Content-Length: 43\r
+                Content-Length: 45\r
                 \r
                 { "id": "IDS60901", "name": "Test Location" }
                 """));
@@ -0,0 +1,69 @@
+package weather.server;
+
+import org.junit.jupiter.api.Test;
+import weather.data.WeatherObservation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestPipelineTest {
+    private final List<String> stored = new CopyOnWriteArrayList<>();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // Stores the station ids, the first batch waits until released
+    private final IngestPipeline.BatchWriter batchWriter = new IngestPipeline.BatchWriter() {
+        @Override
+        public void write(int partition, List<WeatherObservation> batch, int[] status, long[] logicTime) {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                stored.add(batch.get(i).id());
+                status[i] = 200;
+            }
+            Arrays.fill(logicTime, 0, batch.size(), 1);
+        }
+
+        @Override
+        public void remove(int partition, String stationId) {
+        }
+    };
+
+    @Test
+    void storesWhatWasPublishedBeforeCloseAndRejectsTheRest() throws Exception {
+        // Two slots: the writer holds the first PUT, the second fills the ring and the third waits for a slot
+        IngestPipeline pipeline = new IngestPipeline(1, 2, batchWriter);
+        CompletableFuture<Integer> first = submit(pipeline, "IDS1");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> second = submit(pipeline, "IDS2");
+        CompletableFuture<Integer> waiting = CompletableFuture.supplyAsync(() -> submit(pipeline, "IDS3"))
+                .thenCompose(status -> status);
+
+        CompletableFuture<Void> closed = CompletableFuture.runAsync(pipeline::close);
+        assertEquals(503, waiting.get(5, TimeUnit.SECONDS));
+        release.countDown();
+        closed.get(5, TimeUnit.SECONDS);
+
+        assertEquals(200, first.get(5, TimeUnit.SECONDS));
+        assertEquals(200, second.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("IDS1", "IDS2"), stored);
+        assertEquals(503, submit(pipeline, "IDS4").getNow(null));
+    }
+
+    private static CompletableFuture<Integer> submit(IngestPipeline pipeline, String stationId) {
+        CompletableFuture<Integer> status = new CompletableFuture<>();
+        pipeline.submit(List.of(WeatherObservation.fromContent("{\"id\": \"" + stationId + "\"}")),
+                put -> status.complete(put.status(0)));
+        return status;
+    }
+}
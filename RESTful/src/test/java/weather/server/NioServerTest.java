@@ -0,0 +1,143 @@
+package weather.server;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weather.data.InMemoryWeatherStore;
+import weather.lamport.LamportClockImpl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Talks HTTP to a real NIO server over a local socket.
+ */
+class NioServerTest {
+    private Path dataDir;
+    private InMemoryWeatherStore store;
+    private RequestProcessor processor;
+    private AdmissionController admission;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private Thread serverThread;
+    private int port;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("weather-nio");
+        store = new InMemoryWeatherStore(dataDir.resolve("weatherData.json").toString(), 60_000);
+        processor = new RequestProcessor(new LamportClockImpl(), store);
+        admission = new AdmissionController(processor, WorkerPoolConfig.defaults());
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+        NioServer server = new NioServer(new ServerConfig("localhost", port, 50, ServerMode.NIO), admission, running);
+        serverThread = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, "nio-server-test");
+        serverThread.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        running.set(false);
+        serverThread.join(5000);
+        admission.shutdown();
+        processor.close();
+        store.close();
+        Files.deleteIfExists(dataDir.resolve("weatherData.json"));
+        Files.deleteIfExists(dataDir);
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrderOnOneConnection() throws Exception {
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String body = "{\"id\": \"IDS60901\", \"air_temp\": 13.3}";
+
+            // Both requests go out in one write, the GET must still see the PUT before it
+            out.write(("PUT /weather HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                    + "Content-Length: " + body.length() + "\r\n\r\n" + body
+                    + "GET /weather?id=IDS60901 HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            Response put = Response.read(in);
+            assertTrue(put.status() == 200 || put.status() == 201, "PUT answered with " + put.status());
+            Response get = Response.read(in);
+            assertEquals(200, get.status());
+            assertEquals(13.3, new JSONObject(get.body()).getDouble("air_temp"));
+
+            // The connection stays open for a later request, which asks to close it
+            out.write("GET /weather/IDS60901 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            Response history = Response.read(in);
+            assertEquals(200, history.status());
+            assertEquals(-1, in.read(), "the server closes the connection after Connection: close");
+        }
+    }
+
+    private Socket connect() throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Socket socket = new Socket("localhost", port);
+                socket.setSoTimeout(5000);
+                return socket;
+            } catch (ConnectException e) {
+                if (attempt == 50) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private record Response(int status, Map<String, String> headers, String body) {
+
+        // Reads one Content-Length framed response
+        static Response read(InputStream in) throws IOException {
+            String statusLine = readLine(in);
+            assertNotNull(statusLine, "connection closed before the response");
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+            byte[] body = in.readNBytes(Integer.parseInt(headers.getOrDefault("content-length", "0")));
+            return new Response(Integer.parseInt(statusLine.split(" ")[1]), headers,
+                    new String(body, StandardCharsets.UTF_8));
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return b == -1 && line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package weather.server;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weather.data.InMemoryWeatherStore;
+import weather.http.HttpRequest;
+import weather.http.HttpResponse;
+import weather.lamport.LamportClockImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestProcessorTest {
+    private Path dataDir;
+    private InMemoryWeatherStore store;
+    private RequestProcessor processor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("weather-processor");
+        store = new InMemoryWeatherStore(dataDir.resolve("weatherData.json").toString(), 60_000);
+        processor = new RequestProcessor(new LamportClockImpl(), store);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        processor.close();
+        store.close();
+        Files.deleteIfExists(dataDir.resolve("weatherData.json"));
+        Files.deleteIfExists(dataDir);
+    }
+
+    @Test
+    void answersLatestObservationOfStation() {
+        put("{\"id\": \"IDS60901\", \"air_temp\": 13.3}");
+        put("{\"id\": \"IDS60902\", \"air_temp\": 10.1}");
+        put("{\"id\": \"IDS60901\", \"air_temp\": 14.0}");
+
+        HttpResponse latest = processor.dispatch(get("/weather?id=IDS60901"));
+        assertEquals(200, latest.status());
+        assertEquals(14.0, new JSONObject(latest.body()).getDouble("air_temp"));
+        assertEquals(404, processor.dispatch(get("/weather?id=IDS00000")).status());
+    }
+
+    @Test
+    void paginatesWithCursor() {
+        for (int i = 0; i < 5; i++) {
+            put("{\"id\": \"IDS6090" + i + "\", \"air_temp\": " + i + "}");
+        }
+
+        JSONObject first = new JSONObject(processor.dispatch(get("/weather?limit=3")).body());
+        assertEquals(3, first.getJSONArray("observations").length());
+        JSONObject second = new JSONObject(processor.dispatch(get("/weather?cursor=" + first.getString("nextCursor") + "&limit=3")).body());
+        JSONArray rest = second.getJSONArray("observations");
+        assertEquals(2, rest.length());
+        assertEquals("IDS60903", rest.getJSONObject(0).getString("id"));
+
+        // Observations stored later show up behind the last cursor
+        put("{\"id\": \"IDS60905\", \"air_temp\": 5}");
+        JSONObject third = new JSONObject(processor.dispatch(get("/weather?cursor=" + second.getString("nextCursor"))).body());
+        assertEquals(1, third.getJSONArray("observations").length());
+
+        assertEquals(400, processor.dispatch(get("/weather?cursor=not-a-cursor")).status());
+        assertEquals(400, processor.dispatch(get("/weather?limit=0")).status());
+    }
+
+    @Test
+    void concurrentRoundRobinGetsReturnEachObservationOnce() throws InterruptedException {
+        int observations = 50;
+        for (int i = 0; i < observations; i++) {
+            put("{\"id\": \"IDS" + i + "\"}");
+        }
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < observations; i++) {
+            executor.execute(() -> seen.add(processor.dispatch(get("/weather")).body()));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(observations, seen.size());
+    }
+
+    @Test
+    void storesBatchWithOneClockAdvanceAndPerItemStatus() {
+        LamportClockImpl clock = new LamportClockImpl();
+        processor = new RequestProcessor(clock, store);
+        String ndjson = "{\"id\": \"IDS1\", \"air_temp\": 1}\n\n{not json\n{\"data\": {\"id\": \"IDS2\"}, \"LogicTimestamp\": 4}\n";
+
+        HttpResponse response = processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1",
+                Map.of("Content-Type", "application/x-ndjson"), ndjson));
+
+        assertEquals(200, response.status());
+        JSONObject result = new JSONObject(response.body());
+        assertEquals(2, result.getInt("stored"));
+        assertEquals(1, result.getInt("failed"));
+        JSONArray items = result.getJSONArray("items");
+        assertEquals(List.of(200, 400, 200), List.of(items.getJSONObject(0).getInt("status"),
+                items.getJSONObject(1).getInt("status"), items.getJSONObject(2).getInt("status")));
+        // Receiving LogicTimestamp 4 moves the clock to 5, the batch then takes 6 and 7
+        assertEquals(7, items.getJSONObject(2).getInt("logicTime"));
+        assertEquals(7, clock.getTime());
+        assertEquals(2, store.count());
+        assertEquals(200, processor.dispatch(get("/weather?id=IDS2")).status());
+
+        // A JSON array is a batch too, without a content type
+        HttpResponse array = processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1", Map.of(),
+                "[{\"id\": \"IDS3\"}, 5]"));
+        assertEquals(200, array.status());
+        assertEquals(400, new JSONObject(array.body()).getJSONArray("items").getJSONObject(1).getInt("status"));
+        assertEquals(3, store.count());
+        assertEquals(400, processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1", Map.of(), "[1, 2")).status());
+    }
+
+    @Test
+    void answersUnchangedDataWithNotModified() {
+        put("{\"id\": \"IDS60901\", \"air_temp\": 13.3}");
+        HttpResponse latest = processor.dispatch(get("/weather?id=IDS60901"));
+        String etag = latest.header("ETag");
+        assertNotNull(etag);
+
+        HttpResponse unchanged = processor.dispatch(conditionalGet("/weather?id=IDS60901", etag));
+        assertEquals(304, unchanged.status());
+        assertNull(unchanged.body());
+        assertEquals(etag, unchanged.header("ETag"));
+        assertEquals(304, processor.dispatch(conditionalGet("/weather", "\"other\", W/" + etag)).status());
+
+        HttpResponse page = processor.dispatch(get("/weather?limit=10"));
+        assertEquals(304, processor.dispatch(conditionalGet("/weather?limit=10", page.header("ETag"))).status());
+
+        // A new observation of the station changes both its version and the dataset's
+        put("{\"id\": \"IDS60901\", \"air_temp\": 14.0}");
+        HttpResponse changed = processor.dispatch(conditionalGet("/weather?id=IDS60901", etag));
+        assertEquals(200, changed.status());
+        assertEquals(14.0, new JSONObject(changed.body()).getDouble("air_temp"));
+        assertNotEquals(etag, changed.header("ETag"));
+        assertEquals(200, processor.dispatch(conditionalGet("/weather?limit=10", page.header("ETag"))).status());
+    }
+
+    @Test
+    void pushesObservationsToSubscribersAndDisconnectsSlowOnes() throws InterruptedException {
+        processor = new RequestProcessor(new LamportClockImpl(), store, new StreamConfig(2, 15, 60));
+        Subscription all = processor.subscribe(get("/weather/stream"));
+        Subscription one = processor.subscribe(get("/weather/stream?id=IDS60902"));
+        assertTrue(RequestProcessor.isStream(get("/weather/stream?id=IDS60902")));
+
+        put("{\"id\": \"IDS60901\", \"air_temp\": 13.3}");
+        put("{\"id\": \"IDS60902\", \"air_temp\": 10.1}");
+        Subscription.Event first = all.poll(1, TimeUnit.SECONDS);
+        assertEquals("IDS60901", new JSONObject(first.json()).getString("id"));
+        Subscription.Event station = one.poll(1, TimeUnit.SECONDS);
+        assertEquals("IDS60902", new JSONObject(station.json()).getString("id"));
+        assertTrue(station.version() > first.version());
+
+        // The buffer of two holds one event still, a third observation overflows it
+        put("{\"id\": \"IDS60903\", \"air_temp\": 9.0}");
+        put("{\"id\": \"IDS60904\", \"air_temp\": 8.0}");
+        assertTrue(all.isClosed());
+        assertTrue(all.overflowed());
+        assertEquals(2, all.drain(10).size());
+        assertNull(all.poll(1, TimeUnit.SECONDS));
+        assertEquals(1, processor.broker().overflowed());
+        assertEquals(1, processor.broker().subscribers());
+
+        one.close();
+        assertEquals(0, processor.broker().subscribers());
+    }
+
+    @Test
+    void answersLongPollOnceDataChangesOrWaitPassed() throws Exception {
+        CompletableFuture<HttpResponse> waiting = new CompletableFuture<>();
+        processor.dispatch(get("/weather?id=IDS60901&wait=10"), waiting::complete);
+        assertFalse(waiting.isDone());
+
+        put("{\"id\": \"IDS60901\", \"air_temp\": 13.3}");
+        HttpResponse changed = waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(200, changed.status());
+        assertEquals(13.3, new JSONObject(changed.body()).getDouble("air_temp"));
+
+        // Nothing newer than the client's ETag arrives, the wait ends with 304
+        CompletableFuture<HttpResponse> unchanged = new CompletableFuture<>();
+        processor.dispatch(conditionalGet("/weather?id=IDS60901&wait=1", changed.header("ETag")), unchanged::complete);
+        assertEquals(304, unchanged.get(5, TimeUnit.SECONDS).status());
+
+        CompletableFuture<HttpResponse> invalid = new CompletableFuture<>();
+        processor.dispatch(get("/weather?id=IDS60901&wait=soon"), invalid::complete);
+        assertEquals(400, invalid.getNow(null).status());
+    }
+
+    @Test
+    void appliesStationUpdatesInLamportOrderWithinWindow() {
+        LamportClockImpl clock = new LamportClockImpl();
+        processor = new RequestProcessor(clock, store, StreamConfig.defaults(), new IngestConfig(2, 1, 1024));
+        put(stamped("IDS60901", 13.3, 10));
+        assertTrue(clock.getTime() > 10);
+
+        // Arrives after the update stamped 10 but was sent before it: stored behind it, not as the latest
+        put(stamped("IDS60901", 12.0, 8));
+        assertEquals(13.3, new JSONObject(processor.dispatch(get("/weather?id=IDS60901")).body())
+                .getJSONObject("data").getDouble("air_temp"));
+        assertEquals(List.of(8L, 10L), store.readStation("IDS60901").stream()
+                .map(stored -> stored.observation().logicTimestamp()).toList());
+
+        // The window holds the last two updates, 8 and 10 now; 11 and 12 push them out and 9 is too late
+        put(stamped("IDS60901", 14.0, 11));
+        put(stamped("IDS60901", 15.0, 12));
+        assertEquals(409, processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1", Map.of(),
+                stamped("IDS60901", 9.0, 9))).status());
+        assertEquals(15.0, store.readLatest("IDS60901").observation().airTemp());
+
+        // In a batch only the item too late is rejected, other stations are not held up
+        HttpResponse batch = processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1",
+                Map.of("Content-Type", "application/x-ndjson"),
+                stamped("IDS60901", 9.5, 9) + "\n" + stamped("IDS60902", 10.1, 3) + "\n"));
+        JSONArray items = new JSONObject(batch.body()).getJSONArray("items");
+        assertEquals(409, items.getJSONObject(0).getInt("status"));
+        assertEquals(200, items.getJSONObject(1).getInt("status"));
+        assertEquals(4, store.readStation("IDS60901").size());
+    }
+
+    @Test
+    void neverTakesAnUpdateStampedBelowTheHistoryAsTheLatest() {
+        processor = new RequestProcessor(new LamportClockImpl(), store, StreamConfig.defaults(),
+                new IngestConfig(2, 1, 1024));
+        put(stamped("IDS60901", 13.3, 1000));
+        put(stamped("IDS60901", 14.0, 1001));
+
+        // A content server whose clock started over at 1, e.g. restarted without its spool: behind the history
+        assertEquals(409, processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1", Map.of(),
+                stamped("IDS60901", 15.0, 1))).status());
+        assertEquals(14.0, store.readLatest("IDS60901").observation().airTemp());
+
+        // Once it stamps after the server clock of the response, its update is the latest again
+        HttpResponse response = processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1", Map.of(),
+                stamped("IDS60902", 1.0, 1)));
+        LamportClockImpl contentClock = new LamportClockImpl();
+        contentClock.update(Long.parseLong(response.header("Lamport-Clock")));
+        put(stamped("IDS60901", 15.0, contentClock.incrementAndGet()));
+        assertEquals(15.0, new JSONObject(processor.dispatch(get("/weather?id=IDS60901")).body())
+                .getJSONObject("data").getDouble("air_temp"));
+    }
+
+    @Test
+    void removesStationsOfExpiredContentServersAndKeepsRecentUpdates() throws InterruptedException {
+        processor.close();
+        store.close();
+        store = new InMemoryWeatherStore(dataDir.resolve("weatherData.json").toString(), 60_000, 2);
+        processor = new RequestProcessor(new LamportClockImpl(), store, StreamConfig.defaults(), IngestConfig.defaults(),
+                new RetentionConfig(2, 300, 20));
+        for (int i = 0; i < 4; i++) {
+            put("content-1", "{\"id\": \"IDS60901\", \"air_temp\": " + i + "}");
+        }
+        put("content-2", "{\"id\": \"IDS60902\", \"air_temp\": 10.1}");
+        assertEquals(2, store.readStation("IDS60901").size());
+        JSONObject page = new JSONObject(processor.dispatch(get("/weather?limit=10")).body());
+        assertEquals(3, page.getJSONArray("observations").length());
+
+        // content-2 keeps sending, content-1 went silent
+        long deadline = System.currentTimeMillis() + 5_000;
+        // The response cache drops the station just after the store
+        while (processor.dispatch(get("/weather?id=IDS60901")).status() != 404
+                && System.currentTimeMillis() < deadline) {
+            put("content-2", "{\"id\": \"IDS60902\", \"air_temp\": 10.1}");
+            Thread.sleep(50);
+        }
+        assertNull(store.readLatest("IDS60901"));
+        assertEquals(404, processor.dispatch(get("/weather?id=IDS60901")).status());
+        assertEquals(200, processor.dispatch(get("/weather?id=IDS60902")).status());
+        assertEquals(2, store.count());
+        assertEquals(2, new JSONObject(processor.dispatch(get("/weather?limit=10")).body())
+                .getJSONArray("observations").length());
+    }
+
+    @Test
+    void changesTheDatasetETagWhenAStationExpires() throws InterruptedException {
+        processor.close();
+        processor = new RequestProcessor(new LamportClockImpl(), store, StreamConfig.defaults(), IngestConfig.defaults(),
+                new RetentionConfig(0, 300, 20));
+        put("content-1", "{\"id\": \"IDS60901\", \"air_temp\": 13.3}");
+        put("content-2", "{\"id\": \"IDS60902\", \"air_temp\": 10.1}");
+        String etag = processor.dispatch(get("/weather?limit=10")).header("ETag");
+        assertEquals(304, processor.dispatch(conditionalGet("/weather?limit=10", etag)).status());
+
+        // Nothing is stored meanwhile, only the removal of both stations changes the dataset
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (processor.dispatch(get("/weather?id=IDS60902")).status() != 404
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        HttpResponse expired = processor.dispatch(conditionalGet("/weather?limit=10", etag));
+        assertEquals(200, expired.status());
+        assertNotEquals(etag, expired.header("ETag"));
+        assertEquals(0, new JSONObject(expired.body()).getJSONArray("observations").length());
+    }
+
+    @Test
+    void answersTheHistoryOfAStationWithinATimeRange() {
+        long before = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            put("{\"id\": \"IDS60901\", \"air_temp\": " + i + "}");
+        }
+        put("{\"id\": \"IDS60902\", \"air_temp\": 10.1}");
+        long after = System.currentTimeMillis();
+
+        JSONObject history = new JSONObject(processor.dispatch(get("/weather/IDS60901?from=" + before + "&to=" + after))
+                .body());
+        JSONArray observations = history.getJSONArray("observations");
+        assertEquals(5, observations.length());
+        assertEquals(0.0, observations.getJSONObject(0).getJSONObject("observation").getDouble("air_temp"));
+        long time = observations.getJSONObject(4).getLong("time");
+        assertTrue(time >= before && time <= after);
+
+        // Durations count back from now, the window holds nothing older than the first observation
+        assertEquals(5, new JSONObject(processor.dispatch(get("/weather/IDS60901?from=PT6H")).body())
+                .getJSONArray("observations").length());
+        assertEquals(0, new JSONObject(processor.dispatch(get("/weather/IDS60901?to=" + (before - 1))).body())
+                .getJSONArray("observations").length());
+        assertEquals(1, new JSONObject(processor.dispatch(get("/weather/IDS60902?from=2000-01-01T00:00:00Z")).body())
+                .getJSONArray("observations").length());
+        assertEquals(404, processor.dispatch(get("/weather/IDS00000")).status());
+        assertEquals(400, processor.dispatch(get("/weather/IDS60901?from=yesterday")).status());
+        assertEquals(400, processor.dispatch(get("/weather/IDS60901?from=" + after + "&to=" + before)).status());
+        assertEquals(400, processor.dispatch(get("/weather/%zz")).status());
+        assertEquals(400, processor.dispatch(get("/weather/IDS60901?from=%zz")).status());
+    }
+
+    @Test
+    void keepsServingAfterLogicTimestampsBeyondIntRange() {
+        // Used to overflow the server clock and fail every later request
+        put(stamped("IDS60901", 13.3, Integer.MAX_VALUE));
+        HttpResponse response = processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1", Map.of(),
+                stamped("IDS60901", 14.0, Integer.MAX_VALUE + 1L)));
+        assertEquals(200, response.status());
+        assertTrue(Long.parseLong(response.header("Lamport-Clock")) > Integer.MAX_VALUE + 1L);
+        assertEquals(200, processor.dispatch(get("/weather")).status());
+
+        // Times that would leave the clock no room are rejected, alone or as a batch item
+        assertEquals(400, processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1", Map.of(),
+                stamped("IDS60902", 1.0, Long.MAX_VALUE))).status());
+        assertEquals(400, processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1", Map.of(),
+                stamped("IDS60902", 1.0, -5))).status());
+        HttpResponse batch = processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1",
+                Map.of("Content-Type", "application/x-ndjson"),
+                stamped("IDS60902", 1.0, Long.MAX_VALUE) + "\n" + stamped("IDS60903", 2.0, 5) + "\n"));
+        JSONArray items = new JSONObject(batch.body()).getJSONArray("items");
+        assertEquals(400, items.getJSONObject(0).getInt("status"));
+        assertEquals(200, items.getJSONObject(1).getInt("status"));
+        assertNull(store.readLatest("IDS60902"));
+    }
+
+    @Test
+    void rejectsMalformedEscapesInTheQuery() {
+        put("{\"id\": \"IDS60901\", \"air_temp\": 13.3}");
+        assertEquals(400, processor.dispatch(get("/weather?id=%zz")).status());
+        assertEquals(400, processor.dispatch(get("/weather?cursor=%")).status());
+
+        CompletableFuture<HttpResponse> longPoll = new CompletableFuture<>();
+        processor.dispatch(get("/weather?id=%zz&wait=10"), longPoll::complete);
+        assertEquals(400, longPoll.getNow(null).status());
+
+        // Not subscribed, it is answered like any other GET
+        assertFalse(RequestProcessor.isStream(get("/weather/stream?id=%zz")));
+        assertEquals(400, processor.dispatch(get("/weather/stream?id=%zz")).status());
+        assertEquals(200, processor.dispatch(get("/weather?id=IDS60901")).status());
+    }
+
+    private static String stamped(String stationId, double airTemp, long logicTimestamp) {
+        return "{\"data\": {\"id\": \"" + stationId + "\", \"air_temp\": " + airTemp + "}, \"LogicTimestamp\": "
+                + logicTimestamp + "}";
+    }
+
+    private void put(String body) {
+        assertEquals(200, processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1", Map.of(), body)).status());
+    }
+
+    private void put(String contentServer, String body) {
+        assertEquals(200, processor.dispatch(new HttpRequest("PUT", "/weather", "HTTP/1.1",
+                Map.of("Content-Server-Id", contentServer), body)).status());
+    }
+
+    private static HttpRequest get(String target) {
+        return new HttpRequest("GET", target, "HTTP/1.1", Map.of(), "");
+    }
+
+    private static HttpRequest conditionalGet(String target, String ifNoneMatch) {
+        return new HttpRequest("GET", target, "HTTP/1.1", Map.of("If-None-Match", ifNoneMatch), "");
+    }
+}
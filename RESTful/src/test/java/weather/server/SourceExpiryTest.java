@@ -0,0 +1,59 @@
+package weather.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceExpiryTest {
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final List<String> expired = new ArrayList<>();
+
+    @Test
+    void expiresOnlyTheStationsOfSilentSources() {
+        try (SourceExpiry expiry = new SourceExpiry(30_000, 250, now::get, expired::add)) {
+            expiry.seen("content-1", "IDS60901");
+            expiry.seen("content-2", "IDS60902");
+            now.addAndGet(20_000);
+            expiry.seen("content-2", "IDS60902");
+            expiry.tick();
+            assertEquals(List.of(), expired);
+
+            now.addAndGet(10_250);
+            expiry.tick();
+            assertEquals(List.of("IDS60901"), expired);
+            assertFalse(expiry.owned("IDS60901"));
+            assertTrue(expiry.owned("IDS60902"));
+            assertEquals(1, expiry.sources());
+
+            now.addAndGet(20_000);
+            expiry.tick();
+            assertEquals(List.of("IDS60901", "IDS60902"), expired);
+            assertEquals(0, expiry.sources());
+        }
+    }
+
+    @Test
+    void stationMovesToTheSourceWhichSentItLast() {
+        try (SourceExpiry expiry = new SourceExpiry(30_000, 250, now::get, expired::add)) {
+            expiry.seen("content-1", "IDS60901");
+            now.addAndGet(10_000);
+            expiry.seen("content-2", "IDS60901");
+            now.addAndGet(20_250);
+            expiry.tick();
+            // content-1 expired, but the station was taken over by content-2
+            assertEquals(List.of(), expired);
+            assertTrue(expiry.owned("IDS60901"));
+
+            // An expired source which sends again starts over
+            expiry.seen("content-1", "IDS60903");
+            now.addAndGet(10_000);
+            expiry.tick();
+            assertEquals(List.of("IDS60901"), expired);
+            assertTrue(expiry.owned("IDS60903"));
+        }
+    }
+}
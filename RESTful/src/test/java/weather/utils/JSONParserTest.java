@@ -1,7 +1,18 @@
 package weather.utils;
 
+import org.json.JSONArray;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class JSONParserTest {
@@ -15,7 +26,41 @@ class JSONParserTest {
     }
 
     @Test
-    void appendJsonObject() {
+    void appendJsonObject() throws Exception {
+        Path dataDir = Files.createTempDirectory("weather-json");
+        Path dataFile = dataDir.resolve("weatherData.json");
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int writer = w;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    JSONParser.appendJsonObject("{\"id\": \"S" + writer + "\", \"air_temp\": " + i + "}", dataFile.toString());
+                }
+                return null;
+            }));
+        }
+        // Readers never see a half written file
+        Future<?> reader = executor.submit(() -> {
+            while (!writers.stream().allMatch(Future::isDone)) {
+                if (Files.exists(dataFile)) {
+                    new JSONArray(Files.readString(dataFile));
+                }
+            }
+            return null;
+        });
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        reader.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // No append overwrote another
+        assertEquals(200, new JSONArray(Files.readString(dataFile)).length());
+        JSONParser.clearJsonArray(dataFile.toString());
+        assertEquals(0, new JSONArray(Files.readString(dataFile)).length());
+        Files.delete(dataFile);
+        Files.delete(dataDir);
     }
 
     @Test
@@ -25,4 +70,14 @@ class JSONParserTest {
     @Test
     void getJsonArrayLength() {
     }
-}
\ No newline at end of file
+
+    @Test
+    void toCompactJson() {
+        String pretty = "{\n    \"id\": \"IDS60901\",\n    \"name\": \"Adelaide (West Terrace /  ngayirdapira)\",\n"
+                + "    \"air_temp\": 13.3,\n    \"wind\": [1, 2.5e3, true, null]\n}";
+        assertEquals("{\"id\":\"IDS60901\",\"name\":\"Adelaide (West Terrace /  ngayirdapira)\",\"air_temp\":13.3,"
+                + "\"wind\":[1,2.5e3,true,null]}", new String(JSONParser.toCompactJson(pretty), StandardCharsets.UTF_8));
+        // Plain key:value text is wrapped like ensureJsonFormat does
+        assertEquals("{\"id\":\"IDS60901\"}", new String(JSONParser.toCompactJson("id:IDS60901"), StandardCharsets.UTF_8));
+    }
+}
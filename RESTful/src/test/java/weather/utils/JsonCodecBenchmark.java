@@ -0,0 +1,88 @@
+package weather.utils;
+
+import org.json.JSONObject;
+import weather.data.WeatherObservation;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+
+/**
+ * Compares the PUT path JSON work of org.json with the streaming {@link JsonTokenizer}/{@link JsonWriter} codec behind
+ * {@link WeatherObservation}: decoding an observation, finding its station id and building the log record.
+ * Not a unit test, run it by hand; it reports throughput and bytes allocated per observation.
+ * <pre>
+ * java -cp ... weather.utils.JsonCodecBenchmark [iterations]
+ * </pre>
+ */
+class JsonCodecBenchmark {
+    // An observation as the content server sends it
+    private static final String OBSERVATION = """
+            {
+                "data": {
+                    "id": "IDS60901",
+                    "name": "Adelaide (West Terrace /  ngayirdapira)",
+                    "state": "SA",
+                    "time_zone": "CST",
+                    "lat": -34.9,
+                    "lon": 138.6,
+                    "local_date_time": "15/04:00pm",
+                    "local_date_time_full": "20230715160000",
+                    "air_temp": 13.3,
+                    "apparent_t": 9.5,
+                    "cloud": "Partly cloudy",
+                    "dewpt": 5.7,
+                    "press": 1023.9,
+                    "rel_hum": 60,
+                    "wind_dir": "S",
+                    "wind_spd_kmh": 15,
+                    "wind_spd_kt": 8
+                },
+                "SystemTimestamp": 1728000000000,
+                "LogicTimestamp": 7
+            }""";
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        IntSupplier orgJson = () -> {
+            JSONObject observation = JSONParser.ensureJsonFormat(OBSERVATION);
+            String stationId = JSONParser.extractStationId(observation);
+            String stored = observation.toString(4);
+            String record = new JSONObject().put("logicTime", 7).put("observation", observation).toString();
+            return stationId.length() + stored.length() + record.length();
+        };
+        IntSupplier streaming = () -> {
+            WeatherObservation observation = WeatherObservation.fromContent(OBSERVATION);
+            byte[] stored = observation.encode();
+            byte[] record = new JsonWriter(stored.length + 40).beginObject().name("logicTime").value(7)
+                    .name("observation").rawValue(stored).endObject().toByteArray();
+            return observation.id().length() + stored.length + record.length;
+        };
+
+        // Warm up both paths before measuring
+        run(orgJson, iterations / 10);
+        run(streaming, iterations / 10);
+        report("org.json", orgJson, iterations);
+        report("streaming", streaming, iterations);
+    }
+
+    private static void report(String name, IntSupplier operation, int iterations) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long checksum = run(operation, iterations);
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-10s %,12.0f ops/s %,10d bytes/op (checksum %d)%n",
+                name, iterations * 1e9 / elapsed, allocated / iterations, checksum);
+    }
+
+    private static long run(IntSupplier operation, int iterations) {
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            checksum += operation.getAsInt();
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,65 @@
+package weather.utils;
+
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonTokenizerTest {
+
+    @Test
+    void readsTokensInPlace() {
+        JsonTokenizer tokenizer = tokenizer("{\"id\": \"IDS\\u0036\", \"logicTime\": 42, \"ok\": false}");
+        assertEquals(JsonTokenizer.Token.BEGIN_OBJECT, tokenizer.next());
+        assertEquals(JsonTokenizer.Token.NAME, tokenizer.next());
+        assertTrue(tokenizer.nameEquals("id"));
+        assertEquals(JsonTokenizer.Token.STRING, tokenizer.next());
+        assertEquals("IDS6", tokenizer.stringValue());
+        assertEquals(JsonTokenizer.Token.NAME, tokenizer.next());
+        assertEquals(JsonTokenizer.Token.NUMBER, tokenizer.next());
+        assertEquals(42, tokenizer.intValue());
+        assertEquals(JsonTokenizer.Token.NAME, tokenizer.next());
+        assertEquals(JsonTokenizer.Token.FALSE, tokenizer.next());
+        assertEquals(JsonTokenizer.Token.END_OBJECT, tokenizer.next());
+        assertEquals(JsonTokenizer.Token.END, tokenizer.next());
+    }
+
+    @Test
+    void rejectsInvalidJson() {
+        for (String invalid : new String[]{"{\"a\" 1}", "{\"a\":1,}", "[1 2]", "{\"a\":01}", "{\"a\":\"x}", "{} {}", "{\"a\":tru}", "["}) {
+            JsonTokenizer tokenizer = tokenizer(invalid);
+            assertThrows(JSONException.class, () -> {
+                while (tokenizer.next() != JsonTokenizer.Token.END) {
+                    // Read until the error
+                }
+            }, invalid);
+        }
+    }
+
+    @Test
+    void writerEscapesStrings() {
+        String json = new JsonWriter().beginObject().name("text").value("a\"b\\c\né€").name("values").beginArray()
+                .value(1).value(2.5).value(true).nullValue().endArray().endObject().toString();
+        assertEquals("{\"text\":\"a\\\"b\\\\c\\né€\",\"values\":[1,2.5,true,null]}", json);
+    }
+
+    @Test
+    void readsLongsUpToTheirRange() {
+        JsonTokenizer tokenizer = tokenizer("[2147483648, -9223372036854775808, 9223372036854775808, 1.5]");
+        tokenizer.next();
+        tokenizer.next();
+        assertEquals(2_147_483_648L, tokenizer.longValue());
+        tokenizer.next();
+        assertEquals(Long.MIN_VALUE, tokenizer.longValue());
+        tokenizer.next();
+        assertThrows(JSONException.class, tokenizer::longValue);
+        tokenizer.next();
+        assertThrows(JSONException.class, tokenizer::longValue);
+    }
+
+    private static JsonTokenizer tokenizer(String json) {
+        return new JsonTokenizer(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
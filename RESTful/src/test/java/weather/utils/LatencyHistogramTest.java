@@ -0,0 +1,72 @@
+package weather.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void reportsPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 to 100,000 microseconds, in nanoseconds
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.recordValue(micros * 1000);
+        }
+        assertEquals(100_000, histogram.totalCount());
+        assertEquals(1000, histogram.min());
+        assertEquals(100_000_000, histogram.max());
+        assertWithinPrecision(50_000_000, histogram.valueAtPercentile(50));
+        assertWithinPrecision(99_000_000, histogram.valueAtPercentile(99));
+        assertWithinPrecision(99_900_000, histogram.valueAtPercentile(99.9));
+        assertEquals(100_000_000, histogram.valueAtPercentile(100));
+        assertEquals(50_000_500, histogram.mean(), 1);
+    }
+
+    @Test
+    void addsHistogramsAndClampsLargeValues() {
+        LatencyHistogram first = new LatencyHistogram(10_000);
+        LatencyHistogram second = new LatencyHistogram(10_000);
+        for (int i = 0; i < 99; i++) {
+            first.recordValue(5);
+        }
+        second.recordValue(1_000_000);
+        first.add(second);
+
+        assertEquals(100, first.totalCount());
+        assertEquals(5, first.valueAtPercentile(99));
+        assertEquals(10_000, first.valueAtPercentile(99.9));
+        assertEquals(10_000, first.max());
+        assertThrows(IllegalArgumentException.class, () -> first.recordValue(-1));
+        assertThrows(IllegalArgumentException.class, () -> first.add(new LatencyHistogram()));
+
+        first.reset();
+        assertEquals(0, first.totalCount());
+        assertEquals(0, first.valueAtPercentile(50));
+    }
+
+    @Test
+    void countsEveryValueRecordedConcurrently() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (long value = 1; value <= 100_000; value++) {
+                    histogram.recordValue(value);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(800_000, histogram.totalCount());
+        assertEquals(1, histogram.min());
+        assertEquals(100_000, histogram.max());
+        assertWithinPrecision(50_000, histogram.valueAtPercentile(50));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(Math.abs(expected - actual) <= expected / 1000, "expected about " + expected + " but was " + actual);
+    }
+}
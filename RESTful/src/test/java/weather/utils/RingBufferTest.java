@@ -0,0 +1,100 @@
+package weather.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferTest {
+
+    // A reusable ring entry
+    private static final class Entry {
+        private int producer;
+        private int value;
+    }
+
+    @Test
+    void roundsCapacityUpAndWrapsAround() {
+        RingBuffer<Entry> ring = new RingBuffer<>(3, Entry::new);
+        assertEquals(4, ring.capacity());
+        long next = 0;
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 3; i++) {
+                long sequence = ring.claim();
+                ring.get(sequence).value = round * 3 + i;
+                ring.publish(sequence);
+            }
+            assertEquals(3, ring.await(next, ring.capacity(), 0));
+            for (int i = 0; i < 3; i++) {
+                assertEquals(round * 3 + i, ring.get(next + i).value);
+            }
+            ring.release(next + 2);
+            next += 3;
+        }
+        assertEquals(0, ring.await(next, ring.capacity(), TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    @Test
+    void deliversEveryEntryOfConcurrentProducersInTheirOrder() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 20_000;
+        // Much smaller than what is produced, producers wait for the consumer
+        RingBuffer<Entry> ring = new RingBuffer<>(64, Entry::new);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int value = 0; value < perProducer; value++) {
+                    long sequence = ring.claim();
+                    Entry entry = ring.get(sequence);
+                    entry.producer = producer;
+                    entry.value = value;
+                    ring.publish(sequence);
+                }
+            }));
+        }
+
+        int[] expected = new int[producers];
+        long next = 0;
+        while (next < (long) producers * perProducer) {
+            int ready = ring.await(next, ring.capacity(), TimeUnit.SECONDS.toNanos(5));
+            assertTrue(ready > 0, "Consumer starved at " + next);
+            for (int i = 0; i < ready; i++) {
+                Entry entry = ring.get(next + i);
+                assertEquals(expected[entry.producer]++, entry.value);
+            }
+            ring.release(next + ready - 1);
+            next += ready;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int count : expected) {
+            assertEquals(perProducer, count);
+        }
+    }
+
+    @Test
+    void closingStopsClaimsAndReleasesWaitingProducers() throws InterruptedException {
+        RingBuffer<Entry> ring = new RingBuffer<>(2, Entry::new);
+        for (int i = 0; i < ring.capacity(); i++) {
+            ring.publish(ring.claim());
+        }
+        long[] waited = new long[1];
+        Thread producer = Thread.ofPlatform().start(() -> waited[0] = ring.claim());
+
+        ring.close();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(RingBuffer.NO_SEQUENCE, waited[0]);
+        assertEquals(RingBuffer.NO_SEQUENCE, ring.claim());
+        // The entries claimed before are still consumed
+        assertFalse(ring.drained(0));
+        assertEquals(2, ring.await(0, ring.capacity(), 0));
+        ring.release(1);
+        assertTrue(ring.drained(2));
+    }
+}
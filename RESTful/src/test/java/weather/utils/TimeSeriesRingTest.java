@@ -0,0 +1,72 @@
+package weather.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSeriesRingTest {
+
+    @Test
+    void findsRangesAcrossTheWrapAround() {
+        TimeSeriesRing<Integer> ring = new TimeSeriesRing<>(5);
+        assertEquals(List.of(), ring.range(0, Long.MAX_VALUE));
+        for (int i = 1; i <= 8; i++) {
+            ring.append(i * 10L, i);
+        }
+        // 1 to 3 were overwritten, 4 to 8 are kept
+        assertEquals(5, ring.size());
+        assertEquals(List.of(4, 5, 6, 7, 8), values(ring.range(0, Long.MAX_VALUE)));
+        assertEquals(List.of(5, 6), values(ring.range(45, 61)));
+        assertEquals(List.of(6), values(ring.range(60, 70)));
+        assertEquals(List.of(), values(ring.range(61, 69)));
+        assertEquals(List.of(), values(ring.range(90, 100)));
+        assertEquals(70, ring.range(70, 71).get(0).timestamp());
+    }
+
+    @Test
+    void keepsEqualTimestampsAndRejectsOlderOnes() {
+        TimeSeriesRing<String> ring = new TimeSeriesRing<>(4);
+        ring.append(10, "a");
+        ring.append(10, "b");
+        assertEquals(List.of("a", "b"), values(ring.range(10, 11)));
+        assertThrows(IllegalArgumentException.class, () -> ring.append(9, "c"));
+    }
+
+    @Test
+    void readersSeeOnlyConsistentRangesWhileTheWriterWraps() throws InterruptedException {
+        TimeSeriesRing<Long> ring = new TimeSeriesRing<>(64);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<String> failures = new ArrayList<>();
+        Thread reader = Thread.ofPlatform().start(() -> {
+            while (running.get()) {
+                List<TimeSeriesRing.Entry<Long>> range = ring.range(0, Long.MAX_VALUE);
+                for (int i = 0; i < range.size(); i++) {
+                    TimeSeriesRing.Entry<Long> entry = range.get(i);
+                    // Every value was appended at its own timestamp, in order and without gaps
+                    boolean gap = i > 0 && entry.timestamp() != range.get(i - 1).timestamp() + 1;
+                    if (entry.value() != entry.timestamp() || gap) {
+                        synchronized (failures) {
+                            failures.add(range.toString());
+                        }
+                        return;
+                    }
+                }
+            }
+        });
+        for (long timestamp = 0; timestamp < 500_000; timestamp++) {
+            ring.append(timestamp, timestamp);
+        }
+        running.set(false);
+        reader.join();
+        assertEquals(List.of(), failures);
+        assertEquals(List.of(499_999L), values(ring.range(499_999, 500_000)));
+    }
+
+    private static <T> List<T> values(List<TimeSeriesRing.Entry<T>> entries) {
+        return entries.stream().map(TimeSeriesRing.Entry::value).toList();
+    }
+}
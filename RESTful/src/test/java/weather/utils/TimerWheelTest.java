@@ -0,0 +1,69 @@
+package weather.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    @Test
+    void firesInDeadlineOrderButNeverEarly() {
+        TimerWheel<String> wheel = new TimerWheel<>(10, 1_000);
+        wheel.schedule("late", 1_000 + 70_000);
+        wheel.schedule("soon", 1_025);
+        wheel.schedule("later", 1_000 + 700);
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(1_029, fired::add);
+        assertEquals(List.of(), fired);
+        wheel.advance(1_030, fired::add);
+        assertEquals(List.of("soon"), fired);
+        wheel.advance(1_000 + 69_999, fired::add);
+        assertEquals(List.of("soon", "later"), fired);
+        wheel.advance(1_000 + 70_000, fired::add);
+        assertEquals(List.of("soon", "later", "late"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void rescheduleAndCancelReplaceTheDeadline() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(1, 0);
+        for (int key = 0; key < 1_000; key++) {
+            wheel.schedule(key, 100);
+        }
+        // Moving a key only relinks it, the others keep their slot
+        for (int key = 0; key < 1_000; key += 2) {
+            wheel.schedule(key, 5_000);
+        }
+        assertTrue(wheel.cancel(1));
+        assertFalse(wheel.cancel(1));
+
+        List<Integer> fired = new ArrayList<>();
+        wheel.advance(4_999, fired::add);
+        assertEquals(499, fired.size());
+        assertTrue(fired.stream().allMatch(key -> key % 2 == 1));
+        assertEquals(500, wheel.size());
+        wheel.advance(5_000, fired::add);
+        assertEquals(999, fired.size());
+    }
+
+    @Test
+    void deadlinesInThePastFireWithTheNextTick() {
+        TimerWheel<String> wheel = new TimerWheel<>(10, 1_000);
+        List<String> fired = new ArrayList<>();
+        wheel.advance(2_000, fired::add);
+        wheel.schedule("overdue", 500);
+        assertTrue(wheel.contains("overdue"));
+        wheel.advance(2_010, key -> {
+            fired.add(key);
+            // A fired key may be scheduled again from the callback
+            wheel.schedule(key, 2_050);
+        });
+        assertEquals(List.of("overdue"), fired);
+        wheel.advance(2_050, fired::add);
+        assertEquals(List.of("overdue", "overdue"), fired);
+    }
+}